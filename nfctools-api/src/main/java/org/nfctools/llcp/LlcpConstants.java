@@ -26,6 +26,7 @@ public class LlcpConstants {
 			0x00, 0x78, 0x04, 0x01, (byte)0x96 };
 
 	public static final int DEFAULT_MIU = 128;
+	public static final int DEFAULT_RW = 1;
 
 	public static final String COM_ANDROID_NPP = "com.android.npp";
 
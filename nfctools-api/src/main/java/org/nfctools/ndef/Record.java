@@ -16,20 +16,99 @@
 package org.nfctools.ndef;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class Record {
 
 	protected byte[] id = NdefConstants.EMPTY_BYTE_ARRAY;
 
+	private boolean frozen;
+
+	private volatile RecordEncoding frozenEncoding;
+
+	/**
+	 * Makes this record and all records nested in it unmodifiable. The setters of a frozen record throw an
+	 * {@link UnsupportedOperationException} and its lists are unmodifiable, so a frozen record can be shared between
+	 * threads and caches once it is safely published. Byte arrays are not copied, the arrays returned by a frozen
+	 * record must not be modified.
+	 * 
+	 * @return this record
+	 */
+	public Record freeze() {
+		if (!frozen) {
+			freezeContent();
+			frozen = true;
+		}
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Called once when the record is frozen. Records with nested records or lists freeze them here.
+	 */
+	protected void freezeContent() {
+	}
+
+	/**
+	 * @return the encoded form an encoder kept for this frozen record or null
+	 */
+	RecordEncoding getFrozenEncoding() {
+		return frozenEncoding;
+	}
+
+	/**
+	 * Keeps the encoded form of a frozen record. As the content of a frozen record cannot change an encoder can reuse
+	 * it, so a frozen record shared by many messages is only encoded once.
+	 * 
+	 * @throws IllegalStateException if the record is not frozen
+	 */
+	void setFrozenEncoding(RecordEncoding frozenEncoding) {
+		if (!frozen)
+			throw new IllegalStateException("Only frozen records keep their encoded form");
+		this.frozenEncoding = frozenEncoding;
+	}
+
+	protected void checkNotFrozen() {
+		if (frozen)
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " is frozen");
+	}
+
+	/**
+	 * Freezes the record if it is not null.
+	 */
+	protected static void freeze(Record record) {
+		if (record != null)
+			record.freeze();
+	}
+
+	/**
+	 * Freezes the records of the list.
+	 * 
+	 * @return an unmodifiable view of the list or null if the list is null
+	 */
+	protected static <T extends Record> List<T> freeze(List<T> records) {
+		if (records == null)
+			return null;
+		for (Record record : records)
+			freeze(record);
+		return Collections.unmodifiableList(records);
+	}
+
 	public byte[] getId() {
 		return id;
 	}
 
 	public void setId(byte[] id) {
+		checkNotFrozen();
 		this.id = id;
 	}
 
 	public void setKey(String key) {
+		checkNotFrozen();
 		this.id = key.getBytes();
 	}
 
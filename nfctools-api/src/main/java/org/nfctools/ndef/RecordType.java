@@ -1,29 +1,166 @@
 package org.nfctools.ndef;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+/**
+ * The type of an NDEF record. The hash code is computed once, so record types are cheap keys for maps and tables.
+ * 
+ * Record types created with {@link #valueOf(String)} or {@link #valueOf(byte[], int, int)} are interned, there is one
+ * instance per type which can be found again with {@link #lookup(byte[], int, int)} without allocating. Only intern the
+ * types an application registers or uses repeatedly, not the types of arbitrary decoded records, as interned types
+ * are never released.
+ */
 public class RecordType {
 
-	private byte[] type;
+	private static final Object INTERN_LOCK = new Object();
+	/** Open addressing table of the interned types, replaced on every insert so lookups need no locking. */
+	private static volatile RecordType[] interned = new RecordType[64];
+	private static int internedCount = 0;
+
+	private final byte[] type;
+	private final int hash;
 
 	public RecordType(byte[] type) {
-		this.type = type;
+		this.type = type.clone();
+		this.hash = hashCode(type, 0, type.length);
 	}
 
 	public RecordType(String type) {
 		this.type = type.getBytes(NdefConstants.DEFAULT_CHARSET);
+		this.hash = hashCode(this.type, 0, this.type.length);
+	}
+
+	/**
+	 * @return the interned record type for the string
+	 */
+	public static RecordType valueOf(String type) {
+		byte[] bytes = type.getBytes(NdefConstants.DEFAULT_CHARSET);
+		return valueOf(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @return the interned record type for the bytes in the given range, the bytes are copied if a new type is interned
+	 */
+	public static RecordType valueOf(byte[] bytes, int offset, int length) {
+		RecordType recordType = lookup(bytes, offset, length);
+		if (recordType != null)
+			return recordType;
+		synchronized (INTERN_LOCK) {
+			recordType = lookup(bytes, offset, length);
+			if (recordType == null) {
+				recordType = new RecordType(Arrays.copyOfRange(bytes, offset, offset + length));
+				RecordType[] table = interned;
+				if ((internedCount + 1) * 2 > table.length)
+					table = new RecordType[table.length * 2];
+				else
+					table = table.clone();
+				if (table.length != interned.length) {
+					for (RecordType existing : interned) {
+						if (existing != null)
+							insert(table, existing);
+					}
+				}
+				insert(table, recordType);
+				internedCount++;
+				interned = table;
+			}
+			return recordType;
+		}
+	}
+
+	/**
+	 * @return the interned record type with the bytes in the given range or null if the type was never interned. Does
+	 *         not allocate.
+	 */
+	public static RecordType lookup(byte[] bytes, int offset, int length) {
+		RecordType[] table = interned;
+		int mask = table.length - 1;
+		int hash = hashCode(bytes, offset, length);
+		for (int index = hash & mask; table[index] != null; index = (index + 1) & mask) {
+			RecordType recordType = table[index];
+			if (recordType.hash == hash && recordType.matches(bytes, offset, length))
+				return recordType;
+		}
+		return null;
+	}
+
+	private static void insert(RecordType[] table, RecordType recordType) {
+		int mask = table.length - 1;
+		int index = recordType.hash & mask;
+		while (table[index] != null)
+			index = (index + 1) & mask;
+		table[index] = recordType;
+	}
+
+	/**
+	 * @return the hash code a record type with the bytes in the given range has
+	 */
+	public static int hashCode(byte[] bytes, int offset, int length) {
+		int hash = 1;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + bytes[offset + i];
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return the hash code a record type with the bytes between position and limit of the buffer has. The buffer is
+	 *         not modified.
+	 */
+	public static int hashCode(ByteBuffer buffer) {
+		int offset = buffer.position();
+		int length = buffer.remaining();
+		int hash = 1;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + buffer.get(offset + i);
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return true if the bytes in the given range are this type
+	 */
+	public boolean matches(byte[] bytes, int offset, int length) {
+		if (length != type.length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (type[i] != bytes[offset + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the bytes between position and limit of the buffer are this type. The buffer is not modified.
+	 */
+	public boolean matches(ByteBuffer buffer) {
+		int offset = buffer.position();
+		if (buffer.remaining() != type.length)
+			return false;
+		for (int i = 0; i < type.length; i++) {
+			if (type[i] != buffer.get(offset + i))
+				return false;
+		}
+		return true;
 	}
 
+	/**
+	 * @return a copy of the type bytes
+	 */
 	public byte[] getType() {
+		return type.clone();
+	}
+
+	/**
+	 * @return the type bytes without copying. The array is shared by every user of an interned type and must not be
+	 *         modified.
+	 */
+	byte[] getTypeArray() {
 		return type;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.hashCode(type);
-		return result;
+		return hash;
 	}
 
 	@Override
@@ -35,6 +172,8 @@ public class RecordType {
 		if (getClass() != obj.getClass())
 			return false;
 		RecordType other = (RecordType)obj;
+		if (hash != other.hash)
+			return false;
 		if (!Arrays.equals(type, other.type))
 			return false;
 		return true;
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nfctools.ndef.LazyNdefMessage;
+import org.nfctools.ndef.NdefCodecSession;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefMessageDecoder;
+import org.nfctools.ndef.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of messages of every registered record type. The messages are encoded once during setup, optionally with
+ * chunked payloads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NdefDecodeBenchmark {
+
+	@Param
+	private RecordFixture recordType;
+
+	@Param({ "16", "256", "4096" })
+	private int payloadSize;
+
+	/** Chunk size the message is encoded with, 0 for unchunked records. */
+	@Param({ "0", "128" })
+	private int maxChunkSize;
+
+	/** Number of records in the message, the lazy benchmark only decodes the first. */
+	@Param({ "1", "4" })
+	private int recordCount;
+
+	private NdefMessageDecoder decoder;
+	private NdefCodecSession codecSession;
+	private byte[] message;
+	private ByteBuffer directMessage;
+
+	@Setup
+	public void setup() throws IOException {
+		decoder = NdefContext.getNdefMessageDecoder();
+		codecSession = new NdefCodecSession();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NdefContext.getNdefMessageEncoder().encode(Arrays.asList(recordType.createMessage(payloadSize, recordCount)),
+				maxChunkSize, out);
+		message = out.toByteArray();
+		directMessage = ByteBuffer.allocateDirect(message.length);
+		directMessage.put(message);
+		directMessage.flip();
+	}
+
+	@Benchmark
+	public List<Record> decodeToRecords() {
+		return decoder.decodeToRecords(message);
+	}
+
+	@Benchmark
+	public List<Record> decodeDirectBuffer() {
+		return decoder.decodeToRecords(directMessage);
+	}
+
+	@Benchmark
+	public List<Record> decodeWithSession() {
+		return codecSession.decodeToRecords(message);
+	}
+
+	@Benchmark
+	public Record decodeFirstLazy() {
+		LazyNdefMessage lazyMessage = decoder.decodeLazy(message);
+		return lazyMessage.get(0);
+	}
+}
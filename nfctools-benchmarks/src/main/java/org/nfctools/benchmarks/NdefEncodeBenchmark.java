@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nfctools.ndef.NdefCodecSession;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefMessageEncoder;
+import org.nfctools.ndef.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of single record messages of every registered record type with the different encoder entry points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NdefEncodeBenchmark {
+
+	@Param
+	private RecordFixture recordType;
+
+	@Param({ "16", "256", "4096" })
+	private int payloadSize;
+
+	private NdefMessageEncoder encoder;
+	private NdefCodecSession codecSession;
+	private List<Record> records;
+	private ByteBuffer buffer;
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setup() {
+		encoder = NdefContext.getNdefMessageEncoder();
+		codecSession = new NdefCodecSession();
+		records = Arrays.asList(recordType.create(payloadSize));
+		buffer = ByteBuffer.allocate(encoder.getEncodedLength(records));
+		out = new ByteArrayOutputStream(buffer.capacity() * 2);
+	}
+
+	@Benchmark
+	public byte[] encodeToArray() {
+		return encoder.encode(records);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeIntoBuffer() {
+		buffer.clear();
+		encoder.encode(records, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public ByteBuffer encodeWithSession() {
+		return codecSession.encode(records);
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream encodeToStream(Chunking chunking) throws IOException {
+		out.reset();
+		encoder.encode(records, chunking.maxChunkSize, out);
+		return out;
+	}
+
+	/**
+	 * Chunk sizes for the stream encoder only, the other entry points do not chunk.
+	 */
+	@State(Scope.Thread)
+	public static class Chunking {
+
+		/** 0 writes unchunked records */
+		@Param({ "0", "128" })
+		private int maxChunkSize;
+	}
+}
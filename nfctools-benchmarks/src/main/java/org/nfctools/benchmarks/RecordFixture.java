@@ -0,0 +1,192 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.ext.AndroidApplicationRecord;
+import org.nfctools.ndef.ext.GeoRecord;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord.CarrierPowerState;
+import org.nfctools.ndef.wkt.handover.records.CollisionResolutionRecord;
+import org.nfctools.ndef.wkt.handover.records.HandoverCarrierRecord;
+import org.nfctools.ndef.wkt.handover.records.HandoverCarrierRecord.CarrierTypeFormat;
+import org.nfctools.ndef.wkt.handover.records.HandoverRequestRecord;
+import org.nfctools.ndef.wkt.handover.records.HandoverSelectRecord;
+import org.nfctools.ndef.wkt.records.Action;
+import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.GcActionRecord;
+import org.nfctools.ndef.wkt.records.GcDataRecord;
+import org.nfctools.ndef.wkt.records.GcTargetRecord;
+import org.nfctools.ndef.wkt.records.GenericControlRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord.CertificateFormat;
+import org.nfctools.ndef.wkt.records.SignatureRecord.SignatureType;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+/**
+ * Records of every registered type for the benchmarks. The size is the approximate length of the variable content of
+ * the record, like the URI suffix, the text or the binary data. Records with nested records scale the number of nested
+ * entries instead where a single field cannot grow.
+ */
+public enum RecordFixture {
+
+	URI {
+
+		@Override
+		public Record create(int size) {
+			return new UriRecord("http://www." + text(size));
+		}
+	},
+	TEXT {
+
+		@Override
+		public Record create(int size) {
+			return new TextRecord(text(size), UTF8, Locale.ENGLISH);
+		}
+	},
+	SMART_POSTER {
+
+		@Override
+		public Record create(int size) {
+			return new SmartPosterRecord(new TextRecord(text(size / 2), UTF8, Locale.ENGLISH), new UriRecord(
+					"https://" + text(size / 2)), new ActionRecord(Action.DEFAULT_ACTION));
+		}
+	},
+	GENERIC_CONTROL {
+
+		@Override
+		public Record create(int size) {
+			GenericControlRecord record = new GenericControlRecord(new GcTargetRecord(new UriRecord("http://target")),
+					(byte)1);
+			record.setAction(new GcActionRecord(Action.DEFAULT_ACTION));
+			record.setData(new GcDataRecord(new TextRecord(text(size), UTF8, Locale.ENGLISH)));
+			return record;
+		}
+	},
+	SIGNATURE {
+
+		@Override
+		public Record create(int size) {
+			SignatureRecord record = new SignatureRecord(SignatureType.RSASSA_PSS_SHA_1, bytes(Math.min(size,
+					0xffff)), CertificateFormat.X_509, "http://certificate.uri");
+			record.add(bytes(Math.min(size, 0xffff)));
+			return record;
+		}
+	},
+	HANDOVER_REQUEST {
+
+		@Override
+		public Record create(int size) {
+			HandoverRequestRecord record = new HandoverRequestRecord(new CollisionResolutionRecord((short)123));
+			for (int i = 0; i < carriers(size); i++)
+				record.add(alternativeCarrier(i));
+			return record;
+		}
+	},
+	HANDOVER_SELECT {
+
+		@Override
+		public Record create(int size) {
+			HandoverSelectRecord record = new HandoverSelectRecord();
+			for (int i = 0; i < carriers(size); i++)
+				record.add(alternativeCarrier(i));
+			return record;
+		}
+	},
+	HANDOVER_CARRIER {
+
+		@Override
+		public Record create(int size) {
+			return new HandoverCarrierRecord(CarrierTypeFormat.AbsoluteURI, "http://absolute.url", bytes(size));
+		}
+	},
+	ALTERNATIVE_CARRIER {
+
+		@Override
+		public Record create(int size) {
+			AlternativeCarrierRecord record = alternativeCarrier(0);
+			for (int i = 1; i < carriers(size); i++)
+				record.addAuxiliaryDataReference("aux" + i);
+			return record;
+		}
+	},
+	GEO {
+
+		@Override
+		public Record create(int size) {
+			return new GeoRecord(text(size));
+		}
+	},
+	ANDROID_APPLICATION {
+
+		@Override
+		public Record create(int size) {
+			return new AndroidApplicationRecord("org." + text(size));
+		}
+	},
+	MIME {
+
+		@Override
+		public Record create(int size) {
+			return new BinaryMimeRecord("application/octet-stream", bytes(size));
+		}
+	};
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public abstract Record create(int size);
+
+	/**
+	 * @return a message of count records of this type
+	 */
+	public Record[] createMessage(int size, int count) {
+		Record[] records = new Record[count];
+		for (int i = 0; i < count; i++)
+			records[i] = create(size);
+		return records;
+	}
+
+	private static String text(int size) {
+		char[] chars = new char[Math.max(size, 1)];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = (char)('a' + i % 26);
+		return new String(chars);
+	}
+
+	private static byte[] bytes(int size) {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < size; i++)
+			bytes[i] = (byte)i;
+		return bytes;
+	}
+
+	private static int carriers(int size) {
+		return Math.max(1, Math.min(size / 16, 64));
+	}
+
+	private static AlternativeCarrierRecord alternativeCarrier(int index) {
+		return new AlternativeCarrierRecord(CarrierPowerState.Active, "carrier" + index,
+				new ArrayList<String>(Arrays.asList("aux")));
+	}
+}
@@ -17,6 +17,7 @@ package org.nfctools.mf.ndef;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,8 +29,9 @@ import org.nfctools.mf.mad.Application;
 import org.nfctools.mf.mad.ApplicationDirectory;
 import org.nfctools.mf.mad.MadUtils;
 import org.nfctools.mf.tlv.TypeLengthValueReader;
+import org.nfctools.ndef.NdefCodecSession;
+import org.nfctools.ndef.NdefContext;
 import org.nfctools.ndef.NdefException;
-import org.nfctools.ndef.NdefMessage;
 import org.nfctools.ndef.NdefMessageDecoder;
 import org.nfctools.ndef.NdefReader;
 import org.nfctools.ndef.Record;
@@ -42,11 +44,15 @@ public class MfNdefReader implements NdefReader<MfCard> {
 	private Logger log = LoggerFactory.getLogger(getClass());
 
 	private MfReaderWriter readerWriter;
-	private NdefMessageDecoder ndefMessageDecoder;
+	private NdefCodecSession codecSession;
 
 	public MfNdefReader(MfReaderWriter readerWriter, NdefMessageDecoder ndefMessageDecoder) {
+		this(readerWriter, new NdefCodecSession(NdefContext.getNdefMessageEncoder(), ndefMessageDecoder));
+	}
+
+	public MfNdefReader(MfReaderWriter readerWriter, NdefCodecSession codecSession) {
 		this.readerWriter = readerWriter;
-		this.ndefMessageDecoder = ndefMessageDecoder;
+		this.codecSession = codecSession;
 	}
 
 	@Override
@@ -73,10 +79,7 @@ public class MfNdefReader implements NdefReader<MfCard> {
 
 			if (lengthValueReader.hasNext()) {
 				byte[] ndef = lengthValueReader.next();
-				NdefMessage ndefMessage = ndefMessageDecoder.decode(ndef);
-				for (Record record : ndefMessageDecoder.decodeToRecords(ndefMessage)) {
-					records.add(record);
-				}
+				codecSession.decodeToRecords(ByteBuffer.wrap(ndef), records);
 			}
 			return records;
 		}
@@ -89,7 +89,10 @@ public class MfNdefWriter implements NdefWriter<MfCard> {
 		writeNdefMessage(card, ndefData);
 	}
 
-	private void writeNdefMessage(MfCard card, byte[] ndefData) throws IOException, MfException {
+	/**
+	 * Writes an already encoded NDEF message, for example an instance of an {@link org.nfctools.ndef.NdefTemplate}.
+	 */
+	public void writeNdefMessage(MfCard card, byte[] ndefData) throws IOException {
 		ApplicationDirectory applicationDirectory = null;
 
 		if (MadUtils.hasApplicationDirectory(card, readerWriter))
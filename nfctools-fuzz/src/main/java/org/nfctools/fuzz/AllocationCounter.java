@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the number of bytes allocated by the current thread, where the JVM supports it. Other JVMs report 0, which
+ * disables the allocation bound.
+ */
+public class AllocationCounter {
+
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final long overhead;
+
+	public AllocationCounter() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+			threadBean = (com.sun.management.ThreadMXBean)bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		else {
+			threadBean = null;
+		}
+		overhead = measureOverhead();
+	}
+
+	public boolean isSupported() {
+		return threadBean != null;
+	}
+
+	public long getAllocatedBytes() {
+		return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the bytes allocated since start, without what reading the counter allocates itself
+	 */
+	public long getAllocatedBytesSince(long start) {
+		return Math.max(0, getAllocatedBytes() - start - overhead);
+	}
+
+	private long measureOverhead() {
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 1000; i++) {
+			long start = getAllocatedBytes();
+			overhead = Math.min(overhead, getAllocatedBytes() - start);
+		}
+		return overhead;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.nfctools.utils.NfcUtils;
+
+/**
+ * Feeds mutated inputs to the NDEF and LLCP decoders and checks that every input is decoded or rejected with the
+ * expected exception within a bounded time and allocation. Reports the decode throughput for accepted and rejected
+ * inputs. Exits with status 1 if there are findings.
+ * 
+ * <pre>
+ * java -jar fuzz.jar [-iterations 1000000] [-seed 42] [-maxMillis 10] [-maxAllocation 262144]
+ * </pre>
+ * 
+ * The allocation bound is maxAllocation plus 64 bytes per input byte. Inputs exceeding a bound are measured a second
+ * time before they are reported, so a GC pause does not count as a finding.
+ */
+public class FuzzRunner {
+
+	private static final int ALLOCATION_PER_INPUT_BYTE = 64;
+
+	private final AllocationCounter allocationCounter = new AllocationCounter();
+	private int iterations = 1000000;
+	private long seed = System.currentTimeMillis();
+	private long maxNanos = 10 * 1000000L;
+	private long maxAllocatedBytes = 256 * 1024;
+
+	public static void main(String[] args) {
+		FuzzRunner runner = new FuzzRunner();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-iterations"))
+				runner.setIterations(Integer.parseInt(args[i + 1]));
+			else if (args[i].equals("-seed"))
+				runner.setSeed(Long.parseLong(args[i + 1]));
+			else if (args[i].equals("-maxMillis"))
+				runner.setMaxNanos(Long.parseLong(args[i + 1]) * 1000000L);
+			else if (args[i].equals("-maxAllocation"))
+				runner.setMaxAllocatedBytes(Long.parseLong(args[i + 1]));
+			else
+				throw new IllegalArgumentException("unknown option " + args[i]);
+		}
+		System.out.println("seed " + runner.seed + ", allocation counting "
+				+ (runner.allocationCounter.isSupported() ? "enabled" : "not supported"));
+		int findings = 0;
+		for (FuzzTarget target : Arrays.asList(new NdefDecoderTarget(), new PduDecoderTarget())) {
+			FuzzStatistics statistics = runner.run(target);
+			statistics.report(System.out);
+			findings += statistics.getFindingCount();
+		}
+		System.exit(findings == 0 ? 0 : 1);
+	}
+
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setMaxNanos(long maxNanos) {
+		this.maxNanos = maxNanos;
+	}
+
+	public void setMaxAllocatedBytes(long maxAllocatedBytes) {
+		this.maxAllocatedBytes = maxAllocatedBytes;
+	}
+
+	public FuzzStatistics run(FuzzTarget target) {
+		List<byte[]> seeds = target.getSeeds();
+		// let the JIT compile the decoders before anything is timed
+		Mutator warmUp = new Mutator(seeds, seed - 1);
+		for (int i = 0; i < iterations / 10; i++)
+			measure(target, warmUp.next(), new Measurement());
+
+		FuzzStatistics statistics = new FuzzStatistics(target.getName());
+		Mutator mutator = new Mutator(seeds, seed);
+		Measurement measurement = new Measurement();
+		for (int i = 0; i < iterations; i++) {
+			byte[] input = i < seeds.size() ? seeds.get(i) : mutator.next();
+			measure(target, input, measurement);
+			if (measurement.failure != null && !target.isRejection(measurement.failure)) {
+				statistics.addFinding("unexpected " + toString(measurement.failure) + " for input ["
+						+ NfcUtils.convertBinToASCII(input) + "]");
+				continue;
+			}
+			if (!isBounded(input, measurement)) {
+				measure(target, input, measurement);
+				if (!isBounded(input, measurement))
+					statistics.addFinding(String.format("%.3f ms, %d bytes allocated for input [%s]",
+							measurement.nanos / 1e6, measurement.allocatedBytes, NfcUtils.convertBinToASCII(input)));
+			}
+			if (measurement.failure == null)
+				statistics.addAccepted(input.length, measurement.nanos, measurement.allocatedBytes);
+			else
+				statistics.addRejected(input.length, measurement.nanos, measurement.allocatedBytes);
+		}
+		return statistics;
+	}
+
+	private void measure(FuzzTarget target, byte[] input, Measurement measurement) {
+		measurement.failure = null;
+		long allocationStart = allocationCounter.getAllocatedBytes();
+		long start = System.nanoTime();
+		try {
+			target.decode(input);
+		}
+		catch (Throwable t) {
+			measurement.failure = t;
+		}
+		measurement.nanos = System.nanoTime() - start;
+		measurement.allocatedBytes = allocationCounter.getAllocatedBytesSince(allocationStart);
+	}
+
+	private boolean isBounded(byte[] input, Measurement measurement) {
+		return measurement.nanos <= maxNanos
+				&& measurement.allocatedBytes <= maxAllocatedBytes + ALLOCATION_PER_INPUT_BYTE * input.length;
+	}
+
+	private String toString(Throwable failure) {
+		StringWriter writer = new StringWriter();
+		failure.printStackTrace(new PrintWriter(writer));
+		return writer.toString();
+	}
+
+	private static class Measurement {
+
+		private long nanos;
+		private long allocatedBytes;
+		private Throwable failure;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decode throughput and allocation of one target, kept apart for accepted and rejected inputs, so hardening the
+ * rejection path can be compared against the cost of decoding valid input.
+ */
+public class FuzzStatistics {
+
+	private static final int MAX_REPORTED_FINDINGS = 10;
+
+	private final String name;
+	private final Counter accepted = new Counter();
+	private final Counter rejected = new Counter();
+	private long maxNanos;
+	private long maxAllocatedBytes;
+	private int findingCount;
+	private List<String> findings = new ArrayList<String>();
+
+	public FuzzStatistics(String name) {
+		this.name = name;
+	}
+
+	public void addAccepted(int length, long nanos, long allocatedBytes) {
+		accepted.add(length, nanos, allocatedBytes);
+		updateMaximum(nanos, allocatedBytes);
+	}
+
+	public void addRejected(int length, long nanos, long allocatedBytes) {
+		rejected.add(length, nanos, allocatedBytes);
+		updateMaximum(nanos, allocatedBytes);
+	}
+
+	public void addFinding(String finding) {
+		findingCount++;
+		if (findings.size() < MAX_REPORTED_FINDINGS)
+			findings.add(finding);
+	}
+
+	public int getFindingCount() {
+		return findingCount;
+	}
+
+	public List<String> getFindings() {
+		return findings;
+	}
+
+	public long getAcceptedCount() {
+		return accepted.count;
+	}
+
+	public long getRejectedCount() {
+		return rejected.count;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMaxAllocatedBytes() {
+		return maxAllocatedBytes;
+	}
+
+	public void report(PrintStream out) {
+		out.println(name + ": " + (accepted.count + rejected.count) + " inputs, " + findingCount + " findings");
+		out.println("  accepted " + accepted);
+		out.println("  rejected " + rejected);
+		out.println(String.format("  max %.3f ms, max %d bytes allocated per input", maxNanos / 1e6,
+				maxAllocatedBytes));
+		for (String finding : findings)
+			out.println("  " + finding);
+	}
+
+	private void updateMaximum(long nanos, long allocatedBytes) {
+		maxNanos = Math.max(maxNanos, nanos);
+		maxAllocatedBytes = Math.max(maxAllocatedBytes, allocatedBytes);
+	}
+
+	private static class Counter {
+
+		private long count;
+		private long bytes;
+		private long nanos;
+		private long allocatedBytes;
+
+		private void add(int length, long nanos, long allocatedBytes) {
+			count++;
+			bytes += length;
+			this.nanos += nanos;
+			this.allocatedBytes += allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			if (count == 0)
+				return "0 inputs";
+			double seconds = Math.max(nanos, 1) / 1e9;
+			return String.format("%d inputs, %.0f inputs/s, %.1f MB/s, %d bytes allocated per input", count, count
+					/ seconds, bytes / seconds / 1e6, allocatedBytes / count);
+		}
+	}
+}
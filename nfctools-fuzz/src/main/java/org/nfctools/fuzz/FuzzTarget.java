@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.util.List;
+
+/**
+ * A decoder under test. Malformed input must either decode or be rejected with one of the exceptions accepted by
+ * {@link #isRejection(Throwable)}. Anything else thrown by {@link #decode(byte[])} is reported as a finding.
+ */
+public abstract class FuzzTarget {
+
+	public abstract String getName();
+
+	/**
+	 * @return well formed inputs the mutated inputs are derived from
+	 */
+	public abstract List<byte[]> getSeeds();
+
+	public abstract void decode(byte[] input) throws Exception;
+
+	public boolean isRejection(Throwable throwable) {
+		return throwable instanceof IllegalArgumentException;
+	}
+}
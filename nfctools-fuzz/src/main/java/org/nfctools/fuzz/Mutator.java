@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Derives adversarial inputs from the seeds. The mutations favour the values that break length and flag fields, like
+ * 0x00, 0x7f, 0x80 and 0xff, over uniformly random bytes.
+ */
+public class Mutator {
+
+	private static final byte[] INTERESTING = { 0x00, 0x01, 0x02, 0x7f, (byte)0x80, (byte)0x81, (byte)0xfe,
+			(byte)0xff };
+
+	private static final int MAX_LENGTH = 1024;
+
+	private final Random random;
+	private final List<byte[]> seeds;
+
+	public Mutator(List<byte[]> seeds, long seed) {
+		this.seeds = seeds;
+		this.random = new Random(seed);
+	}
+
+	public byte[] next() {
+		if (random.nextInt(32) == 0)
+			return randomBytes(random.nextInt(64));
+		byte[] input = seeds.get(random.nextInt(seeds.size())).clone();
+		int mutations = 1 + random.nextInt(4);
+		for (int i = 0; i < mutations; i++)
+			input = mutate(input);
+		return input;
+	}
+
+	private byte[] mutate(byte[] input) {
+		if (input.length == 0)
+			return randomBytes(1 + random.nextInt(8));
+		int position = random.nextInt(input.length);
+		switch (random.nextInt(8)) {
+			case 0:
+				input[position] ^= 1 << random.nextInt(8);
+				return input;
+			case 1:
+				input[position] = INTERESTING[random.nextInt(INTERESTING.length)];
+				return input;
+			case 2:
+				input[position] = (byte)random.nextInt(256);
+				return input;
+			case 3:
+				return copy(input, 0, position);
+			case 4:
+				return remove(input, position, 1 + random.nextInt(Math.min(input.length - position, 8)));
+			case 5:
+				return insert(input, position, randomBytes(1 + random.nextInt(8)));
+			case 6:
+				return insert(input, position, copy(input, position, Math.min(input.length - position,
+						1 + random.nextInt(16))));
+			default:
+				byte[] other = seeds.get(random.nextInt(seeds.size()));
+				int start = random.nextInt(other.length + 1);
+				return insert(copy(input, 0, position), position, copy(other, start, other.length - start));
+		}
+	}
+
+	private byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private byte[] remove(byte[] input, int position, int length) {
+		byte[] result = new byte[input.length - length];
+		System.arraycopy(input, 0, result, 0, position);
+		System.arraycopy(input, position + length, result, position, result.length - position);
+		return result;
+	}
+
+	private byte[] insert(byte[] input, int position, byte[] bytes) {
+		if (input.length + bytes.length > MAX_LENGTH)
+			return input;
+		byte[] result = new byte[input.length + bytes.length];
+		System.arraycopy(input, 0, result, 0, position);
+		System.arraycopy(bytes, 0, result, position, bytes.length);
+		System.arraycopy(input, position, result, position + bytes.length, input.length - position);
+		return result;
+	}
+
+	private byte[] copy(byte[] input, int position, int length) {
+		byte[] result = new byte[length];
+		System.arraycopy(input, position, result, 0, length);
+		return result;
+	}
+}
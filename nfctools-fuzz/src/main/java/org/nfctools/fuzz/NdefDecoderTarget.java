@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefDecoderException;
+import org.nfctools.ndef.NdefMessageDecoder;
+import org.nfctools.ndef.NdefMessageEncoder;
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.ext.AndroidApplicationRecord;
+import org.nfctools.ndef.ext.GeoRecord;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord.CarrierPowerState;
+import org.nfctools.ndef.wkt.handover.records.CollisionResolutionRecord;
+import org.nfctools.ndef.wkt.handover.records.HandoverCarrierRecord;
+import org.nfctools.ndef.wkt.handover.records.HandoverCarrierRecord.CarrierTypeFormat;
+import org.nfctools.ndef.wkt.handover.records.HandoverRequestRecord;
+import org.nfctools.ndef.wkt.records.Action;
+import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.GcActionRecord;
+import org.nfctools.ndef.wkt.records.GcTargetRecord;
+import org.nfctools.ndef.wkt.records.GenericControlRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord.CertificateFormat;
+import org.nfctools.ndef.wkt.records.SignatureRecord.SignatureType;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+/**
+ * Decodes NDEF messages down to records, so the payload decoders of every registered record type are exercised as
+ * well as the message framing. Content a record decoder rejects with an NdefDecoderException is an accepted
+ * rejection.
+ */
+public class NdefDecoderTarget extends FuzzTarget {
+
+	private NdefMessageDecoder decoder = NdefContext.getNdefMessageDecoder();
+
+	@Override
+	public String getName() {
+		return "NdefMessageDecoder";
+	}
+
+	@Override
+	public List<byte[]> getSeeds() {
+		NdefMessageEncoder encoder = NdefContext.getNdefMessageEncoder();
+		List<byte[]> seeds = new ArrayList<byte[]>();
+		for (Record record : createRecords())
+			seeds.add(encoder.encodeSingle(record));
+		seeds.add(encoder.encode(createRecords()));
+		seeds.add(encoder.encode(new BinaryMimeRecord("application/octet-stream", new byte[300]), new UriRecord(
+				"http://nfctools.org")));
+		return seeds;
+	}
+
+	@Override
+	public void decode(byte[] input) {
+		decoder.decodeToRecords(input);
+	}
+
+	@Override
+	public boolean isRejection(Throwable throwable) {
+		return super.isRejection(throwable) || throwable instanceof NdefDecoderException;
+	}
+
+	private List<Record> createRecords() {
+		GenericControlRecord genericControl = new GenericControlRecord(new GcTargetRecord(new UriRecord(
+				"http://target")), (byte)1);
+		genericControl.setAction(new GcActionRecord(Action.SAVE_FOR_LATER));
+		SignatureRecord signature = new SignatureRecord(SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, new byte[16],
+				CertificateFormat.X_509, "http://certificate.uri");
+		signature.add(new byte[8]);
+		HandoverRequestRecord handoverRequest = new HandoverRequestRecord(new CollisionResolutionRecord((short)7));
+		handoverRequest.add(new AlternativeCarrierRecord(CarrierPowerState.Active, "carrier", new ArrayList<String>(
+				Arrays.asList("aux"))));
+		return Arrays.asList(new UriRecord("http://nfctools.org"), new TextRecord("nfctools", Locale.GERMAN),
+				new SmartPosterRecord(new TextRecord("title", Locale.ENGLISH), new UriRecord("tel:0123"),
+						new ActionRecord(Action.DEFAULT_ACTION)), genericControl, signature, handoverRequest,
+				new HandoverCarrierRecord(CarrierTypeFormat.AbsoluteURI, "http://absolute.url", new byte[4]),
+				new GeoRecord("geo:52.5,13.4"), new AndroidApplicationRecord("org.nfctools"), new BinaryMimeRecord(
+						"image/png", new byte[20]));
+	}
+}
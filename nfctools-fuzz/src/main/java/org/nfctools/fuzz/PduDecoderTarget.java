@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.fuzz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.nfctools.llcp.parameter.Miux;
+import org.nfctools.llcp.parameter.ReceiveWindow;
+import org.nfctools.llcp.parameter.ServiceName;
+import org.nfctools.llcp.parameter.Version;
+import org.nfctools.llcp.pdu.AbstractProtocolDataUnit;
+import org.nfctools.llcp.pdu.AggregatedFrame;
+import org.nfctools.llcp.pdu.Connect;
+import org.nfctools.llcp.pdu.ConnectComplete;
+import org.nfctools.llcp.pdu.Disconnect;
+import org.nfctools.llcp.pdu.DisconnectedMode;
+import org.nfctools.llcp.pdu.Information;
+import org.nfctools.llcp.pdu.ParameterExchange;
+import org.nfctools.llcp.pdu.PduDecoder;
+import org.nfctools.llcp.pdu.ReceiveReady;
+import org.nfctools.llcp.pdu.Symmetry;
+import org.nfctools.llcp.pdu.UnnumberedInformation;
+
+/**
+ * Decodes LLCP PDUs. PDU types the decoder does not implement yet are rejected with an
+ * UnsupportedOperationException, which is accepted as well.
+ */
+public class PduDecoderTarget extends FuzzTarget {
+
+	private PduDecoder decoder = new PduDecoder();
+
+	@Override
+	public String getName() {
+		return "PduDecoder";
+	}
+
+	@Override
+	public List<byte[]> getSeeds() {
+		List<byte[]> seeds = new ArrayList<byte[]>();
+		seeds.add(decoder.encode(new Connect(1, 32, new ServiceName("com.android.npp"), new Miux(128),
+				new ReceiveWindow(4))));
+		seeds.add(decoder.encode(new ConnectComplete(32, 1, new Miux(1023))));
+		seeds.add(decoder.encode(new Disconnect(1, 32)));
+		seeds.add(decoder.encode(new DisconnectedMode(32, 1, 2)));
+		seeds.add(decoder.encode(new Information(1, 32, 3, 4, new byte[] { (byte)0xd1, 0x01, 0x00, 0x54 })));
+		seeds.add(decoder.encode(new ParameterExchange(0, 0, new Version(1, 1), new Miux(256))));
+		seeds.add(decoder.encode(new ReceiveReady(32, 1, 5)));
+		seeds.add(decoder.encode(new Symmetry()));
+		seeds.add(decoder.encode(new UnnumberedInformation(1, 32, new byte[] { 1, 2, 3 })));
+		seeds.add(decoder.encode(new AggregatedFrame(Arrays.<AbstractProtocolDataUnit> asList(new ReceiveReady(32, 1,
+				2), new Information(33, 2, 0, 1, new byte[] { 1, 2, 3 })))));
+		// parameter exchange with well known service list and link timeout, which the encoder does not write
+		seeds.add(new byte[] { 0x00, 0x40, 0x01, 0x01, 0x11, 0x03, 0x02, 0x00, 0x13, 0x04, 0x01, (byte)0x96 });
+		return seeds;
+	}
+
+	@Override
+	public void decode(byte[] input) {
+		decoder.decode(input);
+	}
+
+	@Override
+	public boolean isRejection(Throwable throwable) {
+		return super.isRejection(throwable) || throwable instanceof UnsupportedOperationException;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Records of an NDEF message that are decoded on first access. Only the record headers are parsed up front, so the
+ * TNF and type of every record can be checked through {@link #getNdefRecord(int)} without decoding any payload.
+ * {@link #get(int)} decodes the payload of a single record, including any nested message, and keeps the result.
+ * 
+ * The list is read only and not thread safe. It holds on to the buffer the message was decoded from.
+ */
+public class LazyNdefMessage extends AbstractList<Record> implements RandomAccess {
+
+	private NdefRecord[] ndefRecords;
+	private Record[] records;
+	private NdefRecordDecoder ndefRecordDecoder;
+	private NdefMessageDecoder ndefMessageDecoder;
+
+	LazyNdefMessage(NdefRecord[] ndefRecords, NdefRecordDecoder ndefRecordDecoder,
+			NdefMessageDecoder ndefMessageDecoder) {
+		this.ndefRecords = ndefRecords;
+		this.records = new Record[ndefRecords.length];
+		this.ndefRecordDecoder = ndefRecordDecoder;
+		this.ndefMessageDecoder = ndefMessageDecoder;
+	}
+
+	@Override
+	public Record get(int index) {
+		Record record = records[index];
+		if (record == null) {
+			record = ndefRecordDecoder.decode(ndefRecords[index], ndefMessageDecoder);
+			records[index] = record;
+		}
+		return record;
+	}
+
+	@Override
+	public int size() {
+		return ndefRecords.length;
+	}
+
+	/**
+	 * @return the undecoded record at the index. Chunked records are already reassembled.
+	 */
+	public NdefRecord getNdefRecord(int index) {
+		return ndefRecords[index];
+	}
+
+	public byte getTnf(int index) {
+		return ndefRecords[index].getTnf();
+	}
+
+	/**
+	 * @return true if the record at the index has the given TNF and type, compared without decoding the record
+	 */
+	public boolean hasType(int index, byte tnf, byte[] type) {
+		NdefRecord ndefRecord = ndefRecords[index];
+		if (ndefRecord.getTnf() != tnf || ndefRecord.getTypeLength() != type.length)
+			return false;
+		ByteBuffer buffer = ndefRecord.typeBuffer();
+		for (int i = 0; i < type.length; i++) {
+			if (buffer.get(buffer.position() + i) != type[i])
+				return false;
+		}
+		return true;
+	}
+
+	public boolean isDecoded(int index) {
+		return records[index] != null;
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes many NDEF messages in parallel. The messages are split into slices that are decoded by the tasks of an
+ * executor, each task with its own {@link NdefCodecSession}. The results are returned in the order of the messages. A
+ * message that cannot be decoded does not stop the batch, its exception is kept in the result.
+ * 
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+ * NdefBatchDecoder batchDecoder = new NdefBatchDecoder(NdefContext.getNdefMessageDecoder(), executor);
+ * for (NdefBatchResult result : batchDecoder.decode(messages)) {
+ * 	...
+ * }
+ * </pre>
+ */
+public class NdefBatchDecoder {
+
+	/** Lower bound for the messages per task, so small messages are not dominated by the task overhead. */
+	private static final int MIN_SLICE_SIZE = 64;
+
+	private NdefMessageDecoder ndefMessageDecoder;
+	private ExecutorService executor;
+	private int parallelism;
+
+	public NdefBatchDecoder(NdefMessageDecoder ndefMessageDecoder, ExecutorService executor) {
+		this(ndefMessageDecoder, executor, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism
+	 *            the number of threads of the executor, the batch is split into four times as many slices to balance
+	 *            messages of different sizes
+	 */
+	public NdefBatchDecoder(NdefMessageDecoder ndefMessageDecoder, ExecutorService executor, int parallelism) {
+		this.ndefMessageDecoder = ndefMessageDecoder;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	public List<NdefBatchResult> decode(List<byte[]> messages) throws InterruptedException {
+		ByteBuffer[] buffers = new ByteBuffer[messages.size()];
+		for (int i = 0; i < buffers.length; i++) {
+			byte[] message = messages.get(i);
+			buffers[i] = message == null ? null : ByteBuffer.wrap(message);
+		}
+		return decodeBuffers(Arrays.asList(buffers));
+	}
+
+	/**
+	 * Decodes the remaining bytes of each buffer. The buffers are not modified, the records may share their memory.
+	 */
+	public List<NdefBatchResult> decodeBuffers(List<ByteBuffer> messages) throws InterruptedException {
+		NdefBatchResult[] results = new NdefBatchResult[messages.size()];
+		int sliceSize = Math.max(MIN_SLICE_SIZE, (messages.size() + parallelism * 4 - 1) / (parallelism * 4));
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < messages.size(); start += sliceSize) {
+			tasks.add(new DecodeTask(messages, start, Math.min(start + sliceSize, messages.size()), results));
+		}
+
+		for (Future<Void> future : executor.invokeAll(tasks)) {
+			try {
+				future.get();
+			}
+			catch (ExecutionException e) {
+				// errors of single messages are caught by the task, anything else is a bug
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	private class DecodeTask implements Callable<Void> {
+
+		private List<ByteBuffer> messages;
+		private int start;
+		private int end;
+		private NdefBatchResult[] results;
+
+		public DecodeTask(List<ByteBuffer> messages, int start, int end, NdefBatchResult[] results) {
+			this.messages = messages;
+			this.start = start;
+			this.end = end;
+			this.results = results;
+		}
+
+		@Override
+		public Void call() {
+			NdefCodecSession codecSession = new NdefCodecSession(NdefContext.getNdefMessageEncoder(),
+					ndefMessageDecoder);
+			for (int i = start; i < end; i++) {
+				ByteBuffer message = messages.get(i);
+				try {
+					if (message == null)
+						throw new IllegalArgumentException("no message");
+					List<Record> records = new ArrayList<Record>();
+					codecSession.decodeToRecords(message, records);
+					results[i] = new NdefBatchResult(i, records, null);
+				}
+				catch (RuntimeException e) {
+					results[i] = new NdefBatchResult(i, null, e);
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.util.List;
+
+/**
+ * Outcome of decoding one message of a batch: either the decoded records or the exception the message failed with.
+ */
+public class NdefBatchResult {
+
+	private int index;
+	private List<Record> records;
+	private RuntimeException error;
+
+	NdefBatchResult(int index, List<Record> records, RuntimeException error) {
+		this.index = index;
+		this.records = records;
+		this.error = error;
+	}
+
+	/**
+	 * @return the position of the message in the batch
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * @return the decoded records or null if the message could not be decoded
+	 */
+	public List<Record> getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return the exception thrown while decoding the message or null
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable encoding and decoding state for processing many NDEF messages. The session keeps a growing encode buffer
+ * and the list of decoded NDEF records between calls, so once the buffer has reached the size of the largest message
+ * no further intermediate arrays are allocated for the message framing.
+ * 
+ * A session is not thread safe. Keep one per thread, for example from {@link NdefContext#getCodecSession()}, or one
+ * per reader or LLCP service.
+ */
+public class NdefCodecSession {
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private NdefMessageEncoder ndefMessageEncoder;
+	private NdefMessageDecoder ndefMessageDecoder;
+
+	private ByteBuffer encodeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private List<NdefRecord> ndefRecords = new ArrayList<NdefRecord>();
+	private List<Record> records = new ArrayList<Record>();
+
+	public NdefCodecSession() {
+		this(NdefContext.getNdefMessageEncoder(), NdefContext.getNdefMessageDecoder());
+	}
+
+	public NdefCodecSession(NdefMessageEncoder ndefMessageEncoder, NdefMessageDecoder ndefMessageDecoder) {
+		this.ndefMessageEncoder = ndefMessageEncoder;
+		this.ndefMessageDecoder = ndefMessageDecoder;
+	}
+
+	public NdefMessageEncoder getNdefMessageEncoder() {
+		return ndefMessageEncoder;
+	}
+
+	public NdefMessageDecoder getNdefMessageDecoder() {
+		return ndefMessageDecoder;
+	}
+
+	/**
+	 * Encodes the records into the session buffer.
+	 * 
+	 * @return a read only view of the encoded message. It is only valid until the next call to one of the encode
+	 *         methods of this session.
+	 */
+	public ByteBuffer encode(Iterable<? extends Record> records) {
+		encodeBuffer.clear();
+		encodeBuffer = ndefMessageEncoder.encodeGrowing(records, encodeBuffer);
+		encodeBuffer.flip();
+		return encodeBuffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Encodes the records and writes them to the stream.
+	 * 
+	 * @return the number of bytes written
+	 */
+	public int encode(Iterable<? extends Record> records, OutputStream out) throws IOException {
+		int length = encode(records).remaining();
+		out.write(encodeBuffer.array(), encodeBuffer.arrayOffset(), length);
+		return length;
+	}
+
+	/**
+	 * Decodes the message in the given array range.
+	 * 
+	 * @return the records in the list of the session. It is only valid until the next call to one of the decode
+	 *         methods of this session, copy it or use {@link #decodeToRecords(ByteBuffer, List)} to keep the records.
+	 */
+	public List<Record> decodeToRecords(byte[] ndefMessage, int offset, int length) {
+		return decodeToRecords(ByteBuffer.wrap(ndefMessage, offset, length));
+	}
+
+	public List<Record> decodeToRecords(byte[] ndefMessage) {
+		return decodeToRecords(ndefMessage, 0, ndefMessage.length);
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer without changing its position.
+	 * 
+	 * @return the records in the list of the session. It is only valid until the next call to one of the decode
+	 *         methods of this session, copy it or use {@link #decodeToRecords(ByteBuffer, List)} to keep the records.
+	 */
+	public List<Record> decodeToRecords(ByteBuffer buffer) {
+		records.clear();
+		decodeToRecords(buffer, records);
+		return records;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer and adds the records to the given list.
+	 */
+	public void decodeToRecords(ByteBuffer buffer, List<Record> records) {
+		try {
+			ndefMessageDecoder.decode(buffer, ndefRecords);
+			ndefMessageDecoder.decodeToRecords(ndefRecords, records);
+		}
+		finally {
+			ndefRecords.clear();
+		}
+	}
+}
@@ -81,40 +81,48 @@ import org.nfctools.ndef.wkt.records.WellKnownRecord;
  */
 public class NdefContext {
 
-	private static NdefRecordEncoder ndefRecordEncoder = new NdefRecordEncoder();
-	private static NdefRecordDecoder ndefRecordDecoder = new NdefRecordDecoder();
+	private static RecordConfigRegistry recordConfigRegistry = new RecordConfigRegistry();
+	private static NdefRecordEncoder ndefRecordEncoder = new NdefRecordEncoder(recordConfigRegistry);
+	private static NdefRecordDecoder ndefRecordDecoder = new NdefRecordDecoder(recordConfigRegistry);
 	private static NdefMessageEncoder ndefMessageEncoder = new NdefMessageEncoder(ndefRecordEncoder);
 	private static NdefMessageDecoder ndefMessageDecoder = new NdefMessageDecoder(ndefRecordDecoder);
+	private static ThreadLocal<NdefCodecSession> codecSession = new ThreadLocal<NdefCodecSession>() {
+
+		@Override
+		protected NdefCodecSession initialValue() {
+			return new NdefCodecSession(ndefMessageEncoder, ndefMessageDecoder);
+		}
+	};
 
 	static {
-		registerWellKnownRecord(new RecordType("act"), ActionRecord.class, new ActionRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("act"), ActionRecord.class, new ActionRecordEncoder(),
 				new ActionRecordDecoder());
-		registerWellKnownRecord(new RecordType("U"), UriRecord.class, new UriRecordEncoder(), new UriRecordDecoder());
-		registerWellKnownRecord(new RecordType("T"), TextRecord.class, new TextRecordEncoder(), new TextRecordDecoder());
-		registerWellKnownRecord(new RecordType("Sp"), SmartPosterRecord.class, new SmartPosterRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("U"), UriRecord.class, new UriRecordEncoder(), new UriRecordDecoder());
+		registerWellKnownRecord(RecordType.valueOf("T"), TextRecord.class, new TextRecordEncoder(), new TextRecordDecoder());
+		registerWellKnownRecord(RecordType.valueOf("Sp"), SmartPosterRecord.class, new SmartPosterRecordEncoder(),
 				new SmartPosterRecordDecoder());
-		registerWellKnownRecord(new RecordType("Gc"), GenericControlRecord.class, new GenericControlRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("Gc"), GenericControlRecord.class, new GenericControlRecordEncoder(),
 				new GenericControlRecordDecoder());
-		registerWellKnownRecord(new RecordType("t"), GcTargetRecord.class, new GcTargetRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("t"), GcTargetRecord.class, new GcTargetRecordEncoder(),
 				new GcTargetRecordDecoder());
-		registerWellKnownRecord(new RecordType("d"), GcDataRecord.class, new GcDataRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("d"), GcDataRecord.class, new GcDataRecordEncoder(),
 				new GcDataRecordDecoder());
-		registerWellKnownRecord(new RecordType("a"), GcActionRecord.class, new GcActionRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("a"), GcActionRecord.class, new GcActionRecordEncoder(),
 				new GcActionRecordDecoder());
-		registerWellKnownRecord(new RecordType("Sig"), SignatureRecord.class, new SignatureRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("Sig"), SignatureRecord.class, new SignatureRecordEncoder(),
 				new SignatureRecordDecoder());
 
-		registerWellKnownRecord(new RecordType("ac"), AlternativeCarrierRecord.class,
+		registerWellKnownRecord(RecordType.valueOf("ac"), AlternativeCarrierRecord.class,
 				new AlternativeCarrierRecordEncoder(), new AlternativeCarrierRecordDecoder());
-		registerWellKnownRecord(new RecordType("Hc"), HandoverCarrierRecord.class, new HandoverCarrierRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("Hc"), HandoverCarrierRecord.class, new HandoverCarrierRecordEncoder(),
 				new HandoverCarrierRecordDecoder());
-		registerWellKnownRecord(new RecordType("Hr"), HandoverRequestRecord.class, new HandoverRequestRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("Hr"), HandoverRequestRecord.class, new HandoverRequestRecordEncoder(),
 				new HandoverRequestRecordDecoder());
-		registerWellKnownRecord(new RecordType("Hs"), HandoverSelectRecord.class, new HandoverSelectRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("Hs"), HandoverSelectRecord.class, new HandoverSelectRecordEncoder(),
 				new HandoverSelectRecordDecoder());
-		registerWellKnownRecord(new RecordType("err"), ErrorRecord.class, new ErrorRecordEncoder(),
+		registerWellKnownRecord(RecordType.valueOf("err"), ErrorRecord.class, new ErrorRecordEncoder(),
 				new ErrorRecordDecoder());
-		registerWellKnownRecord(new RecordType("cr"), CollisionResolutionRecord.class,
+		registerWellKnownRecord(RecordType.valueOf("cr"), CollisionResolutionRecord.class,
 				new CollisionResolutionRecordEncoder(), new CollisionResolutionRecordDecoder());
 
 		// Known External Type Records
@@ -128,16 +136,22 @@ public class NdefContext {
 			WellKnownRecordPayloadEncoder payloadEncoder, WellKnownRecordPayloadDecoder payloadDecoder) {
 		WellKnownRecordConfig config = new WellKnownRecordConfig(recordType, recordClass, payloadEncoder,
 				payloadDecoder);
-		ndefRecordDecoder.registerWellKnownRecordConfig(config);
-		ndefRecordEncoder.registerWellKnownRecordConfig(config);
+		recordConfigRegistry.registerWellKnownRecordConfig(config);
 	}
 
 	public static void registerExternalType(String namespace, Class<? extends ExternalTypeRecord> recordClass,
 			ExternalTypeContentEncoder payloadEncoder, ExternalTypeContentDecoder payloadDecoder) {
 		ExternalTypeRecordConfig config = new ExternalTypeRecordConfig(namespace, recordClass, payloadEncoder,
 				payloadDecoder);
-		ndefRecordDecoder.registerExternalTypeRecordConfig(config);
-		ndefRecordEncoder.registerExternalTypeRecordConfig(config);
+		recordConfigRegistry.registerExternalTypeRecordConfig(config);
+	}
+
+	/**
+	 * @return the registry shared by the default encoders and decoders. Records can be registered at any time, also
+	 *         while other threads are encoding or decoding.
+	 */
+	public static RecordConfigRegistry getRecordConfigRegistry() {
+		return recordConfigRegistry;
 	}
 
 	public static NdefRecordDecoder getNdefRecordDecoder() {
@@ -156,4 +170,12 @@ public class NdefContext {
 		return ndefMessageEncoder;
 	}
 
+	/**
+	 * @return the codec session of the current thread using the default encoder and decoder. The buffers and lists
+	 *         returned by the session are reused by every caller on the same thread.
+	 */
+	public static NdefCodecSession getCodecSession() {
+		return codecSession.get();
+	}
+
 }
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache in front of a {@link NdefMessageDecoder} for messages that are decoded over and over, like the same few
+ * tags being scanned repeatedly. Messages are keyed by a 64 bit hash and the length of their bytes. On a hit the bytes
+ * are compared with the cached message, which is far cheaper than decoding it, so a hash collision can never return
+ * the records of another message.
+ * 
+ * The returned records are frozen and the list is unmodifiable, so the same instances are shared by all callers and
+ * threads. Entries are evicted when the cache is full, least recently used first, and when they are older than the
+ * time to live. Messages that cannot be decoded are not cached.
+ * 
+ * <pre>
+ * NdefDecodeCache cache = new NdefDecodeCache(NdefContext.getNdefMessageDecoder(), 512, 10, TimeUnit.MINUTES);
+ * List&lt;Record&gt; records = cache.decodeToRecords(ndefMessage);
+ * </pre>
+ */
+public class NdefDecodeCache {
+
+	private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+	private final NdefMessageDecoder ndefMessageDecoder;
+	private final long timeToLiveNanos;
+	private final Map<Key, CacheEntry> entries;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maxSize the maximum number of cached messages
+	 * @param timeToLive the time after which a cached message is decoded again, 0 to keep messages until they are
+	 *            evicted by size
+	 */
+	public NdefDecodeCache(NdefMessageDecoder ndefMessageDecoder, final int maxSize, long timeToLive, TimeUnit unit) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Expected cache size > 0");
+		if (timeToLive < 0)
+			throw new IllegalArgumentException("Expected time to live >= 0");
+		this.ndefMessageDecoder = ndefMessageDecoder;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+				if (size() > maxSize) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public List<Record> decodeToRecords(byte[] ndefMessage) {
+		return decodeToRecords(ByteBuffer.wrap(ndefMessage));
+	}
+
+	public List<Record> decodeToRecords(byte[] ndefMessage, int offset, int length) {
+		return decodeToRecords(ByteBuffer.wrap(ndefMessage, offset, length));
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer or returns the cached records of an identical message. The buffer is
+	 * not modified.
+	 * 
+	 * @return an unmodifiable list of frozen records
+	 */
+	public List<Record> decodeToRecords(ByteBuffer ndefMessage) {
+		Key key = new Key(hash(ndefMessage), ndefMessage.remaining());
+		long now = nanoTime();
+		synchronized (entries) {
+			CacheEntry entry = entries.get(key);
+			if (entry != null) {
+				if (timeToLiveNanos > 0 && now - entry.created >= timeToLiveNanos) {
+					entries.remove(key);
+					evictionCount.incrementAndGet();
+				}
+				else if (entry.message.equals(ndefMessage)) {
+					hitCount.incrementAndGet();
+					return entry.records;
+				}
+			}
+		}
+		missCount.incrementAndGet();
+
+		// the records are decoded from the copy, records that keep views of the message must not share the caller's
+		// buffer. Decode outside of the lock, concurrent misses for the same message each decode it and the last one is
+		// kept
+		ByteBuffer copy = ByteBuffer.allocate(ndefMessage.remaining());
+		copy.put(ndefMessage.duplicate());
+		copy.flip();
+		List<Record> records = ndefMessageDecoder.decodeToFrozenRecords(copy.duplicate());
+		synchronized (entries) {
+			entries.put(key, new CacheEntry(copy, records, now));
+		}
+		return records;
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of messages removed because the cache was full or their time to live expired
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the share of lookups answered from the cache, 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double)hits / total;
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * The clock used for the time to live.
+	 */
+	protected long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * 64 bit multiply and rotate hash over the remaining bytes of the buffer, reading eight bytes per step.
+	 */
+	static long hash(ByteBuffer buffer) {
+		ByteBuffer bytes = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int position = bytes.position();
+		int limit = bytes.limit();
+		long hash = PRIME_2 + bytes.remaining();
+		for (; position + 8 <= limit; position += 8) {
+			hash ^= Long.rotateLeft(bytes.getLong(position) * PRIME_2, 31) * PRIME_1;
+			hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_2;
+		}
+		for (; position < limit; position++) {
+			hash ^= (bytes.get(position) & 0xffL) * PRIME_1;
+			hash = Long.rotateLeft(hash, 11) * PRIME_2;
+		}
+		hash ^= hash >>> 33;
+		hash *= PRIME_2;
+		hash ^= hash >>> 29;
+		return hash;
+	}
+
+	private static final class Key {
+
+		private final long hash;
+		private final int length;
+
+		private Key(long hash, int length) {
+			this.hash = hash;
+			this.length = length;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(hash ^ (hash >>> 32)) * 31 + length;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key)obj;
+			return hash == other.hash && length == other.length;
+		}
+	}
+
+	private static final class CacheEntry {
+
+		private final ByteBuffer message;
+		private final List<Record> records;
+		private final long created;
+
+		private CacheEntry(ByteBuffer message, List<Record> records, long created) {
+			this.message = message;
+			this.records = records;
+			this.created = created;
+		}
+	}
+}
@@ -15,15 +15,26 @@
  */
 package org.nfctools.ndef;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Decodes NDEF messages into records. The decoder holds no per message state and is safe to use from several threads
+ * at once, provided the registered payload decoders are. All payload decoders of this library are stateless.
+ */
 public class NdefMessageDecoder {
 
-	private NdefRecordDecoder ndefRecordDecoder;
+	/**
+	 * The largest number of bytes a truncated record field is padded to, which covers the NDEF file of any tag type.
+	 */
+	public static final int MAX_PADDED_LENGTH = 0xffff;
+
+	private final NdefRecordDecoder ndefRecordDecoder;
 	
 	public NdefMessageDecoder(NdefRecordDecoder ndefRecordDecoder) {
 		this.ndefRecordDecoder = ndefRecordDecoder;
@@ -39,81 +50,114 @@ public class NdefMessageDecoder {
 
 	public List<Record> decodeToRecords(NdefMessage ndefMessage) {
 		List<Record> records = new ArrayList<Record>();
+		decodeToRecords(Arrays.asList(ndefMessage.getNdefRecords()), records);
+		return records;
+	}
 
-		NdefRecord[] ndefRecords = ndefMessage.getNdefRecords();
-
-		iterate: for (int i = 0; i < ndefRecords.length; i++) {
-
-			NdefRecord ndefRecord = ndefRecords[i];
-
-			if (ndefRecord.isChunked()) {
-				// Concatenate chunked records to get the whole payload
-
-				int payloadSize = ndefRecord.getPayloadSize();
-
-				/**
-				 * The value 0x06 (Unchanged) MUST be used in all middle record chunks and the terminating record chunk
-				 * used in chunked payloads (see section 2.3.3). It MUST NOT be used in any other record. When used, the
-				 * TYPE_LENGTH field MUST be zero and thus the TYPE field is omitted from the NDEF record.
-				 */
-
-				int k = i;
-				do {
-					k++;
-
-					NdefRecord next = ndefRecords[k];
-					if (next.getTnf() != NdefConstants.TNF_UNCHANGED) {
-						// no terminating chunk?
-						throw new IllegalArgumentException("Expected terminating 'unchanged' record type at " + i);
-					}
-
-					// check that type is zero length
-					byte[] type = ndefRecord.getType();
-					if (type != null && type.length > 0) {
-						throw new IllegalArgumentException("Expected no record type at " + i);
-					}
-
-					payloadSize += next.getPayloadSize();
+	/**
+	 * Decodes the NDEF records into records and adds them to the given list. Chunked records are reassembled.
+	 */
+	public void decodeToRecords(List<NdefRecord> ndefRecords, List<Record> records) {
+		int size = ndefRecords.size();
+		for (int i = 0; i < size; i++) {
+			int last = getLastChunk(ndefRecords, i);
+			records.add(ndefRecordDecoder.decode(joinChunks(ndefRecords, i, last), this));
+			// skip chunked packets
+			i = last;
+		}
+	}
 
-					if (!next.isChunked()) {
-						// terminating chunk
+	/**
+	 * Decodes the message into frozen records, which can be shared between threads and caches without copying.
+	 * 
+	 * @return an unmodifiable list of frozen records
+	 */
+	public List<Record> decodeToFrozenRecords(ByteBuffer buffer) {
+		List<Record> records = decodeToRecords(buffer);
+		for (Record record : records)
+			record.freeze();
+		return Collections.unmodifiableList(records);
+	}
 
-						// concatenate chunked payloads into a single payload
-						byte[] payload = new byte[payloadSize];
+	public List<Record> decodeToFrozenRecords(byte[] ndefMessage) {
+		return decodeToFrozenRecords(ByteBuffer.wrap(ndefMessage));
+	}
 
-						int offset = 0;
-						for (int p = i; p <= k; p++) {
-							byte[] chunkPayload = ndefRecords[p].getPayload();
+	/**
+	 * Parses the record headers of the message and reassembles chunked records, but decodes no payload. The records
+	 * are decoded when they are first read from the returned list.
+	 */
+	public LazyNdefMessage decodeLazy(ByteBuffer buffer) {
+		List<NdefRecord> ndefRecords = new ArrayList<NdefRecord>();
+		decode(buffer, ndefRecords);
+		List<NdefRecord> unchunkedNdefRecords = new ArrayList<NdefRecord>(ndefRecords.size());
+		int size = ndefRecords.size();
+		for (int i = 0; i < size; i++) {
+			int last = getLastChunk(ndefRecords, i);
+			unchunkedNdefRecords.add(joinChunks(ndefRecords, i, last));
+			i = last;
+		}
+		return new LazyNdefMessage(unchunkedNdefRecords.toArray(new NdefRecord[unchunkedNdefRecords.size()]),
+				ndefRecordDecoder, this);
+	}
 
-							System.arraycopy(chunkPayload, 0, payload, offset, chunkPayload.length);
+	public LazyNdefMessage decodeLazy(byte[] ndefMessage) {
+		return decodeLazy(ByteBuffer.wrap(ndefMessage));
+	}
 
-							offset += chunkPayload.length;
-						}
+	/**
+	 * @return the index of the terminating chunk of a chunked record starting at first, or first if the record is not
+	 *         chunked
+	 */
+	private int getLastChunk(List<NdefRecord> ndefRecords, int first) {
+		if (!ndefRecords.get(first).isChunked())
+			return first;
+
+		/**
+		 * The value 0x06 (Unchanged) MUST be used in all middle record chunks and the terminating record chunk used in
+		 * chunked payloads (see section 2.3.3). It MUST NOT be used in any other record. When used, the TYPE_LENGTH
+		 * field MUST be zero and thus the TYPE field is omitted from the NDEF record.
+		 */
+		int size = ndefRecords.size();
+		int k = first;
+		while (++k < size) {
+			NdefRecord next = ndefRecords.get(k);
+			if (next.getTnf() != NdefConstants.TNF_UNCHANGED) {
+				// no terminating chunk?
+				throw new IllegalArgumentException("Expected terminating 'unchanged' record type at " + k);
+			}
 
-						// finally create unchunked record, copy tnf, type and id from first record
-						NdefRecord unchunkedNdefRecord = new NdefRecord(ndefRecord.getTnf(), ndefRecord.getType(),
-								ndefRecord.getId(), payload);
+			// check that type is zero length
+			if (next.getTypeLength() > 0) {
+				throw new IllegalArgumentException("Expected no record type at " + k);
+			}
 
-						records.add(ndefRecordDecoder.decode(unchunkedNdefRecord, this));
+			if (!next.isChunked()) {
+				// terminating chunk
+				return k;
+			}
+		}
 
-						// skip chunked packets
-						i = k;
-						// continue on to next record
-						continue iterate;
-					}
-					else {
-						// middle chunk
-					}
-				} while (i < ndefRecords.length);
+		// no terminating chunk
+		throw new IllegalArgumentException("Expected terminating 'unchanged' record type");
+	}
 
-				// no terminating chunk
-				throw new IllegalArgumentException("Expected terminating 'unchanged' record type");
-			}
-			else {
-				records.add(ndefRecordDecoder.decode(ndefRecord, this));
-			}
+	/**
+	 * Creates an unchunked record from the chunks first to last. The payload views of the chunks are collected, they
+	 * are only concatenated if the payload decoder asks for the payload as array.
+	 */
+	private NdefRecord joinChunks(List<NdefRecord> ndefRecords, int first, int last) {
+		NdefRecord ndefRecord = ndefRecords.get(first);
+		if (first == last)
+			return ndefRecord;
+
+		ByteBuffer[] payloadChunks = new ByteBuffer[last - first + 1];
+		for (int p = first; p <= last; p++) {
+			payloadChunks[p - first] = ndefRecords.get(p).getPayloadBuffer();
 		}
-		return records;
+
+		// copy tnf, type and id from first record
+		return new NdefRecord(ndefRecord.getTnf(), ndefRecord.getTypeBuffer(), ndefRecord.getIdBuffer(), payloadChunks);
 	}
 
 	public <T extends Record> T decodeToRecord(byte[] ndefMessage) {
@@ -135,55 +179,112 @@ public class NdefMessageDecoder {
 	}
 
 	public NdefMessage decode(byte[] ndefMessage, int offset, int length) {
-		ByteArrayInputStream bais = new ByteArrayInputStream(ndefMessage, offset, length);
-		return decode(bais);
+		return decode(ByteBuffer.wrap(ndefMessage, offset, length));
 	}
 
-	public NdefMessage decode(InputStream bais) {
-		List<NdefRecord> records = new ArrayList<NdefRecord>();
+	/**
+	 * Reads the stream up to its end and decodes the bytes read.
+	 */
+	public NdefMessage decode(InputStream in) {
 		try {
-			while (bais.available() > 0) {
-				int header = bais.read();
-				byte tnf = (byte)(header & NdefConstants.TNF_MASK);
+			return decode(ByteBuffer.wrap(RecordUtils.readFully(in)));
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer without copying them. The type, id and payload of the returned records
+	 * are views into the given buffer, which may also be a direct buffer. The position of the buffer is not changed.
+	 */
+	public NdefMessage decode(ByteBuffer buffer) {
+		List<NdefRecord> records = new ArrayList<NdefRecord>();
+		decode(buffer, records);
+		return new NdefMessage(records.toArray(new NdefRecord[records.size()]));
+	}
 
-				int typeLength = bais.read();
-				int payloadLength = getPayloadLength((header & NdefConstants.SR) != 0, bais);
-				int idLength = getIdLength((header & NdefConstants.IL) != 0, bais);
-				boolean chunked = (header & NdefConstants.CF) != 0;
+	/**
+	 * Decodes the remaining bytes of the buffer like {@link #decode(ByteBuffer)} but adds the records to the given
+	 * list, which is expected to be empty. Allows the caller to reuse the list for every message.
+	 */
+	public void decode(ByteBuffer buffer, List<NdefRecord> records) {
+		int position = buffer.position();
+		int limit = buffer.limit();
+		while (position < limit) {
+			int header = buffer.get(position++) & 0xff;
+			byte tnf = (byte)(header & NdefConstants.TNF_MASK);
+
+			int typeLength = getUnsignedByte(buffer, position++);
+			int payloadLength;
+			if ((header & NdefConstants.SR) != 0) {
+				payloadLength = getUnsignedByte(buffer, position++);
+			}
+			else {
+				payloadLength = getPayloadLength(buffer, position);
+				position += 4;
+			}
+			int idLength = 0;
+			if ((header & NdefConstants.IL) != 0)
+				idLength = getUnsignedByte(buffer, position++);
+			boolean chunked = (header & NdefConstants.CF) != 0;
 
-				byte[] type = RecordUtils.getBytesFromStream(typeLength, bais);
-				byte[] id = RecordUtils.getBytesFromStream(idLength, bais);
-				byte[] payload = RecordUtils.getBytesFromStream(payloadLength, bais);
+			ByteBuffer type = slice(buffer, position, typeLength);
+			position += typeLength;
+			ByteBuffer id = slice(buffer, position, idLength);
+			position += idLength;
+			ByteBuffer payload = slice(buffer, position, payloadLength);
+			position += payloadLength;
 
-				if (records.isEmpty() && (header & NdefConstants.MB) == 0)
-					throw new IllegalArgumentException("no Message Begin record at the begining");
+			if (records.isEmpty() && (header & NdefConstants.MB) == 0)
+				throw new IllegalArgumentException("no Message Begin record at the begining");
 
-				if (bais.available() == 0 && (header & NdefConstants.ME) == 0)
-					throw new IllegalArgumentException("no Message End record at the end of array");
+			if (position >= limit && (header & NdefConstants.ME) == 0)
+				throw new IllegalArgumentException("no Message End record at the end of array");
 
-				records.add(new NdefRecord(tnf, chunked, type, id, payload));
-			}
+			records.add(new NdefRecord(tnf, chunked, type, id, payload));
 		}
-		catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		return new NdefMessage(records.toArray(new NdefRecord[0]));
 	}
 
-	private int getIdLength(boolean idLengthPresent, InputStream bais) throws IOException {
-		if (idLengthPresent)
-			return bais.read();
-		else
-			return 0;
+	public List<Record> decodeToRecords(ByteBuffer buffer) {
+		return decodeToRecords(decode(buffer));
+	}
+
+	private int getUnsignedByte(ByteBuffer buffer, int position) {
+		if (position >= buffer.limit())
+			throw new IllegalArgumentException("Unexpected end of message at " + position);
+		return buffer.get(position) & 0xff;
+	}
+
+	private int getPayloadLength(ByteBuffer buffer, int position) {
+		long length = 0;
+		for (int i = 0; i < 4; i++)
+			length = (length << 8) | getUnsignedByte(buffer, position + i);
+		if (length > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Unsupported payload length " + length);
+		return (int)length;
 	}
 
-	private int getPayloadLength(boolean shortRecord, InputStream bais) throws IOException {
-		if (shortRecord)
-			return bais.read();
-		else {
-			byte[] buffer = RecordUtils.getBytesFromStream(4, bais);
-			return (int)(buffer[0] << 24) + (int)(buffer[1] << 16) + (int)(buffer[2] << 8) + (int)(buffer[3] & 0xff);
+	/**
+	 * Returns a view of length bytes at the given position. A field running past the end of the buffer is padded with
+	 * zero bytes into a copy, as the stream based decoder always did. The padding is limited to
+	 * {@link #MAX_PADDED_LENGTH}, so a corrupted length field cannot make the decoder allocate up to 2 GB.
+	 */
+	private ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		if (length <= buffer.limit() - position) {
+			ByteBuffer view = buffer.duplicate();
+			view.limit(position + length);
+			view.position(position);
+			return view;
 		}
+		if (length > MAX_PADDED_LENGTH)
+			throw new IllegalArgumentException("Record field of " + length + " bytes at " + position
+					+ " exceeds the message");
+		byte[] padded = new byte[length];
+		int available = Math.max(0, buffer.limit() - position);
+		for (int i = 0; i < available; i++)
+			padded[i] = buffer.get(position + i);
+		return ByteBuffer.wrap(padded);
 	}
 
 	public List<Record> decodeToRecords(byte[] payload, int offset, int length) {
@@ -16,14 +16,38 @@
 package org.nfctools.ndef;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
+
 
 public class NdefMessageEncoder {
 
 	private static final int MAX_LENGTH_FOR_SHORT_RECORD = 255;
 	private NdefRecordEncoder ndefRecordEncoder;
+	/**
+	 * Encodes frozen records, a plain encoder so that subclasses are not called back for them and the payload lengths
+	 * of the message being written are not mixed with those of a frozen record.
+	 */
+	private volatile NdefMessageEncoder frozenRecordEncoder;
+
+	/**
+	 * Payload lengths of the records, computed while sizing the message or the record being written. Writing a record
+	 * takes its length from here instead of sizing its subtree again.
+	 */
+	private final ThreadLocal<PayloadLengths> payloadLengths = new ThreadLocal<PayloadLengths>() {
+
+		@Override
+		protected PayloadLengths initialValue() {
+			return new PayloadLengths();
+		}
+	};
 
 	public NdefMessageEncoder(NdefRecordEncoder ndefRecordEncoder) {
 		this.ndefRecordEncoder = ndefRecordEncoder;
@@ -37,8 +61,13 @@ public class NdefMessageEncoder {
 	
 	public void encodeSingle(Record record, ByteArrayOutputStream out) {
 		byte header = (byte)(NdefConstants.MB | NdefConstants.ME);
-		NdefRecord ndefRecord = ndefRecordEncoder.encode(record, this);
-		writeNdefRecord(out, header, ndefRecord);
+		NdefRecord ndefRecord = encodeNdefRecord(record);
+		try {
+			writeNdefRecord(out, header, ndefRecord);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	public byte[] encode(Record... records) {
@@ -55,26 +84,299 @@ public class NdefMessageEncoder {
 	}
 
 	public void encode(Iterable<? extends Record> records, ByteArrayOutputStream baos) {
+		try {
+			encode(records, 0, baos);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Encodes the records and writes each record to the stream as soon as it is encoded. Payloads larger than
+	 * maxChunkSize are split into a chunked record sequence, the first chunk carries the type and id of the record, the
+	 * following chunks use TNF_UNCHANGED.
+	 * 
+	 * @param maxChunkSize the maximum payload size of a single record, 0 to write every record unchunked
+	 */
+	public void encode(Iterable<? extends Record> records, int maxChunkSize, OutputStream out) throws IOException {
+		if (maxChunkSize < 0)
+			throw new IllegalArgumentException("Expected chunk size >= 0");
+
 		byte header = (byte)NdefConstants.MB;
 		for (Iterator<? extends Record> it = records.iterator(); it.hasNext();) {
 			Record record = it.next();
-			header = setMessageEndIfLastRecord(it, header);
+			boolean last = !it.hasNext();
 
-			NdefRecord ndefRecord = ndefRecordEncoder.encode(record, this);
+			NdefRecord ndefRecord = encodeNdefRecord(record);
 
-			writeNdefRecord(baos, header, ndefRecord);
+			if (maxChunkSize == 0 || ndefRecord.getPayload().length <= maxChunkSize) {
+				writeNdefRecord(out, last ? (byte)(header | NdefConstants.ME) : header, ndefRecord);
+			}
+			else {
+				writeChunkedNdefRecord(out, header, last, ndefRecord, maxChunkSize);
+			}
 			header = 0;
 		}
 	}
-	
-	private byte setMessageEndIfLastRecord(Iterator<? extends Record> it, byte header) {
-		if (!it.hasNext()) {
+
+	/**
+	 * Encodes the records like {@link #encode(Iterable, int, OutputStream)} and writes them to the channel.
+	 */
+	public void encode(Iterable<? extends Record> records, int maxChunkSize, WritableByteChannel channel)
+			throws IOException {
+		OutputStream out = Channels.newOutputStream(channel);
+		encode(records, maxChunkSize, out);
+		out.flush();
+	}
+
+	/**
+	 * @return the exact number of bytes {@link #encode(Iterable, ByteBuffer)} will write for the records
+	 */
+	public int getEncodedLength(Iterable<? extends Record> records) {
+		int length = 0;
+		for (Record record : records)
+			length += getEncodedRecordLength(record);
+		return length;
+	}
+
+	/**
+	 * @return the exact number of bytes of the record including its header
+	 */
+	public int getEncodedRecordLength(Record record) {
+		if (!record.isFrozen() && ndefRecordEncoder.canEncodePayload(record)) {
+			int payloadLength = getPayloadLength(record);
+			return getRecordLength(ndefRecordEncoder.getType(record).length, getIdLength(record), payloadLength);
+		}
+		NdefRecord ndefRecord = encodeNdefRecord(record);
+		return getRecordLength(ndefRecord.getTypeLength(), ndefRecord.getIdLength(), ndefRecord.getPayloadSize());
+	}
+
+	/**
+	 * Encodes the records into the given array at the offset.
+	 * 
+	 * @return the number of bytes written
+	 */
+	public int encode(Iterable<? extends Record> records, byte[] buffer, int offset) {
+		return encode(records, ByteBuffer.wrap(buffer, offset, buffer.length - offset));
+	}
+
+	/**
+	 * Encodes the records into the buffer, starting at its position. The encoded length is computed first, the records
+	 * are then written directly into the buffer. Records with payload encoders implementing
+	 * {@link WellKnownRecordPayloadBufferEncoder} are written without any intermediate arrays, all other records are
+	 * encoded once for sizing and once for writing. Frozen records are encoded once and their encoding is reused.
+	 * 
+	 * @return the number of bytes written
+	 * @throws IllegalArgumentException if the remaining buffer is too small
+	 */
+	public int encode(Iterable<? extends Record> records, ByteBuffer out) {
+		int position = out.position();
+		encode(records, out, false);
+		return out.position() - position;
+	}
+
+	/**
+	 * Encodes the records like {@link #encode(Iterable, ByteBuffer)}. If the remaining buffer is too small the buffer
+	 * is replaced by a larger one with the bytes before its position, for buffers reused by {@link NdefCodecSession}.
+	 * 
+	 * @return the buffer the records were written into
+	 */
+	ByteBuffer encodeGrowing(Iterable<? extends Record> records, ByteBuffer out) {
+		return encode(records, out, true);
+	}
+
+	private ByteBuffer encode(Iterable<? extends Record> records, ByteBuffer out, boolean grow) {
+		PayloadLengths lengths = payloadLengths.get();
+		lengths.begin();
+		try {
+			int length = getEncodedLength(records);
+			if (length > out.remaining()) {
+				if (!grow)
+					throw new IllegalArgumentException("Expected buffer with at least " + length
+							+ " bytes remaining but was " + out.remaining());
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(out.position() + length, out.capacity() * 2));
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
+			boolean messageBegin = true;
+			for (Iterator<? extends Record> it = records.iterator(); it.hasNext();) {
+				Record record = it.next();
+				encodeRecord(record, messageBegin, !it.hasNext(), out);
+				messageBegin = false;
+			}
+			return out;
+		}
+		finally {
+			lengths.end();
+		}
+	}
+
+	/**
+	 * Writes a single record with the given MB and ME flags into the buffer. Used by payload encoders of nested
+	 * messages.
+	 */
+	public void encodeRecord(Record record, boolean messageBegin, boolean messageEnd, ByteBuffer out) {
+		byte header = 0;
+		if (messageBegin)
+			header |= NdefConstants.MB;
+		if (messageEnd)
 			header |= NdefConstants.ME;
+
+		if (!record.isFrozen() && ndefRecordEncoder.canEncodePayload(record)) {
+			PayloadLengths lengths = payloadLengths.get();
+			lengths.begin();
+			int resume = -1;
+			try {
+				byte[] type = ndefRecordEncoder.getType(record);
+				byte[] id = record.getId() == null ? NdefConstants.EMPTY_BYTE_ARRAY : record.getId();
+				int payloadLength = lengths.next(record);
+				if (payloadLength == -1) {
+					// not sized in this order yet, size the subtree and continue after it once it is written
+					resume = lengths.next;
+					int slot = lengths.size;
+					payloadLength = getPayloadLength(record);
+					lengths.next = slot + 1;
+				}
+				writeHeader(out, header, ndefRecordEncoder.getTnf(record), type, id, payloadLength);
+
+				int start = out.position();
+				ndefRecordEncoder.encodePayload(record, this, out);
+				if (out.position() - start != payloadLength)
+					throw new IllegalStateException("Expected payload length " + payloadLength + " but encoded "
+							+ (out.position() - start) + " bytes for " + record.getClass().getName());
+			}
+			finally {
+				if (resume != -1)
+					lengths.next = resume;
+				lengths.end();
+			}
 		}
-		return header;
+		else {
+			NdefRecord ndefRecord = encodeNdefRecord(record);
+			writeHeader(out, header, ndefRecord.getTnf(), ndefRecord.getType(), ndefRecord.getId(),
+					ndefRecord.getPayloadSize());
+			out.put(ndefRecord.getPayload());
+		}
+	}
+
+	/**
+	 * Encodes the record. A frozen record is encoded once, its encoding is kept with the record and reused as long as
+	 * it is encoded with the same record encoder and record configurations. Frozen records and the records nested in
+	 * them are encoded by a plain {@link NdefMessageEncoder}, so subclasses get no {@link #encodeRecord} or
+	 * {@link #getEncodedRecordLength} calls for them and cannot capture the kept encoding.
+	 */
+	private NdefRecord encodeNdefRecord(Record record) {
+		if (!record.isFrozen())
+			return ndefRecordEncoder.encode(record, this);
+		int revision = ndefRecordEncoder.getRevision();
+		RecordEncoding encoding = record.getFrozenEncoding();
+		if (encoding instanceof FrozenEncoding) {
+			FrozenEncoding frozenEncoding = (FrozenEncoding)encoding;
+			if (frozenEncoding.recordEncoder == ndefRecordEncoder && frozenEncoding.revision == revision)
+				return frozenEncoding.ndefRecord;
+		}
+		NdefRecord ndefRecord = ndefRecordEncoder.encode(record, getFrozenRecordEncoder());
+		record.setFrozenEncoding(new FrozenEncoding(ndefRecordEncoder, revision, ndefRecord));
+		return ndefRecord;
 	}
 
-	private void writeNdefRecord(ByteArrayOutputStream baos, byte header, NdefRecord ndefRecord) {
+	private NdefMessageEncoder getFrozenRecordEncoder() {
+		NdefMessageEncoder encoder = frozenRecordEncoder;
+		if (encoder == null) {
+			encoder = new NdefMessageEncoder(ndefRecordEncoder);
+			frozenRecordEncoder = encoder;
+		}
+		return encoder;
+	}
+
+	/**
+	 * Sizes the payload of the record. While a message or a record is written the lengths of the records are kept in
+	 * the order they are sized, which is the order they are written in, so they are sized once no matter how deep they
+	 * are nested.
+	 */
+	private int getPayloadLength(Record record) {
+		PayloadLengths lengths = payloadLengths.get();
+		if (lengths.depth == 0)
+			return ndefRecordEncoder.getPayloadLength(record, this);
+		int slot = lengths.add(record);
+		int payloadLength = ndefRecordEncoder.getPayloadLength(record, this);
+		lengths.lengths[slot] = payloadLength;
+		return payloadLength;
+	}
+
+	private int getIdLength(Record record) {
+		return record.getId() == null ? 0 : record.getId().length;
+	}
+
+	private int getRecordLength(int typeLength, int idLength, int payloadLength) {
+		int length = 2 + typeLength + idLength + payloadLength;
+		length += payloadLength <= MAX_LENGTH_FOR_SHORT_RECORD ? 1 : 4;
+		if (idLength > 0)
+			length++;
+		return length;
+	}
+
+	private void writeHeader(ByteBuffer out, byte header, byte tnf, byte[] type, byte[] id, int payloadLength) {
+		if (payloadLength <= MAX_LENGTH_FOR_SHORT_RECORD)
+			header |= NdefConstants.SR;
+		if (id.length > 0)
+			header |= NdefConstants.IL;
+		header |= tnf;
+		out.put(header);
+		out.put((byte)type.length);
+		if (payloadLength <= MAX_LENGTH_FOR_SHORT_RECORD)
+			out.put((byte)payloadLength);
+		else {
+			out.put((byte)(payloadLength >>> 24));
+			out.put((byte)(payloadLength >>> 16));
+			out.put((byte)(payloadLength >>> 8));
+			out.put((byte)(payloadLength & 0xff));
+		}
+		if (id.length > 0)
+			out.put((byte)id.length);
+		out.put(type);
+		out.put(id);
+	}
+
+	private void writeChunkedNdefRecord(OutputStream out, byte header, boolean last, NdefRecord ndefRecord,
+			int maxChunkSize) throws IOException {
+		byte[] payload = ndefRecord.getPayload();
+		for (int offset = 0; offset < payload.length; offset += maxChunkSize) {
+			int length = Math.min(maxChunkSize, payload.length - offset);
+			boolean terminating = offset + length == payload.length;
+
+			byte chunkHeader = header;
+			if (!terminating)
+				chunkHeader |= NdefConstants.CF;
+			else if (last)
+				chunkHeader |= NdefConstants.ME;
+			if (length <= MAX_LENGTH_FOR_SHORT_RECORD)
+				chunkHeader |= NdefConstants.SR;
+
+			if (offset == 0) {
+				if (ndefRecord.getId().length > 0)
+					chunkHeader |= NdefConstants.IL;
+				chunkHeader |= ndefRecord.getTnf();
+				out.write(chunkHeader);
+				out.write(ndefRecord.getType().length);
+				writePayloadLength(out, length);
+				writeIdLength(out, ndefRecord.getId().length);
+				writeBytes(out, ndefRecord.getType());
+				writeBytes(out, ndefRecord.getId());
+			}
+			else {
+				out.write(chunkHeader | NdefConstants.TNF_UNCHANGED);
+				out.write(0);
+				writePayloadLength(out, length);
+			}
+			out.write(payload, offset, length);
+			header = 0;
+		}
+	}
+
+	private void writeNdefRecord(OutputStream baos, byte header, NdefRecord ndefRecord) throws IOException {
 		writeHeader(baos, header, ndefRecord);
 		baos.write(ndefRecord.getType().length);
 		writePayloadLength(baos, ndefRecord.getPayload().length);
@@ -84,7 +386,7 @@ public class NdefMessageEncoder {
 		writeBytes(baos, ndefRecord.getPayload());
 	}
 
-	private void writeHeader(ByteArrayOutputStream baos, byte header, NdefRecord ndefRecord) {
+	private void writeHeader(OutputStream baos, byte header, NdefRecord ndefRecord) throws IOException {
 		header = setShortRecord(header, ndefRecord);
 		header = setIdLength(header, ndefRecord);
 		header = setTypeNameFormat(header, ndefRecord);
@@ -110,16 +412,16 @@ public class NdefMessageEncoder {
 		return header;
 	}
 
-	private void writeBytes(ByteArrayOutputStream baos, byte[] bytes) {
+	private void writeBytes(OutputStream baos, byte[] bytes) throws IOException {
 		baos.write(bytes, 0, bytes.length);
 	}
 
-	private void writeIdLength(ByteArrayOutputStream baos, int length) {
+	private void writeIdLength(OutputStream baos, int length) throws IOException {
 		if (length > 0)
 			baos.write(length);
 	}
 
-	private void writePayloadLength(ByteArrayOutputStream baos, int length) {
+	private void writePayloadLength(OutputStream baos, int length) throws IOException {
 		if (length <= MAX_LENGTH_FOR_SHORT_RECORD) {
 			baos.write(length);
 		}
@@ -132,4 +434,64 @@ public class NdefMessageEncoder {
 			baos.write(payloadLengthArray, 0, payloadLengthArray.length);
 		}
 	}
+
+	/**
+	 * Payload lengths in the order the records are sized. The arrays are reused for every message written on a thread.
+	 */
+	private static final class PayloadLengths {
+
+		private Record[] records = new Record[16];
+		private int[] lengths = new int[16];
+		/** The number of sized records. */
+		private int size;
+		/** The slot of the next record to be written. */
+		private int next;
+		private int depth;
+
+		private void begin() {
+			depth++;
+		}
+
+		private void end() {
+			if (--depth == 0) {
+				Arrays.fill(records, 0, size, null);
+				size = 0;
+				next = 0;
+			}
+		}
+
+		/**
+		 * @return the slot for the length of the record
+		 */
+		private int add(Record record) {
+			if (size == records.length) {
+				records = Arrays.copyOf(records, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+			}
+			records[size] = record;
+			return size++;
+		}
+
+		/**
+		 * @return the length of the record if it is the next one sized or -1
+		 */
+		private int next(Record record) {
+			if (next < size && records[next] == record)
+				return lengths[next++];
+			return -1;
+		}
+	}
+
+	private static final class FrozenEncoding extends RecordEncoding {
+
+		private final NdefRecordEncoder recordEncoder;
+		private final int revision;
+		private final NdefRecord ndefRecord;
+
+		private FrozenEncoding(NdefRecordEncoder recordEncoder, int revision, NdefRecord ndefRecord) {
+			this.recordEncoder = recordEncoder;
+			this.revision = revision;
+			this.ndefRecord = ndefRecord;
+		}
+	}
 }
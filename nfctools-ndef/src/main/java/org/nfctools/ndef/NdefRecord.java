@@ -15,9 +15,17 @@
  */
 package org.nfctools.ndef;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 /**
  * 
  * An NDEF record contains a payload described by a type, a length, and an optional identifier
+ * 
+ * The type, id and payload are held as {@link ByteBuffer} views. Records decoded with
+ * {@link NdefMessageDecoder#decode(ByteBuffer)} share the memory of the source buffer, a byte array copy is only
+ * made when one of the array getters is called.
  *
  */
 
@@ -28,11 +36,11 @@ public class NdefRecord {
 	  *	[RFC 3986], MIME media type constructs [RFC 2616], as well as an NFC-specific
 	  *	record type as type identifiers. 
 	  */
-	private byte[] type;
+	private ByteBuffer type;
 	/** An optional URI that can be used to identify a payload */
-	private byte[] id;
+	private ByteBuffer id;
 	/** The application data carried within an NDEF record. */
-	private byte[] payload;
+	private ByteBuffer payload;
 	/**
 	 * Application data that has been partitioned into multiple chunks each carried in a separate
 	 * NDEF record, where each of these records except the last has the CF flag set to 1. This
@@ -40,16 +48,44 @@ public class NdefRecord {
 	 * not known in advance or very large entities that don't fit into a single NDEF record.
 	 */
 	private boolean chunked = false;
+	/** Payload views of the chunks of a reassembled chunked payload, null for other records. */
+	private ByteBuffer[] payloadChunks;
+
+	private byte[] typeArray;
+	private byte[] idArray;
+	private byte[] payloadArray;
 
 	public NdefRecord(byte tnf, boolean chunked, byte[] type, byte[] id, byte[] payload) {
+		this(tnf, chunked, wrap(type), wrap(id), wrap(payload));
+		this.typeArray = type;
+		this.idArray = id;
+		this.payloadArray = payload;
+	}
+
+	public NdefRecord(byte tnf, byte[] type, byte[] id, byte[] payload) {
+		this(tnf, false, type, id, payload);
+	}
+
+	/**
+	 * Creates a record over the given buffer views. The buffers are used as they are, their position and limit
+	 * must frame the type, id and payload.
+	 */
+	public NdefRecord(byte tnf, boolean chunked, ByteBuffer type, ByteBuffer id, ByteBuffer payload) {
 		this.tnf = tnf;
 		this.chunked = chunked;
 		this.type = type;
 		this.id = id;
 		this.payload = payload;
 	}
-	public NdefRecord(byte tnf, byte[] type, byte[] id, byte[] payload) {
-		this(tnf, false, type, id, payload);
+
+	/**
+	 * Creates an unchunked record from the payloads of a chunked record sequence. The chunk views are kept as they
+	 * are, they are only concatenated if the payload is requested as array or as a single buffer.
+	 */
+	public NdefRecord(byte tnf, ByteBuffer type, ByteBuffer id, ByteBuffer[] payloadChunks) {
+		this(tnf, false, type, id, payloadChunks.length == 1 ? payloadChunks[0] : null);
+		if (payloadChunks.length != 1)
+			this.payloadChunks = payloadChunks;
 	}
 
 	public boolean isChunked() {
@@ -61,19 +97,118 @@ public class NdefRecord {
 	}
 
 	public byte[] getType() {
-		return type;
+		if (typeArray == null && type != null)
+			typeArray = toArray(type);
+		return typeArray;
 	}
 
 	public byte[] getId() {
-		return id;
+		if (idArray == null && id != null)
+			idArray = toArray(id);
+		return idArray;
 	}
 
 	public byte[] getPayload() {
-		return payload;
+		if (payloadArray == null) {
+			if (payloadChunks != null)
+				payloadArray = RecordUtils.concatenate(payloadChunks);
+			else if (payload != null)
+				payloadArray = toArray(payload);
+		}
+		return payloadArray;
 	}
-	
+
+	/**
+	 * @return a read-only view of the type, no bytes are copied
+	 */
+	public ByteBuffer getTypeBuffer() {
+		return view(type);
+	}
+
+	/**
+	 * @return a read-only view of the id, no bytes are copied
+	 */
+	public ByteBuffer getIdBuffer() {
+		return view(id);
+	}
+
+	/**
+	 * @return a read-only view of the payload, no bytes are copied
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		if (payload == null && payloadChunks != null)
+			payload = ByteBuffer.wrap(getPayload());
+		return view(payload);
+	}
+
+	/**
+	 * @return the payload as stream. The payload of a reassembled chunked record is streamed chunk by chunk without
+	 *         concatenating the chunks.
+	 */
+	public InputStream getPayloadStream() {
+		if (payloadArray != null)
+			return new ByteArrayInputStream(payloadArray);
+		if (payloadChunks != null)
+			return RecordUtils.toInputStream(payloadChunks);
+		return new ByteBufferInputStream(payload.duplicate());
+	}
+
+	/**
+	 * @return read-only views of the chunk payloads this record was reassembled from, or a single view of the payload
+	 *         for any other record
+	 */
+	public ByteBuffer[] getPayloadChunks() {
+		if (payloadChunks == null)
+			return new ByteBuffer[] { getPayloadBuffer() };
+		ByteBuffer[] chunks = new ByteBuffer[payloadChunks.length];
+		for (int i = 0; i < chunks.length; i++)
+			chunks[i] = view(payloadChunks[i]);
+		return chunks;
+	}
+
+	/**
+	 * @return the type buffer itself without a read-only view, for lookups within the package. Must not be modified.
+	 */
+	ByteBuffer typeBuffer() {
+		return type;
+	}
+
+	/**
+	 * @return a duplicate of the payload buffer that keeps access to a heap array, for decoding within the package.
+	 *         Must not be modified.
+	 */
+	ByteBuffer payloadBuffer() {
+		if (payload == null && payloadChunks != null)
+			payload = ByteBuffer.wrap(getPayload());
+		return payload.duplicate();
+	}
+
+	public int getTypeLength() {
+		return type == null ? 0 : type.remaining();
+	}
+
+	public int getIdLength() {
+		return id == null ? 0 : id.remaining();
+	}
+
 	public int getPayloadSize() {
-		return payload.length;
+		if (payload == null && payloadChunks != null)
+			return RecordUtils.getRemaining(payloadChunks);
+		return payload.remaining();
+	}
+
+	private static ByteBuffer wrap(byte[] bytes) {
+		return bytes == null ? null : ByteBuffer.wrap(bytes);
+	}
+
+	private static ByteBuffer view(ByteBuffer buffer) {
+		return buffer == null ? null : buffer.asReadOnlyBuffer();
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
 	}
 
 }
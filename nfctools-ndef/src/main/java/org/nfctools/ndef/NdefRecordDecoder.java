@@ -15,9 +15,6 @@
  */
 package org.nfctools.ndef;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.nfctools.ndef.auri.AbsoluteUriRecordDecoder;
 import org.nfctools.ndef.empty.EmptyRecordDecoder;
 import org.nfctools.ndef.ext.ExternalTypeDecoder;
@@ -29,21 +26,35 @@ import org.nfctools.ndef.wkt.WellKnownRecordConfig;
 import org.nfctools.ndef.wkt.WellKnownRecordDecoder;
 import org.nfctools.ndef.wkt.decoder.RecordDecoder;
 
+/**
+ * Decodes single NDEF records by TNF and type. Thread safe, record configurations are looked up in the immutable
+ * snapshots of the {@link RecordConfigRegistry}.
+ */
 public class NdefRecordDecoder {
 
-	private WellKnownRecordDecoder wellKnownRecordDecoder = new WellKnownRecordDecoder();
+	private final RecordConfigRegistry registry;
+
+	private final WellKnownRecordDecoder wellKnownRecordDecoder;
 
-	private ExternalTypeDecoder externalTypeDecoder = new ExternalTypeDecoder();
+	private final ExternalTypeDecoder externalTypeDecoder;
 	
-	private List<RecordDecoder<? extends Record>> recordDecoders = new ArrayList<RecordDecoder<? extends Record>>();
+	/** Decoders indexed by the TNF they decode, the 3 bit TNF field needs no range check. */
+	private final RecordDecoder<?>[] recordDecoders = new RecordDecoder<?>[8];
 	
 	public NdefRecordDecoder() {
-		recordDecoders.add(wellKnownRecordDecoder);
-		recordDecoders.add(new AbsoluteUriRecordDecoder());
-		recordDecoders.add(new MimeRecordDecoder());
-		recordDecoders.add(externalTypeDecoder);
-		recordDecoders.add(new EmptyRecordDecoder());
-		recordDecoders.add(new UnknownRecordDecoder());
+		this(new RecordConfigRegistry());
+	}
+
+	public NdefRecordDecoder(RecordConfigRegistry registry) {
+		this.registry = registry;
+		wellKnownRecordDecoder = new WellKnownRecordDecoder(registry);
+		externalTypeDecoder = new ExternalTypeDecoder(registry);
+		recordDecoders[NdefConstants.TNF_EMPTY] = new EmptyRecordDecoder();
+		recordDecoders[NdefConstants.TNF_WELL_KNOWN] = wellKnownRecordDecoder;
+		recordDecoders[NdefConstants.TNF_MIME_MEDIA] = new MimeRecordDecoder();
+		recordDecoders[NdefConstants.TNF_ABSOLUTE_URI] = new AbsoluteUriRecordDecoder();
+		recordDecoders[NdefConstants.TNF_EXTERNAL_TYPE] = externalTypeDecoder;
+		recordDecoders[NdefConstants.TNF_UNKNOWN] = new UnknownRecordDecoder();
 	}
 
 	public Record decode(NdefRecord ndefRecord, NdefMessageDecoder messageDecoder) {
@@ -52,10 +63,18 @@ public class NdefRecordDecoder {
 			throw new IllegalArgumentException("Cannot decode chunked record");
 		}
 
-		for (RecordDecoder<? extends Record> decoder : recordDecoders) {
-			if (decoder.canDecode(ndefRecord))
-				return decoder.decodeRecord(ndefRecord, messageDecoder);
+		if (ndefRecord.getTnf() == NdefConstants.TNF_WELL_KNOWN) {
+			// a single type lookup instead of one in canDecode and one in decodeRecord
+			WellKnownRecordConfig config = registry.getWellKnownRecordConfig(ndefRecord);
+			if (config != null)
+				return wellKnownRecordDecoder.decodeRecord(ndefRecord, ndefRecord.payloadBuffer(), config,
+						messageDecoder);
+			return new UnsupportedRecord(ndefRecord);
 		}
+
+		RecordDecoder<?> decoder = recordDecoders[ndefRecord.getTnf() & NdefConstants.TNF_MASK];
+		if (decoder != null && decoder.canDecode(ndefRecord))
+			return decoder.decodeRecord(ndefRecord, messageDecoder);
 		
 		// NFC Data Exchange Format (NDEF) 1.0:
 		// An NDEF parser that receives an NDEF record with an unknown or unsupported TNF field value SHOULD treat it as 0x05 (Unknown).
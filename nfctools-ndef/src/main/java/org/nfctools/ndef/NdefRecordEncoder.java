@@ -15,8 +15,12 @@
  */
 package org.nfctools.ndef;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.nfctools.ndef.auri.AbsoluteUriRecordEncoder;
 import org.nfctools.ndef.empty.EmptyRecordEncoder;
@@ -32,11 +36,26 @@ import org.nfctools.ndef.wkt.encoder.RecordEncoder;
 public class NdefRecordEncoder {
 
 	private List<RecordEncoder> knownRecordEncoders = new ArrayList<RecordEncoder>();
-	private WellKnownRecordEncoder wellKnownRecordEncoder = new WellKnownRecordEncoder();
+	private WellKnownRecordEncoder wellKnownRecordEncoder;
 	
-	private ExternalTypeEncoder externalTypeEncoder = new ExternalTypeEncoder();
+	private ExternalTypeEncoder externalTypeEncoder;
+
+	private RecordConfigRegistry registry;
+
+	/**
+	 * Encoders resolved per record class. The map is replaced on every new class and dropped when the registry
+	 * changes, so lookups need no locking.
+	 */
+	private volatile EncoderCache encoderCache = new EncoderCache(-1, Collections.<Class<?>, RecordEncoder> emptyMap());
 
 	public NdefRecordEncoder() {
+		this(new RecordConfigRegistry());
+	}
+
+	public NdefRecordEncoder(RecordConfigRegistry registry) {
+		this.registry = registry;
+		wellKnownRecordEncoder = new WellKnownRecordEncoder(registry);
+		externalTypeEncoder = new ExternalTypeEncoder(registry);
 		knownRecordEncoders.add(wellKnownRecordEncoder);
 		knownRecordEncoders.add(new MimeRecordEncoder());
 		knownRecordEncoders.add(new AbsoluteUriRecordEncoder());
@@ -47,14 +66,62 @@ public class NdefRecordEncoder {
 	}
 
 	public NdefRecord encode(Record record, NdefMessageEncoder messageEncoder) {
+		return getRecordEncoder(record).encodeRecord(record, messageEncoder);
+	}
+
+	private RecordEncoder getRecordEncoder(Record record) {
+		EncoderCache cache = encoderCache;
+		int revision = registry.getRevision();
+		if (cache.revision == revision) {
+			RecordEncoder encoder = cache.encoders.get(record.getClass());
+			if (encoder != null)
+				return encoder;
+		}
 		for (RecordEncoder encoder : knownRecordEncoders) {
 			if (encoder.canEncode(record)) {
-				return encoder.encodeRecord(record, messageEncoder);
+				Map<Class<?>, RecordEncoder> encoders = new HashMap<Class<?>, RecordEncoder>();
+				if (cache.revision == revision)
+					encoders.putAll(cache.encoders);
+				encoders.put(record.getClass(), encoder);
+				encoderCache = new EncoderCache(revision, encoders);
+				return encoder;
 			}
 		}
 		throw new IllegalArgumentException("Unsupported record [" + record.getClass().getName() + "]");
 	}
 
+	/**
+	 * @return true if the record payload can be sized and written into a buffer without encoding an
+	 *         {@link NdefRecord} first
+	 */
+	public boolean canEncodePayload(Record record) {
+		return wellKnownRecordEncoder.canEncodePayload(record);
+	}
+
+	public byte getTnf(Record record) {
+		return NdefConstants.TNF_WELL_KNOWN;
+	}
+
+	byte[] getType(Record record) {
+		return wellKnownRecordEncoder.getRecordType(record).getTypeArray();
+	}
+
+	public int getPayloadLength(Record record, NdefMessageEncoder messageEncoder) {
+		return wellKnownRecordEncoder.getPayloadLength(record, messageEncoder);
+	}
+
+	public void encodePayload(Record record, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		wellKnownRecordEncoder.encodePayload(record, messageEncoder, out);
+	}
+
+	/**
+	 * @return a number that changes whenever the record configurations change, encodings kept for frozen records are
+	 *         only valid for the same revision
+	 */
+	public int getRevision() {
+		return registry.getRevision();
+	}
+
 	public void registerWellKnownRecordConfig(WellKnownRecordConfig recordconfig) {
 		wellKnownRecordEncoder.addRecordConfig(recordconfig);
 	}
@@ -62,5 +129,15 @@ public class NdefRecordEncoder {
 	public void registerExternalTypeRecordConfig(ExternalTypeRecordConfig recordconfig) {
 		externalTypeEncoder.addRecordConfig(recordconfig);
 	}
-	
+
+	private static final class EncoderCache {
+
+		private final int revision;
+		private final Map<Class<?>, RecordEncoder> encoders;
+
+		private EncoderCache(int revision, Map<Class<?>, RecordEncoder> encoders) {
+			this.revision = revision;
+			this.encoders = encoders;
+		}
+	}
 }
@@ -0,0 +1,341 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull parser for NDEF messages of any size. Each call to {@link #nextRecord()} reads one record header, the payload of the
+ * current record can then be consumed from {@link #getPayloadStream()}. Unread payload bytes are skipped when moving
+ * to the next record, so only the header of a single record is held in memory.
+ *
+ * The MB and ME flags are checked while reading. The iterator ends after the record with the ME flag, the stream is
+ * not read any further.
+ *
+ * With {@link #setReassembleChunks(boolean)} enabled a chunked record sequence is returned as a single record, its
+ * payload stream continues over the middle and terminating chunks as they are read, so a large chunked payload can be
+ * processed before the last chunk arrives.
+ *
+ * <pre>
+ * NdefRecordIterator it = new NdefRecordIterator(in);
+ * while (it.hasNextRecord()) {
+ * 	it.nextRecord();
+ * 	InputStream payload = it.getPayloadStream();
+ * 	...
+ * }
+ * </pre>
+ *
+ * As an {@link Iterator} each record is read fully into memory, an {@link IOException} is thrown wrapped in a
+ * {@link RuntimeException}.
+ */
+public class NdefRecordIterator implements Iterator<NdefRecord> {
+
+	private InputStream in;
+
+	private int pendingHeader = -1;
+	private int recordCount = 0;
+	private boolean messageEnd = false;
+	private boolean reassembleChunks = false;
+
+	private int header;
+	private byte[] type;
+	private byte[] id;
+	private PayloadInputStream payloadStream;
+
+	public NdefRecordIterator(InputStream in) {
+		this.in = in;
+	}
+
+	public NdefRecordIterator(ReadableByteChannel channel) {
+		this(Channels.newInputStream(channel));
+	}
+
+	/**
+	 * Enables chunk reassembly. The chunks following a chunked record are then read through its payload stream and
+	 * not returned as records of their own.
+	 */
+	public void setReassembleChunks(boolean reassembleChunks) {
+		this.reassembleChunks = reassembleChunks;
+	}
+
+	public boolean isReassembleChunks() {
+		return reassembleChunks;
+	}
+
+	/**
+	 * @return true if there is another record in the message. Skips the remaining payload of the current record.
+	 */
+	public boolean hasNextRecord() throws IOException {
+		if (pendingHeader != -1)
+			return true;
+		skipPayload();
+		if (messageEnd)
+			return false;
+		pendingHeader = in.read();
+		if (pendingHeader == -1) {
+			if (recordCount > 0)
+				throw new IllegalArgumentException("no Message End record at the end of stream");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the header, type and id of the next record.
+	 */
+	public void nextRecord() throws IOException {
+		if (!hasNextRecord())
+			throw new NoSuchElementException("no more records");
+
+		header = pendingHeader;
+		pendingHeader = -1;
+
+		if (recordCount == 0 && !isMessageBegin())
+			throw new IllegalArgumentException("no Message Begin record at the begining");
+		if (recordCount > 0 && isMessageBegin())
+			throw new IllegalArgumentException("unexpected Message Begin record at " + recordCount);
+		if (isChunked() && isMessageEnd())
+			throw new IllegalArgumentException("Message End in chunked record at " + recordCount);
+
+		int typeLength = readUnsignedByte();
+		long payloadLength = readPayloadLength(header);
+		int idLength = (header & NdefConstants.IL) != 0 ? readUnsignedByte() : 0;
+
+		type = RecordUtils.readByteArray(in, typeLength);
+		id = RecordUtils.readByteArray(in, idLength);
+		payloadStream = new PayloadInputStream(payloadLength, reassembleChunks && isChunked());
+
+		recordCount++;
+		messageEnd = isMessageEnd();
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			return hasNextRecord();
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads the next record including its payload.
+	 */
+	@Override
+	public NdefRecord next() {
+		try {
+			nextRecord();
+			return readNdefRecord();
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public byte getTnf() {
+		return (byte)(header & NdefConstants.TNF_MASK);
+	}
+
+	public boolean isMessageBegin() {
+		return (header & NdefConstants.MB) != 0;
+	}
+
+	public boolean isMessageEnd() {
+		return (header & NdefConstants.ME) != 0;
+	}
+
+	/**
+	 * @return true if the current record is the first or a middle chunk of a chunked payload. With chunk reassembly
+	 *         enabled this is the first chunk, its payload stream covers all chunks.
+	 */
+	public boolean isChunked() {
+		return (header & NdefConstants.CF) != 0;
+	}
+
+	public byte[] getType() {
+		return type;
+	}
+
+	public byte[] getId() {
+		return id;
+	}
+
+	/**
+	 * @return the payload length of the current record or -1 if the payload is reassembled from chunks
+	 */
+	public long getPayloadLength() {
+		return payloadStream.moreChunks || payloadStream.reassembled ? -1 : payloadStream.length;
+	}
+
+	/**
+	 * @return a stream over the payload of the current record. It ends at the end of the payload and does not close
+	 *         the underlying stream.
+	 */
+	public InputStream getPayloadStream() {
+		return payloadStream;
+	}
+
+	/**
+	 * Reads the unread rest of the current payload into a record. Only use this for payloads known to fit into memory.
+	 */
+	public NdefRecord readNdefRecord() throws IOException {
+		if (payloadStream.reassembled || payloadStream.moreChunks) {
+			byte[] payload = RecordUtils.readFully(payloadStream);
+			return new NdefRecord(getTnf(), false, ByteBuffer.wrap(type), ByteBuffer.wrap(id),
+					ByteBuffer.wrap(payload));
+		}
+		if (payloadStream.remaining > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("payload too large " + payloadStream.remaining);
+		byte[] payload = RecordUtils.readByteArray(payloadStream, (int)payloadStream.remaining);
+		return new NdefRecord(getTnf(), isChunked(), ByteBuffer.wrap(type), ByteBuffer.wrap(id),
+				ByteBuffer.wrap(payload));
+	}
+
+	/**
+	 * @return the number of records read so far
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	private void skipPayload() throws IOException {
+		if (payloadStream != null) {
+			do {
+				while (payloadStream.remaining > 0) {
+					if (payloadStream.skip(payloadStream.remaining) == 0 && payloadStream.read() == -1)
+						throw new EOFException();
+				}
+			} while (payloadStream.nextChunk());
+		}
+	}
+
+	private long readPayloadLength(int header) throws IOException {
+		if ((header & NdefConstants.SR) != 0)
+			return readUnsignedByte();
+		long payloadLength = 0;
+		for (int i = 0; i < 4; i++)
+			payloadLength = (payloadLength << 8) | readUnsignedByte();
+		return payloadLength;
+	}
+
+	private int readUnsignedByte() throws IOException {
+		int value = in.read();
+		if (value == -1)
+			throw new EOFException();
+		return value;
+	}
+
+	private class PayloadInputStream extends InputStream {
+
+		private long length;
+		private long remaining;
+		private boolean moreChunks;
+		private boolean reassembled;
+
+		public PayloadInputStream(long length, boolean moreChunks) {
+			this.length = length;
+			this.remaining = length;
+			this.moreChunks = moreChunks;
+		}
+
+		/**
+		 * Reads the header of the next chunk once the current chunk is consumed.
+		 * 
+		 * @return false if there are no more chunks
+		 */
+		private boolean nextChunk() throws IOException {
+			if (!moreChunks)
+				return false;
+			int chunkHeader = readUnsignedByte();
+			if ((chunkHeader & NdefConstants.TNF_MASK) != NdefConstants.TNF_UNCHANGED)
+				throw new IllegalArgumentException("Expected 'unchanged' record type in chunk of record " + recordCount);
+			if ((chunkHeader & NdefConstants.MB) != 0)
+				throw new IllegalArgumentException("unexpected Message Begin in chunk of record " + recordCount);
+			if (readUnsignedByte() != 0)
+				throw new IllegalArgumentException("Expected no record type in chunk of record " + recordCount);
+			long chunkLength = readPayloadLength(chunkHeader);
+			if ((chunkHeader & NdefConstants.IL) != 0 && readUnsignedByte() != 0)
+				throw new IllegalArgumentException("Expected no record id in chunk of record " + recordCount);
+
+			length += chunkLength;
+			remaining = chunkLength;
+			moreChunks = (chunkHeader & NdefConstants.CF) != 0;
+			reassembled = true;
+			if (!moreChunks)
+				messageEnd = (chunkHeader & NdefConstants.ME) != 0;
+			else if ((chunkHeader & NdefConstants.ME) != 0)
+				throw new IllegalArgumentException("unexpected Message End in middle chunk of record " + recordCount);
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			while (remaining == 0) {
+				if (!nextChunk())
+					return -1;
+			}
+			int value = in.read();
+			if (value == -1)
+				throw new EOFException();
+			remaining--;
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			while (remaining == 0) {
+				if (!nextChunk())
+					return -1;
+			}
+			int count = in.read(b, off, (int)Math.min(len, remaining));
+			if (count == -1)
+				throw new EOFException();
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(in.available(), remaining);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
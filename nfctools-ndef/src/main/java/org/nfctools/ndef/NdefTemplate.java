@@ -0,0 +1,411 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.nfctools.ndef.mime.TextMimeRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+/**
+ * A pre-encoded NDEF message with placeholder slots, for writing many tags that differ only in a few values like a
+ * serial number. The records are encoded once with the placeholder strings in place. The template records where each
+ * placeholder occurs and which payload length fields enclose it, so an instance is produced by copying the template
+ * and patching the slot bytes and the affected record headers. No records are encoded per instance.
+ * 
+ * <pre>
+ * NdefTemplate template = new NdefTemplate(NdefContext.getNdefRecordEncoder(),
+ * 		Arrays.asList(new UriRecord(&quot;https://example.com/tag/{serial}&quot;)), &quot;{serial}&quot;);
+ * byte[] ndefMessage = template.instantiate(&quot;000042&quot;);
+ * </pre>
+ * 
+ * A slot value may have a different length than its placeholder if the slot lies in the text of a
+ * {@link TextRecord}, the URI of a {@link UriRecord} or the content of an ASCII or UTF-8 {@link TextMimeRecord}, also when these
+ * are nested in a smart poster or another record with a nested message. Payload lengths of the enclosing records are
+ * adjusted and their short record flags switched when a payload crosses 255 bytes. In all other records the encoded
+ * value must have the length of the encoded placeholder. This includes the records nested in a frozen record, which is
+ * written from its kept encoding as a whole.
+ * 
+ * Placeholders are searched in their UTF-8 form and in UTF-16 for UTF-16 text records, values are encoded in the
+ * same form. A template is immutable and can be shared between threads.
+ */
+public class NdefTemplate {
+
+	private static final int MAX_LENGTH_FOR_SHORT_RECORD = 255;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset UTF16 = Charset.forName("UTF-16BE");
+
+	private final byte[] template;
+	private final String[] placeholders;
+	private final Frame[] frames;
+	private final Slot[] slots;
+	/**
+	 * Frame headers and slots ordered by their offset in the template.
+	 */
+	private final Object[] edits;
+
+	/**
+	 * Encodes the records with the given placeholders in place.
+	 * 
+	 * @throws IllegalArgumentException if a placeholder does not occur in a record payload
+	 */
+	public NdefTemplate(NdefRecordEncoder ndefRecordEncoder, List<? extends Record> records, String... placeholders) {
+		this.placeholders = placeholders.clone();
+
+		FrameRecorder recorder = new FrameRecorder(ndefRecordEncoder);
+		ByteBuffer buffer = ByteBuffer.allocate(recorder.getEncodedLength(records));
+		recorder.template = buffer;
+		recorder.encode(records, buffer);
+		template = buffer.array();
+
+		List<Slot> slotList = new ArrayList<Slot>();
+		for (int i = 0; i < placeholders.length; i++) {
+			if (placeholders[i] == null || placeholders[i].length() == 0)
+				throw new IllegalArgumentException("Expected non empty placeholder at " + i);
+			int count = findSlots(i, false, recorder.frames, slotList) + findSlots(i, true, recorder.frames, slotList);
+			if (count == 0)
+				throw new IllegalArgumentException("placeholder [" + placeholders[i] + "] not found");
+		}
+		Collections.sort(slotList, new Comparator<Slot>() {
+
+			@Override
+			public int compare(Slot slot1, Slot slot2) {
+				return slot1.offset - slot2.offset;
+			}
+		});
+		for (int i = 1; i < slotList.size(); i++) {
+			Slot previous = slotList.get(i - 1);
+			if (previous.offset + previous.length > slotList.get(i).offset)
+				throw new IllegalArgumentException("placeholders [" + placeholders[previous.index] + "] and ["
+						+ placeholders[slotList.get(i).index] + "] overlap");
+		}
+		slots = slotList.toArray(new Slot[slotList.size()]);
+
+		List<Frame> frameList = new ArrayList<Frame>();
+		for (Slot slot : slots) {
+			for (Frame frame = slot.frame; frame != null && frame.index == -1; frame = frame.parent) {
+				frame.index = 0;
+				frameList.add(frame);
+			}
+		}
+		Collections.sort(frameList, new Comparator<Frame>() {
+
+			@Override
+			public int compare(Frame frame1, Frame frame2) {
+				return frame1.headerOffset - frame2.headerOffset;
+			}
+		});
+		for (int i = 0; i < frameList.size(); i++)
+			frameList.get(i).index = i;
+		frames = frameList.toArray(new Frame[frameList.size()]);
+
+		edits = new Object[frames.length + slots.length];
+		int frameIndex = 0;
+		int slotIndex = 0;
+		for (int i = 0; i < edits.length; i++) {
+			if (slotIndex == slots.length
+					|| (frameIndex < frames.length && frames[frameIndex].headerOffset < slots[slotIndex].offset))
+				edits[i] = frames[frameIndex++];
+			else
+				edits[i] = slots[slotIndex++];
+		}
+	}
+
+	/**
+	 * @return the placeholders in the order the values are passed to {@link #instantiate(String...)}
+	 */
+	public String[] getPlaceholders() {
+		return placeholders.clone();
+	}
+
+	/**
+	 * @return a copy of the message encoded with the placeholders
+	 */
+	public byte[] getTemplate() {
+		return template.clone();
+	}
+
+	/**
+	 * @return the length of the message with the given slot values
+	 */
+	public int getEncodedLength(String... values) {
+		return computePayloadLengths(values, new int[frames.length]);
+	}
+
+	/**
+	 * @return the message with the placeholders replaced by the values
+	 */
+	public byte[] instantiate(String... values) {
+		int[] payloadLengths = new int[frames.length];
+		byte[] message = new byte[computePayloadLengths(values, payloadLengths)];
+		write(values, payloadLengths, ByteBuffer.wrap(message));
+		return message;
+	}
+
+	/**
+	 * Writes the message with the placeholders replaced by the values into the buffer, starting at its position.
+	 * 
+	 * @return the number of bytes written
+	 * @throws IllegalArgumentException if the remaining buffer is too small
+	 */
+	public int instantiate(ByteBuffer out, String... values) {
+		int[] payloadLengths = new int[frames.length];
+		int length = computePayloadLengths(values, payloadLengths);
+		if (length > out.remaining())
+			throw new IllegalArgumentException("Expected buffer with at least " + length + " bytes remaining but was "
+					+ out.remaining());
+		write(values, payloadLengths, out);
+		return length;
+	}
+
+	/**
+	 * Computes the new payload length of every frame, inner frames first.
+	 * 
+	 * @return the length of the message
+	 */
+	private int computePayloadLengths(String[] values, int[] payloadLengths) {
+		if (values.length != placeholders.length)
+			throw new IllegalArgumentException("Expected " + placeholders.length + " values but got " + values.length);
+		for (int i = 0; i < frames.length; i++)
+			payloadLengths[i] = frames[i].payloadLength;
+
+		int length = template.length;
+		for (Slot slot : slots) {
+			String value = values[slot.index];
+			if (value == null)
+				throw new IllegalArgumentException("Expected value for placeholder [" + placeholders[slot.index] + "]");
+			int delta = slot.getLength(value) - slot.length;
+			if (delta != 0 && !slot.variableLength)
+				throw new IllegalArgumentException("Expected value with " + slot.length + " bytes for placeholder ["
+						+ placeholders[slot.index] + "] but was [" + value + "]");
+			payloadLengths[slot.frame.index] += delta;
+		}
+		for (int i = frames.length - 1; i >= 0; i--) {
+			Frame frame = frames[i];
+			int delta = payloadLengths[i] - frame.payloadLength + getLengthFieldSize(payloadLengths[i])
+					- getLengthFieldSize(frame.payloadLength);
+			if (frame.parent != null)
+				payloadLengths[frame.parent.index] += delta;
+			else
+				length += delta;
+		}
+		return length;
+	}
+
+	private void write(String[] values, int[] payloadLengths, ByteBuffer out) {
+		int position = 0;
+		for (Object edit : edits) {
+			if (edit instanceof Frame) {
+				Frame frame = (Frame)edit;
+				out.put(template, position, frame.headerOffset - position);
+				writeHeader(template[frame.headerOffset], template[frame.headerOffset + 1],
+						payloadLengths[frame.index], out);
+				position = frame.headerOffset + 2 + getLengthFieldSize(frame.payloadLength);
+			}
+			else {
+				Slot slot = (Slot)edit;
+				out.put(template, position, slot.offset - position);
+				if (slot.utf16)
+					RecordUtils.putUtf16(values[slot.index], out);
+				else
+					RecordUtils.putUtf8(values[slot.index], 0, out);
+				position = slot.offset + slot.length;
+			}
+		}
+		out.put(template, position, template.length - position);
+	}
+
+	private void writeHeader(byte header, byte typeLength, int payloadLength, ByteBuffer out) {
+		if (payloadLength <= MAX_LENGTH_FOR_SHORT_RECORD) {
+			out.put((byte)(header | NdefConstants.SR));
+			out.put(typeLength);
+			out.put((byte)payloadLength);
+		}
+		else {
+			out.put((byte)(header & ~NdefConstants.SR));
+			out.put(typeLength);
+			out.putInt(payloadLength);
+		}
+	}
+
+	private static int getLengthFieldSize(int payloadLength) {
+		return payloadLength <= MAX_LENGTH_FOR_SHORT_RECORD ? 1 : 4;
+	}
+
+	/**
+	 * Adds a slot for every occurrence of the placeholder in the template.
+	 * 
+	 * @return the number of occurrences
+	 */
+	private int findSlots(int index, boolean utf16, List<Frame> recordedFrames, List<Slot> slotList) {
+		byte[] pattern = placeholders[index].getBytes(utf16 ? UTF16 : UTF8);
+		int count = 0;
+		for (int offset = indexOf(pattern, 0); offset != -1; offset = indexOf(pattern, offset + pattern.length)) {
+			Frame frame = findFrame(recordedFrames, offset, pattern.length);
+			if (frame == null)
+				throw new IllegalArgumentException("placeholder [" + placeholders[index]
+						+ "] is not within a single record payload");
+			slotList.add(new Slot(index, offset, pattern.length, utf16, frame, isVariableLength(frame.record, utf16)));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the innermost frame whose payload contains the range or null if the range is not within a payload
+	 */
+	private Frame findFrame(List<Frame> recordedFrames, int offset, int length) {
+		Frame innermost = null;
+		for (Frame frame : recordedFrames) {
+			if (offset >= frame.headerOffset && offset + length <= frame.getEnd()
+					&& (innermost == null || frame.headerOffset > innermost.headerOffset))
+				innermost = frame;
+		}
+		if (innermost == null || offset < innermost.getPayloadOffset())
+			return null;
+		for (Frame frame : recordedFrames) {
+			if (frame.parent == innermost && offset < frame.getEnd() && offset + length > frame.headerOffset)
+				return null;
+		}
+		return innermost;
+	}
+
+	private boolean isVariableLength(Record record, boolean utf16) {
+		if (record instanceof TextRecord)
+			return ((TextRecord)record).getEncoding().equals(utf16 ? TextRecord.UTF16 : TextRecord.UTF8);
+		if (record instanceof UriRecord)
+			return !utf16;
+		if (record instanceof TextMimeRecord) {
+			Charset charset = ((TextMimeRecord)record).getCharset();
+			return !utf16 && (charset.equals(UTF8) || charset.equals(NdefConstants.DEFAULT_CHARSET));
+		}
+		return false;
+	}
+
+	private int indexOf(byte[] pattern, int start) {
+		search: for (int offset = start; offset <= template.length - pattern.length; offset++) {
+			for (int i = 0; i < pattern.length; i++) {
+				if (template[offset + i] != pattern[i])
+					continue search;
+			}
+			return offset;
+		}
+		return -1;
+	}
+
+	/**
+	 * An encoded record in the template.
+	 */
+	private static final class Frame {
+
+		private final int headerOffset;
+		private final Frame parent;
+		private Record record;
+		private int typeLength;
+		private int idLength;
+		private int payloadLength;
+		private int index = -1;
+
+		private Frame(int headerOffset, Frame parent) {
+			this.headerOffset = headerOffset;
+			this.parent = parent;
+		}
+
+		private int getPayloadOffset() {
+			return headerOffset + 2 + getLengthFieldSize(payloadLength) + (idLength > 0 ? 1 : 0) + typeLength
+					+ idLength;
+		}
+
+		private int getEnd() {
+			return getPayloadOffset() + payloadLength;
+		}
+	}
+
+	/**
+	 * An occurrence of a placeholder.
+	 */
+	private static final class Slot {
+
+		private final int index;
+		private final int offset;
+		private final int length;
+		private final boolean utf16;
+		private final Frame frame;
+		private final boolean variableLength;
+
+		private Slot(int index, int offset, int length, boolean utf16, Frame frame, boolean variableLength) {
+			this.index = index;
+			this.offset = offset;
+			this.length = length;
+			this.utf16 = utf16;
+			this.frame = frame;
+			this.variableLength = variableLength;
+		}
+
+		private int getLength(String value) {
+			return utf16 ? value.length() * 2 : RecordUtils.getUtf8Length(value, 0);
+		}
+	}
+
+	/**
+	 * Records the position of every record written through {@link #encodeRecord(Record, boolean, boolean, ByteBuffer)}
+	 * into the template buffer including the records of nested messages.
+	 */
+	private static final class FrameRecorder extends NdefMessageEncoder {
+
+		private List<Frame> frames = new ArrayList<Frame>();
+		private Frame current;
+		private ByteBuffer template;
+
+		private FrameRecorder(NdefRecordEncoder ndefRecordEncoder) {
+			super(ndefRecordEncoder);
+		}
+
+		@Override
+		public void encodeRecord(Record record, boolean messageBegin, boolean messageEnd, ByteBuffer out) {
+			if (out != template) {
+				// a record encoded into an intermediate array, its offsets do not belong to the template
+				super.encodeRecord(record, messageBegin, messageEnd, out);
+				return;
+			}
+			Frame frame = new Frame(out.position(), current);
+			current = frame;
+			super.encodeRecord(record, messageBegin, messageEnd, out);
+			current = frame.parent;
+
+			int header = out.get(frame.headerOffset);
+			frame.record = record;
+			frame.typeLength = out.get(frame.headerOffset + 1) & 0xff;
+			if ((header & NdefConstants.SR) != 0) {
+				frame.payloadLength = out.get(frame.headerOffset + 2) & 0xff;
+				if ((header & NdefConstants.IL) != 0)
+					frame.idLength = out.get(frame.headerOffset + 3) & 0xff;
+			}
+			else {
+				frame.payloadLength = out.getInt(frame.headerOffset + 2);
+				if ((header & NdefConstants.IL) != 0)
+					frame.idLength = out.get(frame.headerOffset + 6) & 0xff;
+			}
+			frames.add(frame);
+		}
+	}
+}
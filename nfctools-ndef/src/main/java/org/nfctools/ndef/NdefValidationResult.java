@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+/**
+ * The result of {@link NdefValidator}. A result can be passed to the validator again, its offset table is reused so
+ * validating many messages with one result allocates nothing once the table fits the largest message.
+ */
+public class NdefValidationResult {
+
+	public enum ErrorType {
+		/** The buffer contains no record. */
+		NO_RECORDS,
+		/** A record header, length field, type, id or payload extends beyond the end of the buffer. */
+		TRUNCATED,
+		/** The payload length of a long record does not fit into a signed 32 bit integer. */
+		LENGTH_OUT_OF_BOUNDS,
+		/** The first record has no MB flag. */
+		MISSING_MESSAGE_BEGIN,
+		/** A record after the first has the MB flag. */
+		UNEXPECTED_MESSAGE_BEGIN,
+		/** The last record has no ME flag. */
+		MISSING_MESSAGE_END,
+		/** There are bytes after the record with the ME flag. */
+		DATA_AFTER_MESSAGE_END,
+		/** The record uses the reserved TNF 0x07. */
+		RESERVED_TNF,
+		/** A record with TNF empty has a type, id or payload. */
+		INVALID_EMPTY_RECORD,
+		/** A record with TNF unchanged that does not continue a chunked record. */
+		UNEXPECTED_UNCHANGED,
+		/** A middle or terminating chunk that does not have TNF unchanged, or has a type or id. */
+		INVALID_CHUNK,
+		/** A middle chunk has the ME flag. */
+		MESSAGE_END_IN_CHUNK,
+		/** The message ends before the terminating chunk of a chunked record. */
+		UNTERMINATED_CHUNK
+	}
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] recordOffsets = new int[INITIAL_CAPACITY];
+	private int recordCount;
+	private int length;
+	private ErrorType error;
+	private int errorOffset;
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	/**
+	 * @return the first error found or null if the message is valid
+	 */
+	public ErrorType getError() {
+		return error;
+	}
+
+	/**
+	 * @return the offset of the record header with the first error relative to the start of the message, -1 if the
+	 *         message is valid
+	 */
+	public int getErrorOffset() {
+		return errorOffset;
+	}
+
+	/**
+	 * @return the number of complete record headers read up to the first error. Each chunk counts as a record.
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the offset of the record header relative to the start of the message
+	 */
+	public int getRecordOffset(int index) {
+		if (index < 0 || index >= recordCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + recordCount);
+		return recordOffsets[index];
+	}
+
+	/**
+	 * @return the number of bytes up to the end of the last complete record
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	void reset() {
+		recordCount = 0;
+		length = 0;
+		error = null;
+		errorOffset = -1;
+	}
+
+	void addRecord(int offset, int end) {
+		if (recordCount == recordOffsets.length) {
+			int[] offsets = new int[recordOffsets.length * 2];
+			System.arraycopy(recordOffsets, 0, offsets, 0, recordCount);
+			recordOffsets = offsets;
+		}
+		recordOffsets[recordCount++] = offset;
+		length = end;
+	}
+
+	void setError(ErrorType error, int errorOffset) {
+		this.error = error;
+		this.errorOffset = errorOffset;
+	}
+
+	@Override
+	public String toString() {
+		return "NdefValidationResult [records=" + recordCount + ", length=" + length
+				+ (error != null ? ", error=" + error + " at " + errorOffset : "") + "]";
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+
+import org.nfctools.ndef.NdefValidationResult.ErrorType;
+
+/**
+ * Checks whether bytes are a well formed NDEF message without decoding it. The validator walks the record headers in
+ * place and checks the MB and ME flags, that all lengths stay within the buffer, the rules for records with TNF empty
+ * and that chunked records continue with TNF unchanged records without type and id up to a terminating chunk. Types
+ * and payloads are not interpreted.
+ * 
+ * No objects are created while validating into a reused {@link NdefValidationResult}. The validator has no state and
+ * can be shared between threads, a result must not be.
+ */
+public class NdefValidator {
+
+	public NdefValidationResult validate(byte[] ndefMessage) {
+		return validate(ndefMessage, 0, ndefMessage.length);
+	}
+
+	public NdefValidationResult validate(byte[] ndefMessage, int offset, int length) {
+		NdefValidationResult result = new NdefValidationResult();
+		validate(ByteBuffer.wrap(ndefMessage, offset, length), result);
+		return result;
+	}
+
+	public NdefValidationResult validate(ByteBuffer buffer) {
+		NdefValidationResult result = new NdefValidationResult();
+		validate(buffer, result);
+		return result;
+	}
+
+	/**
+	 * @return true if the message is valid
+	 */
+	public boolean isValid(ByteBuffer buffer) {
+		return validate(buffer).isValid();
+	}
+
+	/**
+	 * Validates the remaining bytes of the buffer into the given result. The buffer is not modified, offsets in the
+	 * result are relative to the position of the buffer.
+	 * 
+	 * @return true if the message is valid
+	 */
+	public boolean validate(ByteBuffer buffer, NdefValidationResult result) {
+		result.reset();
+		int start = buffer.position();
+		int limit = buffer.limit();
+		if (start == limit) {
+			result.setError(ErrorType.NO_RECORDS, 0);
+			return false;
+		}
+
+		int position = start;
+		boolean inChunk = false;
+		while (position < limit) {
+			int recordOffset = position - start;
+			if (result.getRecordCount() > 0 && !inChunk && isMessageEnd(buffer, result, start))
+				return fail(result, ErrorType.DATA_AFTER_MESSAGE_END, recordOffset);
+
+			if (limit - position < 3)
+				return fail(result, ErrorType.TRUNCATED, recordOffset);
+			int header = buffer.get(position) & 0xff;
+			int tnf = header & NdefConstants.TNF_MASK;
+			int typeLength = buffer.get(position + 1) & 0xff;
+			int fieldsEnd = position + 2;
+
+			long payloadLength;
+			if ((header & NdefConstants.SR) != 0) {
+				payloadLength = buffer.get(fieldsEnd++) & 0xff;
+			}
+			else {
+				if (limit - fieldsEnd < 4)
+					return fail(result, ErrorType.TRUNCATED, recordOffset);
+				payloadLength = buffer.getInt(fieldsEnd) & 0xffffffffL;
+				fieldsEnd += 4;
+				if (payloadLength > Integer.MAX_VALUE)
+					return fail(result, ErrorType.LENGTH_OUT_OF_BOUNDS, recordOffset);
+			}
+			int idLength = 0;
+			if ((header & NdefConstants.IL) != 0) {
+				if (fieldsEnd >= limit)
+					return fail(result, ErrorType.TRUNCATED, recordOffset);
+				idLength = buffer.get(fieldsEnd++) & 0xff;
+			}
+			long end = (long)fieldsEnd + typeLength + idLength + payloadLength;
+			if (end > limit)
+				return fail(result, ErrorType.TRUNCATED, recordOffset);
+
+			if (result.getRecordCount() == 0 && (header & NdefConstants.MB) == 0)
+				return fail(result, ErrorType.MISSING_MESSAGE_BEGIN, recordOffset);
+			if (result.getRecordCount() > 0 && (header & NdefConstants.MB) != 0)
+				return fail(result, ErrorType.UNEXPECTED_MESSAGE_BEGIN, recordOffset);
+			if (tnf == NdefConstants.TNF_RESERVED)
+				return fail(result, ErrorType.RESERVED_TNF, recordOffset);
+			if (tnf == NdefConstants.TNF_EMPTY && (typeLength != 0 || idLength != 0 || payloadLength != 0))
+				return fail(result, ErrorType.INVALID_EMPTY_RECORD, recordOffset);
+
+			boolean chunked = (header & NdefConstants.CF) != 0;
+			if (inChunk) {
+				if (tnf != NdefConstants.TNF_UNCHANGED || typeLength != 0 || idLength != 0)
+					return fail(result, ErrorType.INVALID_CHUNK, recordOffset);
+			}
+			else if (tnf == NdefConstants.TNF_UNCHANGED)
+				return fail(result, ErrorType.UNEXPECTED_UNCHANGED, recordOffset);
+			if (chunked && (header & NdefConstants.ME) != 0)
+				return fail(result, ErrorType.MESSAGE_END_IN_CHUNK, recordOffset);
+			inChunk = chunked;
+
+			result.addRecord(recordOffset, (int)end - start);
+			position = (int)end;
+		}
+
+		if (inChunk)
+			return fail(result, ErrorType.UNTERMINATED_CHUNK, limit - start);
+		if (!isMessageEnd(buffer, result, start))
+			return fail(result, ErrorType.MISSING_MESSAGE_END, result.getRecordOffset(result.getRecordCount() - 1));
+		return true;
+	}
+
+	private boolean isMessageEnd(ByteBuffer buffer, NdefValidationResult result, int start) {
+		int lastHeader = buffer.get(start + result.getRecordOffset(result.getRecordCount() - 1));
+		return (lastHeader & NdefConstants.ME) != 0;
+	}
+
+	private boolean fail(NdefValidationResult result, ErrorType error, int offset) {
+		result.setError(error, offset);
+		return false;
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.nfctools.ndef.ext.ExternalTypeRecordConfig;
+import org.nfctools.ndef.wkt.WellKnownRecordConfig;
+
+/**
+ * Registry of the well known and external type record configurations shared by the record encoders and decoders.
+ * 
+ * The configurations are held in an immutable snapshot indexed by record type, namespace and record class. Lookups
+ * read the current snapshot without locking. Registering creates a new snapshot and publishes it at once, so records
+ * can be registered at runtime while other threads are encoding and decoding. A lookup sees either all or none of the
+ * configurations of a registration.
+ */
+public class RecordConfigRegistry {
+
+	private volatile Snapshot snapshot = new Snapshot();
+
+	public WellKnownRecordConfig getWellKnownRecordConfig(RecordType recordType) {
+		return snapshot.wellKnownByType.get(recordType);
+	}
+
+	/**
+	 * Looks up the configuration for the type of a well known record. The type bytes are compared in place.
+	 */
+	public WellKnownRecordConfig getWellKnownRecordConfig(NdefRecord ndefRecord) {
+		return snapshot.wellKnownTypes.get(ndefRecord.typeBuffer());
+	}
+
+	public WellKnownRecordConfig getWellKnownRecordConfig(Class<?> recordClass) {
+		return snapshot.wellKnownByClass.get(recordClass);
+	}
+
+	public ExternalTypeRecordConfig getExternalTypeRecordConfig(String namespace) {
+		return snapshot.externalByNamespace.get(namespace);
+	}
+
+	public ExternalTypeRecordConfig getExternalTypeRecordConfig(Class<?> recordClass) {
+		return snapshot.externalByClass.get(recordClass);
+	}
+
+	/**
+	 * @return a number that changes with every registration, allows callers to invalidate caches derived from the
+	 *         registered configurations
+	 */
+	public int getRevision() {
+		return snapshot.revision;
+	}
+
+	public void registerWellKnownRecordConfig(WellKnownRecordConfig config) {
+		register(Collections.singleton(config), Collections.<ExternalTypeRecordConfig> emptySet());
+	}
+
+	public void registerExternalTypeRecordConfig(ExternalTypeRecordConfig config) {
+		register(Collections.<WellKnownRecordConfig> emptySet(), Collections.singleton(config));
+	}
+
+	/**
+	 * Registers all configurations in one step. Existing configurations for the same type, namespace or class are
+	 * replaced.
+	 */
+	public synchronized void register(Collection<WellKnownRecordConfig> wellKnownConfigs,
+			Collection<ExternalTypeRecordConfig> externalConfigs) {
+		Snapshot current = snapshot;
+		Map<RecordType, WellKnownRecordConfig> wellKnownByType = new HashMap<RecordType, WellKnownRecordConfig>(
+				current.wellKnownByType);
+		Map<Class<?>, WellKnownRecordConfig> wellKnownByClass = new HashMap<Class<?>, WellKnownRecordConfig>(
+				current.wellKnownByClass);
+		for (WellKnownRecordConfig config : wellKnownConfigs) {
+			wellKnownByType.put(config.getRecordType(), config);
+			wellKnownByClass.put(config.getRecordClass(), config);
+		}
+
+		Map<String, ExternalTypeRecordConfig> externalByNamespace = new HashMap<String, ExternalTypeRecordConfig>(
+				current.externalByNamespace);
+		Map<Class<?>, ExternalTypeRecordConfig> externalByClass = new HashMap<Class<?>, ExternalTypeRecordConfig>(
+				current.externalByClass);
+		for (ExternalTypeRecordConfig config : externalConfigs) {
+			externalByNamespace.put(config.getNamespace(), config);
+			externalByClass.put(config.getRecordClass(), config);
+		}
+
+		snapshot = new Snapshot(current.revision + 1, wellKnownByType, wellKnownByClass, externalByNamespace,
+				externalByClass);
+	}
+
+	private static final class Snapshot {
+
+		private final int revision;
+		private final TypeTable<WellKnownRecordConfig> wellKnownTypes;
+		private final Map<RecordType, WellKnownRecordConfig> wellKnownByType;
+		private final Map<Class<?>, WellKnownRecordConfig> wellKnownByClass;
+		private final Map<String, ExternalTypeRecordConfig> externalByNamespace;
+		private final Map<Class<?>, ExternalTypeRecordConfig> externalByClass;
+
+		private Snapshot() {
+			this(0, Collections.<RecordType, WellKnownRecordConfig> emptyMap(), Collections
+					.<Class<?>, WellKnownRecordConfig> emptyMap(), Collections
+					.<String, ExternalTypeRecordConfig> emptyMap(), Collections
+					.<Class<?>, ExternalTypeRecordConfig> emptyMap());
+		}
+
+		private Snapshot(int revision, Map<RecordType, WellKnownRecordConfig> wellKnownByType,
+				Map<Class<?>, WellKnownRecordConfig> wellKnownByClass,
+				Map<String, ExternalTypeRecordConfig> externalByNamespace,
+				Map<Class<?>, ExternalTypeRecordConfig> externalByClass) {
+			this.revision = revision;
+			this.wellKnownTypes = new TypeTable<WellKnownRecordConfig>(wellKnownByType);
+			this.wellKnownByType = wellKnownByType;
+			this.wellKnownByClass = wellKnownByClass;
+			this.externalByNamespace = externalByNamespace;
+			this.externalByClass = externalByClass;
+		}
+	}
+}
@@ -15,9 +15,15 @@
  */
 package org.nfctools.ndef;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 
 import org.nfctools.ndef.wkt.records.Action;
 import org.nfctools.ndef.wkt.records.GcActionRecord;
@@ -99,7 +105,7 @@ public class RecordUtils {
 		if ((ch1 | ch2) < 0) {
 			throw new EOFException();
 		}
-		return (short)((ch1 << 8) + (ch2 << 0));
+		return (ch1 << 8) + (ch2 << 0);
 	}
 
 	public static byte[] readByteArray(InputStream in, int len) throws IOException {
@@ -115,4 +121,168 @@ public class RecordUtils {
 
 		return buffer;
 	}
+
+	public static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 32));
+		byte[] buffer = new byte[256];
+		int count;
+		while ((count = in.read(buffer)) != -1)
+			out.write(buffer, 0, count);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return the number of bytes of the characters from start encoded as UTF-8. Like {@link String#getBytes} an
+	 *         unpaired surrogate is counted as a single replacement byte.
+	 */
+	public static int getUtf8Length(CharSequence chars, int start) {
+		int length = 0;
+		for (int i = start; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80)
+				length++;
+			else if (c < 0x800)
+				length += 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < chars.length()
+					&& Character.isLowSurrogate(chars.charAt(i + 1))) {
+				length += 4;
+				i++;
+			}
+			else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c))
+				length++;
+			else
+				length += 3;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the characters from start as UTF-8 into the buffer. Unpaired surrogates are written as '?'.
+	 */
+	public static void putUtf8(CharSequence chars, int start, ByteBuffer out) {
+		for (int i = start; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				out.put((byte)c);
+			}
+			else if (c < 0x800) {
+				out.put((byte)(0xC0 | (c >> 6)));
+				out.put((byte)(0x80 | (c & 0x3F)));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < chars.length()
+					&& Character.isLowSurrogate(chars.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+				out.put((byte)(0xF0 | (codePoint >> 18)));
+				out.put((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+				out.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+				out.put((byte)(0x80 | (codePoint & 0x3F)));
+			}
+			else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				out.put((byte)'?');
+			}
+			else {
+				out.put((byte)(0xE0 | (c >> 12)));
+				out.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+				out.put((byte)(0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the characters encoded as US-ASCII, every code point is a single byte
+	 */
+	public static int getAsciiLength(CharSequence chars) {
+		int length = 0;
+		for (int i = 0; i < chars.length(); i++) {
+			if (Character.isHighSurrogate(chars.charAt(i)) && i + 1 < chars.length()
+					&& Character.isLowSurrogate(chars.charAt(i + 1)))
+				i++;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the characters as US-ASCII into the buffer. Like {@link String#getBytes} characters outside of US-ASCII are
+	 * written as '?'.
+	 */
+	public static void putAscii(CharSequence chars, ByteBuffer out) {
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				out.put((byte)c);
+			}
+			else {
+				if (Character.isHighSurrogate(c) && i + 1 < chars.length()
+						&& Character.isLowSurrogate(chars.charAt(i + 1)))
+					i++;
+				out.put((byte)'?');
+			}
+		}
+	}
+
+	/**
+	 * Writes the characters as UTF-16 big endian without byte order mark into the buffer. Unpaired surrogates are
+	 * written as U+FFFD.
+	 */
+	public static void putUtf16(CharSequence chars, ByteBuffer out) {
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < chars.length() && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				char low = chars.charAt(++i);
+				out.put((byte)(c >> 8));
+				out.put((byte)c);
+				out.put((byte)(low >> 8));
+				out.put((byte)low);
+			}
+			else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				out.put((byte)0xFF);
+				out.put((byte)0xFD);
+			}
+			else {
+				out.put((byte)(c >> 8));
+				out.put((byte)c);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of remaining bytes of all buffers
+	 * @throws IllegalArgumentException if the buffers hold more bytes than fit into a single array
+	 */
+	public static int getRemaining(ByteBuffer[] buffers) {
+		long size = 0;
+		for (ByteBuffer buffer : buffers)
+			size += buffer.remaining();
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Chunked payload of " + size + " bytes exceeds the maximum array size");
+		return (int)size;
+	}
+
+	/**
+	 * @return the remaining bytes of all buffers copied into a single array. The positions of the buffers are not
+	 *         changed.
+	 */
+	public static byte[] concatenate(ByteBuffer[] buffers) {
+		byte[] bytes = new byte[getRemaining(buffers)];
+		int offset = 0;
+		for (ByteBuffer buffer : buffers) {
+			int length = buffer.remaining();
+			buffer.duplicate().get(bytes, offset, length);
+			offset += length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return a stream over the remaining bytes of all buffers, no bytes are copied. The positions of the buffers are
+	 *         not changed.
+	 */
+	public static InputStream toInputStream(ByteBuffer[] buffers) {
+		InputStream[] streams = new InputStream[buffers.length];
+		for (int i = 0; i < buffers.length; i++)
+			streams[i] = new ByteBufferInputStream(buffers[i].duplicate());
+		Enumeration<InputStream> enumeration = Collections.enumeration(Arrays.asList(streams));
+		return new SequenceInputStream(enumeration);
+	}
 }
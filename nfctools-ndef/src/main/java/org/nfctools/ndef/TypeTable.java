@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Immutable open addressing table from record type bytes to values. Lookups compare the precomputed hash of the
+ * {@link RecordType} first and the bytes in place after, so the type of a decoded record can be resolved without
+ * copying or wrapping it.
+ */
+final class TypeTable<T> {
+
+	private final RecordType[] keys;
+	private final Object[] values;
+	private final int mask;
+
+	TypeTable(Map<RecordType, T> entries) {
+		int size = 4;
+		while (size < entries.size() * 2)
+			size <<= 1;
+		keys = new RecordType[size];
+		values = new Object[size];
+		mask = size - 1;
+		for (Entry<RecordType, T> entry : entries.entrySet()) {
+			RecordType key = entry.getKey();
+			int index = key.hashCode() & mask;
+			while (keys[index] != null)
+				index = (index + 1) & mask;
+			keys[index] = key;
+			values[index] = entry.getValue();
+		}
+	}
+
+	/**
+	 * @return the value for the bytes between position and limit of the buffer or null. The buffer is not modified.
+	 */
+	@SuppressWarnings("unchecked")
+	T get(ByteBuffer buffer) {
+		if (buffer == null)
+			return get(NdefConstants.EMPTY_BYTE_ARRAY, 0, 0);
+		int hash = RecordType.hashCode(buffer);
+		for (int index = hash & mask; keys[index] != null; index = (index + 1) & mask) {
+			RecordType key = keys[index];
+			if (key.hashCode() == hash && key.matches(buffer))
+				return (T)values[index];
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	T get(byte[] bytes, int offset, int length) {
+		int hash = RecordType.hashCode(bytes, offset, length);
+		for (int index = hash & mask; keys[index] != null; index = (index + 1) & mask) {
+			RecordType key = keys[index];
+			if (key.hashCode() == hash && key.matches(bytes, offset, length))
+				return (T)values[index];
+		}
+		return null;
+	}
+}
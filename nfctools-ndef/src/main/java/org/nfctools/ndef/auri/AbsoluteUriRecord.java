@@ -54,6 +54,7 @@ public class AbsoluteUriRecord extends Record {
 	}
 
 	public void setUri(String uri) {
+		checkNotFrozen();
 		this.uri = uri;
 	}
 
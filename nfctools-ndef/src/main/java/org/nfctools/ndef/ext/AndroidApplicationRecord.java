@@ -74,6 +74,7 @@ public class AndroidApplicationRecord extends ExternalTypeRecord {
 	}
 
 	public void setPackageName(String packageName) {
+		checkNotFrozen();
 		this.packageName = packageName;
 	}
 
@@ -15,20 +15,23 @@
  */
 package org.nfctools.ndef.ext;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefMessageDecoder;
 import org.nfctools.ndef.NdefRecord;
+import org.nfctools.ndef.RecordConfigRegistry;
 import org.nfctools.ndef.wkt.decoder.AbstractRecordDecoder;
 
 public class ExternalTypeDecoder extends AbstractRecordDecoder<ExternalTypeRecord> {
 
-	private Map<String, ExternalTypeRecordConfig> recordDecoders = new HashMap<String, ExternalTypeRecordConfig>();
+	private final RecordConfigRegistry registry;
 
 	public ExternalTypeDecoder() {
+		this(new RecordConfigRegistry());
+	}
+
+	public ExternalTypeDecoder(RecordConfigRegistry registry) {
 		super(NdefConstants.TNF_EXTERNAL_TYPE);
+		this.registry = registry;
 	}
 
 	@Override
@@ -36,7 +39,7 @@ public class ExternalTypeDecoder extends AbstractRecordDecoder<ExternalTypeRecor
 		String namespace = new String(ndefRecord.getType(), NdefConstants.DEFAULT_CHARSET);
 		String content = new String(ndefRecord.getPayload(), NdefConstants.DEFAULT_CHARSET);
 		
-		ExternalTypeRecordConfig config = recordDecoders.get(namespace);
+		ExternalTypeRecordConfig config = registry.getExternalTypeRecordConfig(namespace);
 		if(config != null) {
 			return config.getContentDecoder().decodeContent(content);
 		} else {
@@ -46,6 +49,6 @@ public class ExternalTypeDecoder extends AbstractRecordDecoder<ExternalTypeRecor
 	}
 
 	public void addRecordConfig(ExternalTypeRecordConfig config) {
-		recordDecoders.put(config.getNamespace(), config);
+		registry.registerExternalTypeRecordConfig(config);
 	}
 }
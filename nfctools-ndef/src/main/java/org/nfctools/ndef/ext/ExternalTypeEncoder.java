@@ -15,19 +15,25 @@
  */
 package org.nfctools.ndef.ext;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
 import org.nfctools.ndef.NdefRecord;
 import org.nfctools.ndef.Record;
+import org.nfctools.ndef.RecordConfigRegistry;
 import org.nfctools.ndef.wkt.encoder.RecordEncoder;
 
 public class ExternalTypeEncoder implements RecordEncoder {
 
-	private Map<Class<?>, ExternalTypeRecordConfig> externalRecordTypes = new HashMap<Class<?>, ExternalTypeRecordConfig>();
+	private RecordConfigRegistry registry;
+
+	public ExternalTypeEncoder() {
+		this(new RecordConfigRegistry());
+	}
+
+	public ExternalTypeEncoder(RecordConfigRegistry registry) {
+		this.registry = registry;
+	}
 
 	@Override
 	public boolean canEncode(Record record) {
@@ -38,7 +44,7 @@ public class ExternalTypeEncoder implements RecordEncoder {
 	public NdefRecord encodeRecord(Record record, NdefMessageEncoder messageEncoder) {
 		ExternalTypeRecord externalType = (ExternalTypeRecord)record;
 		
-		ExternalTypeRecordConfig config = externalRecordTypes.get(record.getClass());
+		ExternalTypeRecordConfig config = registry.getExternalTypeRecordConfig(record.getClass());
 		
 		String namespace;
 		byte[] payload;
@@ -67,6 +73,6 @@ public class ExternalTypeEncoder implements RecordEncoder {
 	}
 	
 	public void addRecordConfig(ExternalTypeRecordConfig config) {
-		externalRecordTypes.put(config.getRecordClass(), config);
+		registry.registerExternalTypeRecordConfig(config);
 	}
 }
@@ -54,6 +54,7 @@ public class GeoRecord extends ExternalTypeRecord {
 	}
 
 	public void setLatitude(Double latitude) {
+		checkNotFrozen();
 		this.latitude = latitude;
 	}
 
@@ -62,6 +63,7 @@ public class GeoRecord extends ExternalTypeRecord {
 	}
 
 	public void setLongitude(Double longitude) {
+		checkNotFrozen();
 		this.longitude = longitude;
 	}
 
@@ -70,6 +72,7 @@ public class GeoRecord extends ExternalTypeRecord {
 	}
 
 	public void setAltitude(Double altitude) {
+		checkNotFrozen();
 		this.altitude = altitude;
 	}
 
@@ -78,6 +81,7 @@ public class GeoRecord extends ExternalTypeRecord {
 	}
 
 	public void setAddressInformation(String addressInformation) {
+		checkNotFrozen();
 		this.addressInformation = addressInformation;
 	}
 
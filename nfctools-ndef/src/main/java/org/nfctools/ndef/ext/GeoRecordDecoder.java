@@ -38,7 +38,7 @@ public class GeoRecordDecoder implements ExternalTypeContentDecoder {
 
 		Matcher matcher = GEO_URL_PATTERN.matcher(content);
 		if (!matcher.matches()) {
-			return null;
+			throw new NdefDecoderException("Expected geo coordinates, found " + content);
 		}
 
 		String addressInformation;
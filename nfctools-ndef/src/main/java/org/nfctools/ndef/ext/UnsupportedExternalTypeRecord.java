@@ -35,6 +35,7 @@ public class UnsupportedExternalTypeRecord extends ExternalTypeRecord {
 	}
 
 	public void setNamespace(String namespace) {
+		checkNotFrozen();
 		this.namespace = namespace;
 	}
 
@@ -47,6 +48,7 @@ public class UnsupportedExternalTypeRecord extends ExternalTypeRecord {
 	}
 
 	public void setContent(String content) {
+		checkNotFrozen();
 		this.content = content;
 	}
 
@@ -15,26 +15,60 @@
  */
 package org.nfctools.ndef.mime;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import org.nfctools.ndef.RecordUtils;
+
 public class BinaryMimeRecord extends MimeRecord {
 
 	private byte[] content;
+	/** The chunks of a decoded chunked record, concatenated into content when first requested. */
+	private volatile ByteBuffer[] contentChunks;
 
 	public BinaryMimeRecord(String contentType, byte[] content) {
 		super(contentType);
 		this.content = content;
 	}
 
+	/**
+	 * Creates a record over the chunks of a reassembled chunked record without concatenating them. The chunks must not
+	 * be modified while the record is in use.
+	 */
+	BinaryMimeRecord(String contentType, ByteBuffer[] contentChunks) {
+		super(contentType);
+		this.contentChunks = contentChunks;
+	}
+
 	public BinaryMimeRecord() {
 	}
 
 	public byte[] getContent() {
+		ByteBuffer[] chunks = contentChunks;
+		if (chunks != null) {
+			content = RecordUtils.concatenate(chunks);
+			contentChunks = null;
+		}
 		return content;
 	}
 
 	public void setContent(byte[] content) {
+		checkNotFrozen();
 		this.content = content;
+		this.contentChunks = null;
+	}
+
+	/**
+	 * @return the content as stream. The content of a decoded chunked record is streamed chunk by chunk without
+	 *         concatenating the chunks.
+	 */
+	public InputStream getContentStream() {
+		ByteBuffer[] chunks = contentChunks;
+		if (chunks != null)
+			return RecordUtils.toInputStream(chunks);
+		return content == null ? null : new ByteArrayInputStream(content);
 	}
 
 	@Override
@@ -44,14 +78,14 @@ public class BinaryMimeRecord extends MimeRecord {
 
 	@Override
 	public String toString() {
-		return "Content-Type: " + contentType + " Content: " + new String(content);
+		return "Content-Type: " + contentType + " Content: " + new String(getContent());
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
-		result = prime * result + Arrays.hashCode(content);
+		result = prime * result + Arrays.hashCode(getContent());
 		return result;
 	}
 
@@ -64,13 +98,13 @@ public class BinaryMimeRecord extends MimeRecord {
 		if (getClass() != obj.getClass())
 			return false;
 		BinaryMimeRecord other = (BinaryMimeRecord)obj;
-		if (!Arrays.equals(content, other.content))
+		if (!Arrays.equals(getContent(), other.getContent()))
 			return false;
 		return true;
 	}
 
 	public boolean hasContent() {
-		return content != null;
+		return content != null || contentChunks != null;
 	}
 
 }
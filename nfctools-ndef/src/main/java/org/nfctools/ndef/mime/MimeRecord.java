@@ -33,6 +33,7 @@ public abstract class MimeRecord extends Record {
 	}
 
 	public void setContentType(String contentType) {
+		checkNotFrozen();
 		this.contentType = contentType;
 	}
 
@@ -15,6 +15,8 @@
  */
 package org.nfctools.ndef.mime;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefMessageDecoder;
 import org.nfctools.ndef.NdefRecord;
@@ -30,10 +32,16 @@ public class MimeRecordDecoder extends AbstractRecordDecoder<MimeRecord> {
 	protected MimeRecord createRecord(NdefRecord ndefRecord, NdefMessageDecoder messageDecoder) {
 		String contentType = new String(ndefRecord.getType(), NdefConstants.DEFAULT_CHARSET); // http://www.ietf.org/rfc/rfc2046.txt
 
+		// the chunks of a reassembled chunked record are not concatenated
+		ByteBuffer[] payloadChunks = ndefRecord.getPayloadChunks();
 		if (contentType.startsWith("text/")) {
+			if (payloadChunks.length > 1)
+				return new TextMimeRecord(contentType, ndefRecord.getPayloadStream());
 			return new TextMimeRecord(contentType, ndefRecord.getPayload());
 		}
 		else {
+			if (payloadChunks.length > 1)
+				return new BinaryMimeRecord(contentType, payloadChunks);
 			return new BinaryMimeRecord(contentType, ndefRecord.getPayload());
 		}
 	}
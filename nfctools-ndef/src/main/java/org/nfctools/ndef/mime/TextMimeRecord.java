@@ -15,6 +15,10 @@
  */
 package org.nfctools.ndef.mime;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 
 import org.nfctools.ndef.NdefConstants;
@@ -40,6 +44,28 @@ public class TextMimeRecord extends MimeRecord {
 		this.content = new String(content, charset);
 	}
 
+	/**
+	 * Creates a record decoding the content from the stream, so a chunked payload need not be concatenated first.
+	 */
+	TextMimeRecord(String contentType, InputStream content) {
+		super(contentType);
+
+		this.charset = extractContentTypeCharset();
+
+		StringBuilder sb = new StringBuilder();
+		try {
+			Reader reader = new InputStreamReader(content, charset);
+			char[] buffer = new char[256];
+			int count;
+			while ((count = reader.read(buffer)) != -1)
+				sb.append(buffer, 0, count);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.content = sb.toString();
+	}
+
 	public Charset extractContentTypeCharset() {
 		int index = contentType.indexOf(';');
 
@@ -65,6 +91,7 @@ public class TextMimeRecord extends MimeRecord {
 	}
 
 	public void setCharset(Charset charset) {
+		checkNotFrozen();
 		this.charset = charset;
 	}
 
@@ -73,6 +100,7 @@ public class TextMimeRecord extends MimeRecord {
 	}
 
 	public void setContent(String content) {
+		checkNotFrozen();
 		this.content = content;
 	}
 
@@ -16,7 +16,12 @@
 
 package org.nfctools.ndef.unknown;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.Record;
+import org.nfctools.ndef.RecordUtils;
 
 /**
  * Unknown record.
@@ -28,24 +33,52 @@ import org.nfctools.ndef.Record;
 public class UnknownRecord extends Record {
 
 	private byte[] payload;
+	/** The chunks of a decoded chunked record, concatenated into payload when first requested. */
+	private volatile ByteBuffer[] payloadChunks;
 
 	public UnknownRecord(byte[] payload) {
 		this.payload = payload;
 	}
+
+	/**
+	 * Creates a record over the chunks of a reassembled chunked record without concatenating them. The chunks must not
+	 * be modified while the record is in use.
+	 */
+	UnknownRecord(ByteBuffer[] payloadChunks) {
+		this.payloadChunks = payloadChunks;
+	}
 	
 	public UnknownRecord() {
 	}
 	
 	public byte[] getPayload() {
+		ByteBuffer[] chunks = payloadChunks;
+		if (chunks != null) {
+			payload = RecordUtils.concatenate(chunks);
+			payloadChunks = null;
+		}
 		return payload;
 	}
 
 	public void setPayload(byte[] payload) {
+		checkNotFrozen();
 		this.payload = payload;
+		this.payloadChunks = null;
+	}
+
+	/**
+	 * @return the payload as stream. The payload of a decoded chunked record is streamed chunk by chunk without
+	 *         concatenating the chunks.
+	 */
+	public InputStream getPayloadStream() {
+		ByteBuffer[] chunks = payloadChunks;
+		if (chunks != null)
+			return RecordUtils.toInputStream(chunks);
+		return payload == null ? null : new ByteArrayInputStream(payload);
 	}
 
 	public boolean hasPayload() {
-		return payload != null;
+		return payload != null || payloadChunks != null;
 	}
 
 }
@@ -16,6 +16,8 @@
 
 package org.nfctools.ndef.unknown;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefMessageDecoder;
 import org.nfctools.ndef.NdefRecord;
@@ -53,6 +55,9 @@ public class UnknownRecordDecoder extends AbstractRecordDecoder<UnknownRecord> {
 			throw new IllegalArgumentException("Record type not expected");
 		}
 		
+		ByteBuffer[] payloadChunks = ndefRecord.getPayloadChunks();
+		if (payloadChunks.length > 1)
+			return new UnknownRecord(payloadChunks);
 		return new UnknownRecord(ndefRecord.getPayload());
 	}
 }
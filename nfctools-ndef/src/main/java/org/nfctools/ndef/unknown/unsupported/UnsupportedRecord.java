@@ -42,6 +42,7 @@ public class UnsupportedRecord extends Record {
 	}
 
 	public void setTnf(byte tnf) {
+		checkNotFrozen();
 		this.tnf = tnf;
 	}
 
@@ -50,6 +51,7 @@ public class UnsupportedRecord extends Record {
 	}
 
 	public void setType(byte[] type) {
+		checkNotFrozen();
 		this.type = type;
 	}
 
@@ -58,6 +60,7 @@ public class UnsupportedRecord extends Record {
 	}
 
 	public void setPayload(byte[] payload) {
+		checkNotFrozen();
 		this.payload = payload;
 	}
 
@@ -1,42 +1,77 @@
 package org.nfctools.ndef.wkt;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefMessageDecoder;
 import org.nfctools.ndef.NdefRecord;
-import org.nfctools.ndef.RecordType;
+import org.nfctools.ndef.RecordConfigRegistry;
 import org.nfctools.ndef.wkt.decoder.RecordDecoder;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
 public class WellKnownRecordDecoder implements RecordDecoder<WellKnownRecord> {
 
-	private Map<RecordType, WellKnownRecordConfig> recordDecoders = new HashMap<RecordType, WellKnownRecordConfig>();
+	private final RecordConfigRegistry registry;
+
+	public WellKnownRecordDecoder() {
+		this(new RecordConfigRegistry());
+	}
+
+	public WellKnownRecordDecoder(RecordConfigRegistry registry) {
+		this.registry = registry;
+	}
 
 	@Override
 	public boolean canDecode(NdefRecord ndefRecord) {
 		if(NdefConstants.TNF_WELL_KNOWN == ndefRecord.getTnf()) {
-			return recordDecoders.containsKey(new RecordType(ndefRecord.getType()));
+			return registry.getWellKnownRecordConfig(ndefRecord) != null;
 		}
 		return false;
 	}
 
 	@Override
 	public WellKnownRecord decodeRecord(NdefRecord ndefRecord, NdefMessageDecoder messageDecoder) {
-		WellKnownRecordConfig config = recordDecoders.get(new RecordType(ndefRecord.getType()));
-		if (config != null) {
-			WellKnownRecordPayloadDecoder payloadDecoder = config.getPayloadDecoder();
-			WellKnownRecord record = payloadDecoder.decodePayload(ndefRecord.getPayload(), messageDecoder);
-			record.setId(ndefRecord.getId());
-			return record;
-		}
+		WellKnownRecordConfig config = registry.getWellKnownRecordConfig(ndefRecord);
+		if (config != null)
+			return decodeRecord(ndefRecord, config, messageDecoder);
 		else
 			throw new IllegalArgumentException("Unsupported Well Known NDEF Type [" + new String(ndefRecord.getType())
 					+ "]");
 	}
 
+	/**
+	 * Decodes the record with a configuration the caller already looked up for its type.
+	 */
+	public WellKnownRecord decodeRecord(NdefRecord ndefRecord, WellKnownRecordConfig config,
+			NdefMessageDecoder messageDecoder) {
+		return decodeRecord(ndefRecord, ndefRecord.getPayloadBuffer(), config, messageDecoder);
+	}
+
+	/**
+	 * Decodes the record from the given payload buffer. The record decoder passes a buffer that keeps access to the
+	 * heap array of the message, so buffer payload decoders can read the array in place.
+	 */
+	public WellKnownRecord decodeRecord(NdefRecord ndefRecord, ByteBuffer payload, WellKnownRecordConfig config,
+			NdefMessageDecoder messageDecoder) {
+		WellKnownRecordPayloadDecoder payloadDecoder = config.getPayloadDecoder();
+		WellKnownRecord record;
+		try {
+			if (payloadDecoder instanceof WellKnownRecordPayloadBufferDecoder)
+				record = ((WellKnownRecordPayloadBufferDecoder)payloadDecoder).decodePayload(payload, messageDecoder);
+			else
+				record = payloadDecoder.decodePayload(ndefRecord.getPayload(), messageDecoder);
+		}
+		catch (IndexOutOfBoundsException e) {
+			// the payload decoders index into the payload as the specification lays it out, a truncated payload
+			// surfaces here
+			throw new IllegalArgumentException("Truncated payload of well known record ["
+					+ new String(ndefRecord.getType()) + "]", e);
+		}
+		record.setId(ndefRecord.getId());
+		return record;
+	}
+
 	public void addRecordConfig(WellKnownRecordConfig config) {
-		recordDecoders.put(config.getRecordType(), config);
+		registry.registerWellKnownRecordConfig(config);
 	}
 }
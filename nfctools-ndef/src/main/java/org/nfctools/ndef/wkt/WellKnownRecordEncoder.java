@@ -1,23 +1,32 @@
 package org.nfctools.ndef.wkt;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
 import org.nfctools.ndef.NdefRecord;
 import org.nfctools.ndef.Record;
+import org.nfctools.ndef.RecordConfigRegistry;
+import org.nfctools.ndef.RecordType;
 import org.nfctools.ndef.wkt.encoder.RecordEncoder;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
 public class WellKnownRecordEncoder implements RecordEncoder {
 
-	private Map<Class<?>, WellKnownRecordConfig> knownRecordTypes = new HashMap<Class<?>, WellKnownRecordConfig>();
+	private RecordConfigRegistry registry;
+
+	public WellKnownRecordEncoder() {
+		this(new RecordConfigRegistry());
+	}
+
+	public WellKnownRecordEncoder(RecordConfigRegistry registry) {
+		this.registry = registry;
+	}
 
 	@Override
 	public boolean canEncode(Record record) {
-		return knownRecordTypes.containsKey(record.getClass());
+		return registry.getWellKnownRecordConfig(record.getClass()) != null;
 	}
 
 	@Override
@@ -30,13 +39,42 @@ public class WellKnownRecordEncoder implements RecordEncoder {
 			}
 		}
 		
-		WellKnownRecordConfig config = knownRecordTypes.get(record.getClass());
+		WellKnownRecordConfig config = registry.getWellKnownRecordConfig(record.getClass());
 		byte[] payload = config.getPayloadEncoder().encodePayload((WellKnownRecord)record, messageEncoder);
 		byte[] type = config.getRecordType().getType();
 		return new NdefRecord(NdefConstants.TNF_WELL_KNOWN, type, key, payload);
 	}
 
+	/**
+	 * @return true if the payload encoder of the record can write into a buffer
+	 */
+	public boolean canEncodePayload(Record record) {
+		WellKnownRecordConfig config = registry.getWellKnownRecordConfig(record.getClass());
+		return config != null && config.getPayloadEncoder() instanceof WellKnownRecordPayloadBufferEncoder;
+	}
+
+	public RecordType getRecordType(Record record) {
+		return registry.getWellKnownRecordConfig(record.getClass()).getRecordType();
+	}
+
+	public int getPayloadLength(Record record, NdefMessageEncoder messageEncoder) {
+		byte[] key = record.getId();
+		if (key != null && key.length > 255) {
+			throw new NdefEncoderException("Expected record id length <= 255 bytes", record);
+		}
+		return getPayloadEncoder(record).getPayloadLength((WellKnownRecord)record, messageEncoder);
+	}
+
+	public void encodePayload(Record record, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		getPayloadEncoder(record).encodePayload((WellKnownRecord)record, messageEncoder, out);
+	}
+
+	private WellKnownRecordPayloadBufferEncoder getPayloadEncoder(Record record) {
+		return (WellKnownRecordPayloadBufferEncoder)registry.getWellKnownRecordConfig(record.getClass())
+				.getPayloadEncoder();
+	}
+
 	public void addRecordConfig(WellKnownRecordConfig config) {
-		knownRecordTypes.put(config.getRecordClass(), config);
+		registry.registerWellKnownRecordConfig(config);
 	}
 }
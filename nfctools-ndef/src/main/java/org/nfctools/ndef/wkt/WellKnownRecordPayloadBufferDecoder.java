@@ -0,0 +1,34 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt;
+
+import java.nio.ByteBuffer;
+
+import org.nfctools.ndef.NdefMessageDecoder;
+import org.nfctools.ndef.wkt.records.WellKnownRecord;
+
+/**
+ * Payload decoder that reads the payload directly from the buffer view of the record, so the payload is not copied
+ * into an array first.
+ */
+public interface WellKnownRecordPayloadBufferDecoder extends WellKnownRecordPayloadDecoder {
+
+	/**
+	 * Decodes the bytes between position and limit. The position of the buffer is not changed. The buffer may share
+	 * the array of the decoded message and must not be modified.
+	 */
+	WellKnownRecord decodePayload(ByteBuffer payload, NdefMessageDecoder messageDecoder);
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt;
+
+import java.nio.ByteBuffer;
+
+import org.nfctools.ndef.NdefMessageEncoder;
+import org.nfctools.ndef.wkt.records.WellKnownRecord;
+
+/**
+ * Payload encoder that can report the exact payload length up front and write the payload directly into a buffer.
+ * Used by {@link NdefMessageEncoder#encode(Iterable, ByteBuffer)} to encode a record tree without intermediate
+ * arrays.
+ */
+public interface WellKnownRecordPayloadBufferEncoder extends WellKnownRecordPayloadEncoder {
+
+	int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder);
+
+	/**
+	 * Writes exactly {@link #getPayloadLength(WellKnownRecord, NdefMessageEncoder)} bytes at the position of the buffer.
+	 */
+	void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out);
+}
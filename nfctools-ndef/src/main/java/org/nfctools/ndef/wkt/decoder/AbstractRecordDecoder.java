@@ -21,7 +21,7 @@ import org.nfctools.ndef.Record;
 
 public abstract class AbstractRecordDecoder<T extends Record> implements RecordDecoder<T> {
 
-	private int tnf;
+	private final int tnf;
 
 	protected AbstractRecordDecoder(int tnf) {
 		this.tnf = tnf;
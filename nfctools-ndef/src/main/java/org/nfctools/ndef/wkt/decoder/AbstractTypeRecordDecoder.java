@@ -21,7 +21,7 @@ import org.nfctools.ndef.RecordUtils;
 
 public abstract class AbstractTypeRecordDecoder<T extends Record> extends AbstractRecordDecoder<T> {
 
-	private byte[] type;
+	private final byte[] type;
 
 	protected AbstractTypeRecordDecoder(int tnf, byte[] type) {
 		super(tnf);
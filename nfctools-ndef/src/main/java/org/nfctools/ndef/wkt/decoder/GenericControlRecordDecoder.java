@@ -48,7 +48,7 @@ public class GenericControlRecordDecoder implements WellKnownRecordPayloadDecode
 			else if (record instanceof GcDataRecord)
 				data = (GcDataRecord)record;
 			else
-				throw new RuntimeException("unexpected record " + record.getClass().getName());
+				throw new IllegalArgumentException("unexpected record " + record.getClass().getName());
 		}
 
 		if (target == null)
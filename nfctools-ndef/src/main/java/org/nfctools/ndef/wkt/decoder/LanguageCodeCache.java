@@ -0,0 +1,74 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.decoder;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Shared cache of the locales for the language codes of text records. The cache is direct mapped: each code has one
+ * slot determined by its hash and replaces whatever was in it. The entries are immutable, so the slots can be read
+ * and written by several threads without locking.
+ */
+final class LanguageCodeCache {
+
+	private static final int SIZE = 64;
+
+	private final Entry[] entries = new Entry[SIZE];
+
+	/**
+	 * @return the locale for the ASCII language code at the offset of the buffer, as created by
+	 *         <code>new Locale(languageCode)</code>
+	 */
+	Locale getLocale(ByteBuffer buffer, int offset, int length) {
+		int hash = 1;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + buffer.get(offset + i);
+		int index = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+		Entry entry = entries[index];
+		if (entry != null && entry.matches(buffer, offset, length))
+			return entry.locale;
+
+		byte[] code = new byte[length];
+		for (int i = 0; i < length; i++)
+			code[i] = buffer.get(offset + i);
+		Locale locale = new Locale(new String(code));
+		entries[index] = new Entry(code, locale);
+		return locale;
+	}
+
+	private static final class Entry {
+
+		private final byte[] code;
+		private final Locale locale;
+
+		private Entry(byte[] code, Locale locale) {
+			this.code = code;
+			this.locale = locale;
+		}
+
+		private boolean matches(ByteBuffer buffer, int offset, int length) {
+			if (code.length != length)
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (code[i] != buffer.get(offset + i))
+					return false;
+			}
+			return true;
+		}
+	}
+}
@@ -15,36 +15,94 @@
  */
 package org.nfctools.ndef.wkt.decoder;
 
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Locale;
 
 import org.nfctools.ndef.NdefMessageDecoder;
-import org.nfctools.ndef.RecordUtils;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadDecoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferDecoder;
 import org.nfctools.ndef.wkt.records.TextRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class TextRecordDecoder implements WellKnownRecordPayloadDecoder {
+/**
+ * Decodes text records directly from the payload buffer. Heap arrays are decoded in place, other buffers with charset
+ * decoders kept per thread. Locales are shared between records with the same language code.
+ */
+public class TextRecordDecoder implements WellKnownRecordPayloadBufferDecoder {
+
+	/** Larger char buffers are not kept by the thread after decoding. */
+	private static final int MAX_CACHED_CHARS = 8192;
+
+	private static final LanguageCodeCache languageCodes = new LanguageCodeCache();
+
+	private static final ThreadLocal<TextDecoders> textDecoders = new ThreadLocal<TextDecoders>() {
+
+		@Override
+		protected TextDecoders initialValue() {
+			return new TextDecoders();
+		}
+	};
 
 	@Override
 	public WellKnownRecord decodePayload(byte[] payload, NdefMessageDecoder messageDecoder) {
-		ByteArrayInputStream bais = new ByteArrayInputStream(payload);
+		return decodePayload(ByteBuffer.wrap(payload), messageDecoder);
+	}
+
+	@Override
+	public WellKnownRecord decodePayload(ByteBuffer payload, NdefMessageDecoder messageDecoder) {
+		if (!payload.hasRemaining())
+			throw new IllegalArgumentException("Expected text record status byte");
 
-		int status = bais.read();
-		byte languageCodeLength = (byte)(status & TextRecord.LANGUAGE_CODE_MASK);
-		String languageCode = new String(RecordUtils.getBytesFromStream(languageCodeLength, bais));
+		int position = payload.position();
+		int status = payload.get(position);
+		int languageCodeLength = status & TextRecord.LANGUAGE_CODE_MASK;
+		if (1 + languageCodeLength > payload.remaining())
+			throw new IllegalArgumentException("Language code length " + languageCodeLength
+					+ " exceeds text record payload");
 
-		byte[] textData = RecordUtils.getBytesFromStream(payload.length - languageCodeLength - 1, bais);
+		Locale locale = languageCodes.getLocale(payload, position + 1, languageCodeLength);
 		Charset textEncoding = ((status & 0x80) != 0) ? TextRecord.UTF16 : TextRecord.UTF8;
+		String text = decodeText(payload, position + 1 + languageCodeLength, textEncoding);
+		return new TextRecord(text, textEncoding, locale);
+	}
+
+	private String decodeText(ByteBuffer payload, int start, Charset textEncoding) {
+		int length = payload.limit() - start;
+		if (payload.hasArray())
+			return new String(payload.array(), payload.arrayOffset() + start, length, textEncoding);
+
+		ByteBuffer textData = payload.duplicate();
+		textData.position(start);
+		return textDecoders.get().decode(textData, textEncoding);
+	}
 
-		try {
-			String text = new String(textData, textEncoding.name());
-			return new TextRecord(text, textEncoding, new Locale(languageCode));
+	private static class TextDecoders {
+
+		private CharsetDecoder utf8 = newDecoder(TextRecord.UTF8);
+		private CharsetDecoder utf16 = newDecoder(TextRecord.UTF16);
+		private CharBuffer chars = CharBuffer.allocate(256);
+
+		private String decode(ByteBuffer textData, Charset textEncoding) {
+			CharsetDecoder decoder = TextRecord.UTF16.equals(textEncoding) ? utf16 : utf8;
+			int maxChars = (int)Math.ceil(textData.remaining() * (double)decoder.maxCharsPerByte()) + 1;
+			CharBuffer out = maxChars <= chars.capacity() ? chars : CharBuffer.allocate(maxChars);
+			if (out != chars && maxChars <= MAX_CACHED_CHARS)
+				chars = out;
+
+			out.clear();
+			decoder.reset();
+			decoder.decode(textData, out, true);
+			decoder.flush(out);
+			out.flip();
+			return out.toString();
 		}
-		catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
+
+		private static CharsetDecoder newDecoder(Charset charset) {
+			return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
 		}
 	}
 }
@@ -34,7 +34,22 @@ public class UriRecordDecoder implements WellKnownRecordPayloadDecoder {
 		else {
 			prefix = UriRecord.abbreviableUris[payload[0]];
 		}
-		String uri = new String(payload, 1, payload.length - 1, UriRecord.DEFAULT_URI_CHARSET);
-		return new UriRecord(prefix + uri);
+		return new UriRecord(decodeUri(prefix, payload));
+	}
+
+	/**
+	 * Decodes prefix and URI into a single string. ASCII URIs, the common case, are copied into one char array.
+	 */
+	private String decodeUri(String prefix, byte[] payload) {
+		int prefixLength = prefix.length();
+		char[] chars = new char[prefixLength + payload.length - 1];
+		prefix.getChars(0, prefixLength, chars, 0);
+		for (int i = 1; i < payload.length; i++) {
+			byte b = payload[i];
+			if (b < 0)
+				return prefix.concat(new String(payload, 1, payload.length - 1, UriRecord.DEFAULT_URI_CHARSET));
+			chars[prefixLength + i - 1] = (char)b;
+		}
+		return new String(chars);
 	}
 }
@@ -15,20 +15,34 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.ActionRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class ActionRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class ActionRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
+
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		return 1;
+	}
+
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
 		ActionRecord record = (ActionRecord)wellKnownRecord;
 		if (!record.hasAction()) {
 			throw new NdefEncoderException("Expected action", wellKnownRecord);
 		}
-		return new byte[] { record.getAction().getValue() };
+		out.put(record.getAction().getValue());
 	}
 }
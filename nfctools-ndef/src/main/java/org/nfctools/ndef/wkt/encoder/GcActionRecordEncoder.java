@@ -15,38 +15,52 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.GcActionRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class GcActionRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class GcActionRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
-		GcActionRecord actionRecord = (GcActionRecord)wellKnownRecord;
-		byte[] payload = null;
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		GcActionRecord actionRecord = checkActionRecord(wellKnownRecord);
+		if (actionRecord.hasAction())
+			return 2;
+		return 1 + messageEncoder.getEncodedRecordLength(actionRecord.getActionRecord());
+	}
 
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		GcActionRecord actionRecord = checkActionRecord(wellKnownRecord);
+		if (actionRecord.hasAction()) {
+			out.put(GcActionRecord.NUMERIC_CODE);
+			out.put(actionRecord.getAction().getValue());
+		}
+		else {
+			out.put((byte)0);
+			messageEncoder.encodeRecord(actionRecord.getActionRecord(), true, true, out);
+		}
+	}
+
+	private GcActionRecord checkActionRecord(WellKnownRecord wellKnownRecord) {
+		GcActionRecord actionRecord = (GcActionRecord)wellKnownRecord;
 		if (actionRecord.hasAction() && actionRecord.hasActionRecord()) {
 			throw new NdefEncoderException("Expected action or action record, not both.", wellKnownRecord);
-		} 
-
-		if (actionRecord.hasAction()) {
-			payload = new byte[2];
-			payload[0] = GcActionRecord.NUMERIC_CODE;
-			payload[1] = (byte)actionRecord.getAction().getValue();
 		}
-		else if (actionRecord.hasActionRecord()) {
-			byte[] subPayload = messageEncoder.encodeSingle(actionRecord.getActionRecord());
-			payload = new byte[subPayload.length + 1];
-			payload[0] = 0;
-			System.arraycopy(subPayload, 0, payload, 1, subPayload.length);
-		} else {
+		if (!actionRecord.hasAction() && !actionRecord.hasActionRecord()) {
 			throw new NdefEncoderException("Expected action or action record.", wellKnownRecord);
 		}
-
-		return payload;
+		return actionRecord;
 	}
 }
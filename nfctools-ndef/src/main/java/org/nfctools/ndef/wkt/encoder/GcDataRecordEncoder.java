@@ -15,17 +15,37 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.GcDataRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class GcDataRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class GcDataRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
-		GcDataRecord dataRecord = (GcDataRecord)wellKnownRecord;
-		return messageEncoder.encode(dataRecord.getRecords());
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
+
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		List<Record> records = ((GcDataRecord)wellKnownRecord).getRecords();
+		int length = 0;
+		for (int i = 0; i < records.size(); i++)
+			length += messageEncoder.getEncodedRecordLength(records.get(i));
+		return length;
+	}
 
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		List<Record> records = ((GcDataRecord)wellKnownRecord).getRecords();
+		for (int i = 0; i < records.size(); i++)
+			messageEncoder.encodeRecord(records.get(i), i == 0, i == records.size() - 1, out);
 	}
 }
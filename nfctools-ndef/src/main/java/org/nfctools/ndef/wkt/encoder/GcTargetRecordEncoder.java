@@ -15,21 +15,40 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.GcTargetRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class GcTargetRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class GcTargetRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
+
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		return messageEncoder.getEncodedRecordLength(getTargetIdentifier(wellKnownRecord));
+	}
+
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		messageEncoder.encodeRecord(getTargetIdentifier(wellKnownRecord), true, true, out);
+	}
+
+	private Record getTargetIdentifier(WellKnownRecord wellKnownRecord) {
 		GcTargetRecord gcTargetRecord = (GcTargetRecord)wellKnownRecord;
 		if (!gcTargetRecord.hasTargetIdentifier()) {
 			throw new NdefEncoderException(wellKnownRecord.getClass().getSimpleName()
 					+ " must have target identifier", wellKnownRecord);
 		}
-		return messageEncoder.encodeSingle(gcTargetRecord.getTargetIdentifier());
+		return gcTargetRecord.getTargetIdentifier();
 	}
 }
@@ -15,41 +15,51 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.GenericControlRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class GenericControlRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class GenericControlRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
-		GenericControlRecord myRecord = (GenericControlRecord)wellKnownRecord;
-
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			
-			baos.write(myRecord.getConfigurationByte());
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
-			if(!myRecord.hasTarget()) {
-				throw new NdefEncoderException("Expected target", myRecord);
-			}
-			baos.write(messageEncoder.encodeSingle(myRecord.getTarget()));
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		GenericControlRecord myRecord = checkGenericControlRecord(wellKnownRecord);
+		int length = 1 + messageEncoder.getEncodedRecordLength(myRecord.getTarget());
+		if (myRecord.getAction() != null)
+			length += messageEncoder.getEncodedRecordLength(myRecord.getAction());
+		if (myRecord.getData() != null)
+			length += messageEncoder.getEncodedRecordLength(myRecord.getData());
+		return length;
+	}
 
-			if (myRecord.getAction() != null)
-				baos.write(messageEncoder.encodeSingle(myRecord.getAction()));
-			if (myRecord.getData() != null)
-				baos.write(messageEncoder.encodeSingle(myRecord.getData()));
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		GenericControlRecord myRecord = checkGenericControlRecord(wellKnownRecord);
+		out.put(myRecord.getConfigurationByte());
+		messageEncoder.encodeRecord(myRecord.getTarget(), true, true, out);
+		if (myRecord.getAction() != null)
+			messageEncoder.encodeRecord(myRecord.getAction(), true, true, out);
+		if (myRecord.getData() != null)
+			messageEncoder.encodeRecord(myRecord.getData(), true, true, out);
+	}
 
-			return baos.toByteArray();
-		}
-		catch (IOException e) {
-			throw new RuntimeException(e);
+	private GenericControlRecord checkGenericControlRecord(WellKnownRecord wellKnownRecord) {
+		GenericControlRecord myRecord = (GenericControlRecord)wellKnownRecord;
+		if (!myRecord.hasTarget()) {
+			throw new NdefEncoderException("Expected target", myRecord);
 		}
+		return myRecord;
 	}
 
 }
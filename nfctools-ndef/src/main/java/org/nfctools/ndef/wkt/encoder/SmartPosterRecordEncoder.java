@@ -15,35 +15,50 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.Record;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.SmartPosterRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class SmartPosterRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class SmartPosterRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
-		SmartPosterRecord myRecord = (SmartPosterRecord)wellKnownRecord;
-		return createPayload(messageEncoder, myRecord);
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
 	}
 
-	private byte[] createPayload(NdefMessageEncoder messageEncoder, SmartPosterRecord myRecord) {
-
-		List<Record> records = new ArrayList<Record>();
-
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		SmartPosterRecord myRecord = (SmartPosterRecord)wellKnownRecord;
+		int length = 0;
 		if (myRecord.getTitle() != null)
-			records.add(myRecord.getTitle());
+			length += messageEncoder.getEncodedRecordLength(myRecord.getTitle());
 		if (myRecord.getUri() != null)
-			records.add(myRecord.getUri());
+			length += messageEncoder.getEncodedRecordLength(myRecord.getUri());
 		if (myRecord.getAction() != null)
-			records.add(myRecord.getAction());
+			length += messageEncoder.getEncodedRecordLength(myRecord.getAction());
+		return length;
+	}
 
-		return messageEncoder.encode(records);
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		SmartPosterRecord myRecord = (SmartPosterRecord)wellKnownRecord;
+		boolean messageBegin = true;
+		if (myRecord.getTitle() != null) {
+			messageEncoder.encodeRecord(myRecord.getTitle(), messageBegin,
+					myRecord.getUri() == null && myRecord.getAction() == null, out);
+			messageBegin = false;
+		}
+		if (myRecord.getUri() != null) {
+			messageEncoder.encodeRecord(myRecord.getUri(), messageBegin, myRecord.getAction() == null, out);
+			messageBegin = false;
+		}
+		if (myRecord.getAction() != null)
+			messageEncoder.encodeRecord(myRecord.getAction(), messageBegin, true, out);
 	}
 
 }
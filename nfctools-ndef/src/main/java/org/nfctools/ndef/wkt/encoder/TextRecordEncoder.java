@@ -16,54 +16,97 @@
 package org.nfctools.ndef.wkt.encoder;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Locale;
 
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.RecordUtils;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.TextRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class TextRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class TextRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
+
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		TextRecord textRecord = checkTextRecord(wellKnownRecord);
+		return 1 + getLanguageCodeLength(textRecord) + getTextLength(textRecord);
+	}
+
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		TextRecord textRecord = checkTextRecord(wellKnownRecord);
+		Locale locale = textRecord.getLocale();
+		Charset encoding = textRecord.getEncoding();
 
+		out.put((byte)(getLanguageCodeLength(textRecord) | (TextRecord.UTF16.equals(encoding) ? 0x80 : 0x00)));
+		putAscii(locale.getLanguage(), out);
+		if (hasCountry(locale)) {
+			out.put((byte)'-');
+			putAscii(locale.getCountry(), out);
+		}
+
+		if (TextRecord.UTF8.equals(encoding))
+			RecordUtils.putUtf8(textRecord.getText(), 0, out);
+		else if (TextRecord.UTF16.equals(encoding))
+			RecordUtils.putUtf16(textRecord.getText(), out);
+		else
+			out.put(getTextAsBytes(textRecord, encoding));
+	}
+
+	private TextRecord checkTextRecord(WellKnownRecord wellKnownRecord) {
 		TextRecord textRecord = (TextRecord)wellKnownRecord;
 
-		if(!textRecord.hasLocale()) {
+		if (!textRecord.hasLocale()) {
 			throw new NdefEncoderException("Expected locale", wellKnownRecord);
 		}
 
-		if(!textRecord.hasEncoding()) {
+		if (!textRecord.hasEncoding()) {
 			throw new NdefEncoderException("Expected encoding", wellKnownRecord);
 		}
 
-		if(!textRecord.hasText()) {
+		if (!textRecord.hasText()) {
 			throw new NdefEncoderException("Expected text", wellKnownRecord);
 		}
 
+		if (getLanguageCodeLength(textRecord) > TextRecord.LANGUAGE_CODE_MASK) {
+			throw new NdefEncoderException("language code length longer than 2^5. this is not supported.",
+					wellKnownRecord);
+		}
+		return textRecord;
+	}
+
+	private int getLanguageCodeLength(TextRecord textRecord) {
 		Locale locale = textRecord.getLocale();
+		return locale.getLanguage().length() + (hasCountry(locale) ? 1 + locale.getCountry().length() : 0);
+	}
 
-		byte[] languageData = (locale.getLanguage() + (locale.getCountry() == null || locale.getCountry().length() == 0 ? ""
-				: ("-" + locale.getCountry()))).getBytes();
+	private boolean hasCountry(Locale locale) {
+		return locale.getCountry() != null && locale.getCountry().length() > 0;
+	}
 
-		if (languageData.length > TextRecord.LANGUAGE_CODE_MASK) {
-			throw new NdefEncoderException("language code length longer than 2^5. this is not supported.", wellKnownRecord);
-		}
-		
+	private int getTextLength(TextRecord textRecord) {
 		Charset encoding = textRecord.getEncoding();
+		if (TextRecord.UTF8.equals(encoding))
+			return RecordUtils.getUtf8Length(textRecord.getText(), 0);
+		else if (TextRecord.UTF16.equals(encoding))
+			return textRecord.getText().length() * 2;
+		else
+			return getTextAsBytes(textRecord, encoding).length;
+	}
 
-		byte[] textData = getTextAsBytes(textRecord, encoding);
-		byte[] payload = new byte[1 + languageData.length + textData.length];
-
-		byte status = (byte)(languageData.length | (TextRecord.UTF16.equals(encoding) ? 0x80 : 0x00));
-		payload[0] = status;
-		System.arraycopy(languageData, 0, payload, 1, languageData.length);
-		System.arraycopy(textData, 0, payload, 1 + languageData.length, textData.length);
-
-		return payload;
+	private void putAscii(String string, ByteBuffer out) {
+		for (int i = 0; i < string.length(); i++)
+			out.put((byte)string.charAt(i));
 	}
 
 	private byte[] getTextAsBytes(TextRecord textRecord, Charset encoding) {
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.encoder;
+
+/**
+ * Automaton over the abbreviable URI prefixes. Finds the longest prefix of a URI in a single pass, ignoring the case of
+ * ASCII letters, without creating a lowercase copy of the URI.
+ */
+final class UriPrefixTrie {
+
+	/** Maps an ASCII character to its column in the transition table, 0 for characters not used by any prefix. */
+	private final int[] columns = new int[128];
+	private final int columnCount;
+	/** Next state for each state and column, 0 for no transition. State 0 is the root. */
+	private final int[] transitions;
+	/** Index of the prefix ending in each state, 0 for none. */
+	private final int[] prefixIndex;
+
+	UriPrefixTrie(String[] prefixes) {
+		int nextColumn = 1;
+		int maxStates = 1;
+		for (String prefix : prefixes) {
+			maxStates += prefix.length();
+			for (int i = 0; i < prefix.length(); i++) {
+				int c = toLowerCase(prefix.charAt(i));
+				if (columns[c] == 0)
+					columns[c] = nextColumn++;
+			}
+		}
+		columnCount = nextColumn;
+		transitions = new int[maxStates * columnCount];
+		prefixIndex = new int[maxStates];
+
+		int stateCount = 1;
+		for (int x = 1; x < prefixes.length; x++) {
+			String prefix = prefixes[x];
+			int state = 0;
+			for (int i = 0; i < prefix.length(); i++) {
+				int transition = state * columnCount + columns[toLowerCase(prefix.charAt(i))];
+				if (transitions[transition] == 0)
+					transitions[transition] = stateCount++;
+				state = transitions[transition];
+			}
+			prefixIndex[state] = x;
+		}
+	}
+
+	/**
+	 * @return the index of the longest prefix the URI starts with, or 0 if there is none
+	 */
+	int getAbbreviateIndex(CharSequence uri) {
+		int abbreviateIndex = 0;
+		int state = 0;
+		int length = uri.length();
+		for (int i = 0; i < length; i++) {
+			char c = uri.charAt(i);
+			if (c >= 128)
+				break;
+			int column = columns[toLowerCase(c)];
+			if (column == 0)
+				break;
+			state = transitions[state * columnCount + column];
+			if (state == 0)
+				break;
+			if (prefixIndex[state] != 0)
+				abbreviateIndex = prefixIndex[state];
+		}
+		return abbreviateIndex;
+	}
+
+	private static int toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+}
@@ -15,57 +15,50 @@
  */
 package org.nfctools.ndef.wkt.encoder;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.RecordUtils;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.records.UriRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
-public class UriRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class UriRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
+
+	private static final UriPrefixTrie abbreviableUris = new UriPrefixTrie(UriRecord.abbreviableUris);
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
-		UriRecord uriRecord = (UriRecord)wellKnownRecord;
-		
-		if(!uriRecord.hasUri()) {
-			throw new NdefEncoderException("Expected URI", wellKnownRecord);
-		}
-
-		String uri = uriRecord.getUri();
-		byte[] uriAsBytes = getUriAsBytes(uri);
-
-		int abbreviateIndex = getAbbreviateIndex(uri.toLowerCase());
+		String uri = getUri(wellKnownRecord);
+		int abbreviateIndex = abbreviableUris.getAbbreviateIndex(uri);
 		int uriCopyOffset = UriRecord.abbreviableUris[abbreviateIndex].length();
-		byte[] payload = new byte[uriAsBytes.length + 1 - uriCopyOffset];
+		byte[] payload = new byte[1 + RecordUtils.getUtf8Length(uri, uriCopyOffset)];
 		payload[0] = (byte)abbreviateIndex;
-		System.arraycopy(uriAsBytes, uriCopyOffset, payload, 1, uriAsBytes.length - uriCopyOffset);
+		RecordUtils.putUtf8(uri, uriCopyOffset, ByteBuffer.wrap(payload, 1, payload.length - 1));
 		return payload;
-
 	}
 
-	private byte[] getUriAsBytes(String uri) {
-		try {
-			return uri.getBytes(UriRecord.DEFAULT_URI_CHARSET.name());
-		}
-		catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
-		}
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		String uri = getUri(wellKnownRecord);
+		int abbreviateIndex = abbreviableUris.getAbbreviateIndex(uri);
+		return 1 + RecordUtils.getUtf8Length(uri, UriRecord.abbreviableUris[abbreviateIndex].length());
 	}
 
-	private int getAbbreviateIndex(String uri) {
-		int maxLength = 0;
-		int abbreviateIndex = 0;
-		for (int x = 1; x < UriRecord.abbreviableUris.length; x++) {
-
-			String abbreviablePrefix = UriRecord.abbreviableUris[x];
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		String uri = getUri(wellKnownRecord);
+		int abbreviateIndex = abbreviableUris.getAbbreviateIndex(uri);
+		out.put((byte)abbreviateIndex);
+		RecordUtils.putUtf8(uri, UriRecord.abbreviableUris[abbreviateIndex].length(), out);
+	}
 
-			if (uri.startsWith(abbreviablePrefix) && abbreviablePrefix.length() > maxLength) {
-				abbreviateIndex = x;
-				maxLength = abbreviablePrefix.length();
-			}
+	private String getUri(WellKnownRecord wellKnownRecord) {
+		UriRecord uriRecord = (UriRecord)wellKnownRecord;
+		if (!uriRecord.hasUri()) {
+			throw new NdefEncoderException("Expected URI", wellKnownRecord);
 		}
-		return abbreviateIndex;
+		return uriRecord.getUri();
 	}
 }
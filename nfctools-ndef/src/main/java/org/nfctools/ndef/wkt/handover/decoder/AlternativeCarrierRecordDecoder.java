@@ -39,16 +39,16 @@ public class AlternativeCarrierRecordDecoder implements WellKnownRecordPayloadDe
 		alternativeCarrierRecord.setCarrierPowerState(CarrierPowerState.toCarrierPowerState(payload[0]));
 
 		// carrier data reference
-		short carrierDataReferenceLength = (short)payload[1];
+		int carrierDataReferenceLength = payload[1] & 0xff;
 		alternativeCarrierRecord.setCarrierDataReference(new String(payload, 2, carrierDataReferenceLength,
 				NdefConstants.DEFAULT_CHARSET));
 
 		// auxiliary data reference
-		short auxiliaryDataReferenceCount = (short)payload[2 + carrierDataReferenceLength];
+		int auxiliaryDataReferenceCount = payload[2 + carrierDataReferenceLength] & 0xff;
 
 		int index = 2 + carrierDataReferenceLength + 1;
 		for (int i = 0; i < auxiliaryDataReferenceCount; i++) {
-			short auxiliaryDataReferenceLength = (short)payload[index];
+			int auxiliaryDataReferenceLength = payload[index] & 0xff;
 
 			alternativeCarrierRecord.addAuxiliaryDataReference(new String(payload, index + 1,
 					auxiliaryDataReferenceLength, NdefConstants.DEFAULT_CHARSET));
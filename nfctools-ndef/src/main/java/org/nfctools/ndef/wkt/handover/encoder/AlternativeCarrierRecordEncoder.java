@@ -16,15 +16,14 @@
 
 package org.nfctools.ndef.wkt.handover.encoder;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
-import org.nfctools.ndef.NdefConstants;
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.RecordUtils;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord;
-import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord.CarrierPowerState;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
 /**
@@ -33,61 +32,71 @@ import org.nfctools.ndef.wkt.records.WellKnownRecord;
  * 
  */
 
-public class AlternativeCarrierRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class AlternativeCarrierRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
-		AlternativeCarrierRecord alternativeCarrierRecord = (AlternativeCarrierRecord)wellKnownRecord;
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		AlternativeCarrierRecord alternativeCarrierRecord = checkAlternativeCarrierRecord(wellKnownRecord);
 
-		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		// cps, carrier data reference length, auxiliary data reference count and reserved future use
+		int length = 4 + RecordUtils.getAsciiLength(alternativeCarrierRecord.getCarrierDataReference());
+		List<String> auxiliaryDataReferences = alternativeCarrierRecord.getAuxiliaryDataReferences();
+		for (int i = 0; i < auxiliaryDataReferences.size(); i++)
+			length += 1 + RecordUtils.getAsciiLength(auxiliaryDataReferences.get(i));
+		return length;
+	}
 
-		// cps
-		CarrierPowerState carrierPowerState = alternativeCarrierRecord.getCarrierPowerState();
-		if (carrierPowerState == null) {
-			throw new NdefEncoderException("Expected carrier power state", alternativeCarrierRecord);
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		AlternativeCarrierRecord alternativeCarrierRecord = checkAlternativeCarrierRecord(wellKnownRecord);
+
+		out.put((byte)(alternativeCarrierRecord.getCarrierPowerState().getValue() & 0x7)); // 3 lsb
+
+		String carrierDataReference = alternativeCarrierRecord.getCarrierDataReference();
+		out.put((byte)RecordUtils.getAsciiLength(carrierDataReference));
+		RecordUtils.putAscii(carrierDataReference, out);
+
+		List<String> auxiliaryDataReferences = alternativeCarrierRecord.getAuxiliaryDataReferences();
+		out.put((byte)auxiliaryDataReferences.size());
+		for (int i = 0; i < auxiliaryDataReferences.size(); i++) {
+			String auxiliaryDataReference = auxiliaryDataReferences.get(i);
+			out.put((byte)RecordUtils.getAsciiLength(auxiliaryDataReference));
+			RecordUtils.putAscii(auxiliaryDataReference, out);
 		}
-		bout.write(carrierPowerState.getValue() & 0x7); // 3 lsb
 
-		// carrier data reference: 1
+		// reserved future use
+		out.put((byte)0);
+	}
+
+	private AlternativeCarrierRecord checkAlternativeCarrierRecord(WellKnownRecord wellKnownRecord) {
+		AlternativeCarrierRecord alternativeCarrierRecord = (AlternativeCarrierRecord)wellKnownRecord;
+		if (alternativeCarrierRecord.getCarrierPowerState() == null) {
+			throw new NdefEncoderException("Expected carrier power state", alternativeCarrierRecord);
+		}
 		String carrierDataReference = alternativeCarrierRecord.getCarrierDataReference();
 		if (carrierDataReference == null) {
 			throw new NdefEncoderException("Expected carrier data reference", alternativeCarrierRecord);
 		}
-		byte[] carrierDataReferenceChar = carrierDataReference.getBytes(NdefConstants.DEFAULT_CHARSET);
-		if (carrierDataReferenceChar.length > 255) {
+		if (RecordUtils.getAsciiLength(carrierDataReference) > 255) {
 			throw new NdefEncoderException("Expected carrier data reference '" + carrierDataReference
 					+ "' <= 255 bytes", alternativeCarrierRecord);
 		}
-		// carrier data reference length (1)
-		bout.write(carrierDataReferenceChar.length);
-		// carrier data reference char
-		bout.write(carrierDataReferenceChar, 0, carrierDataReferenceChar.length);
-
-		// auxiliary data
 		List<String> auxiliaryDataReferences = alternativeCarrierRecord.getAuxiliaryDataReferences();
-		// auxiliary data reference count
-		bout.write(auxiliaryDataReferences.size());
-
-		for (String auxiliaryDataReference : auxiliaryDataReferences) {
-
-			byte[] auxiliaryDataReferenceChar = auxiliaryDataReference.getBytes(NdefConstants.DEFAULT_CHARSET);
-			// carrier data reference length (1)
-
-			if (auxiliaryDataReferenceChar.length > 255) {
+		for (int i = 0; i < auxiliaryDataReferences.size(); i++) {
+			String auxiliaryDataReference = auxiliaryDataReferences.get(i);
+			if (RecordUtils.getAsciiLength(auxiliaryDataReference) > 255) {
 				throw new NdefEncoderException("Expected auxiliary data reference '" + auxiliaryDataReference
 						+ "' <= 255 bytes", alternativeCarrierRecord);
 			}
-
-			bout.write(auxiliaryDataReferenceChar.length);
-			// carrier data reference char
-			bout.write(auxiliaryDataReferenceChar, 0, auxiliaryDataReferenceChar.length);
 		}
-
-		// reserved future use
-		bout.write(0);
-
-		return bout.toByteArray();
+		return alternativeCarrierRecord;
 	}
 
 }
@@ -16,8 +16,10 @@
 
 package org.nfctools.ndef.wkt.handover.encoder;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
 import org.nfctools.ndef.wkt.handover.records.CollisionResolutionRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
@@ -27,18 +29,25 @@ import org.nfctools.ndef.wkt.records.WellKnownRecord;
  * 
  */
 
-public class CollisionResolutionRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class CollisionResolutionRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
-		CollisionResolutionRecord collisionResolutionRecord = (CollisionResolutionRecord)wellKnownRecord;
-
-		int randomNumber = collisionResolutionRecord.getRandomNumber();
-
-		byte[] payload = new byte[] { (byte)((randomNumber >> 8) & 0xFF), (byte)(randomNumber & 0xFF) }; // msb, lsb
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		return 2;
+	}
 
-		return payload;
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		int randomNumber = ((CollisionResolutionRecord)wellKnownRecord).getRandomNumber();
+		out.put((byte)((randomNumber >> 8) & 0xFF)); // msb
+		out.put((byte)(randomNumber & 0xFF)); // lsb
 	}
 
 }
@@ -16,14 +16,13 @@
 
 package org.nfctools.ndef.wkt.handover.encoder;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.nfctools.ndef.NdefEncoderException;
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.Record;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord;
 import org.nfctools.ndef.wkt.handover.records.HandoverRequestRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
@@ -33,38 +32,50 @@ import org.nfctools.ndef.wkt.records.WellKnownRecord;
  * 
  */
 
-public class HandoverRequestRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class HandoverRequestRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
-		HandoverRequestRecord handoverRequestRecord = (HandoverRequestRecord)wellKnownRecord;
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		HandoverRequestRecord handoverRequestRecord = checkHandoverRequestRecord(wellKnownRecord);
+
+		int length = 1 + messageEncoder.getEncodedRecordLength(handoverRequestRecord.getCollisionResolution());
+		List<AlternativeCarrierRecord> alternativeCarriers = handoverRequestRecord.getAlternativeCarriers();
+		for (int i = 0; i < alternativeCarriers.size(); i++)
+			length += messageEncoder.getEncodedRecordLength(alternativeCarriers.get(i));
+		return length;
+	}
 
-		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		HandoverRequestRecord handoverRequestRecord = checkHandoverRequestRecord(wellKnownRecord);
 
 		// major version, minor version
-		payload.write((handoverRequestRecord.getMajorVersion() << 4) | handoverRequestRecord.getMinorVersion());
+		out.put((byte)((handoverRequestRecord.getMajorVersion() << 4) | handoverRequestRecord.getMinorVersion()));
+
+		// a collision resolution record followed by n alternative carrier records
+		messageEncoder.encodeRecord(handoverRequestRecord.getCollisionResolution(), true, false, out);
+		List<AlternativeCarrierRecord> alternativeCarriers = handoverRequestRecord.getAlternativeCarriers();
+		for (int i = 0; i < alternativeCarriers.size(); i++)
+			messageEncoder.encodeRecord(alternativeCarriers.get(i), false, i == alternativeCarriers.size() - 1, out);
+	}
 
+	private HandoverRequestRecord checkHandoverRequestRecord(WellKnownRecord wellKnownRecord) {
+		HandoverRequestRecord handoverRequestRecord = (HandoverRequestRecord)wellKnownRecord;
 		if (!handoverRequestRecord.hasCollisionResolution()) {
 			throw new NdefEncoderException("Expected collision resolution", handoverRequestRecord);
 		}
-
-		// implementation note: write alternative carriers and and collision resolution together
 		if (!handoverRequestRecord.hasAlternativeCarriers()) {
 			// At least a single alternative carrier MUST be specified by the Handover Requester.
 			throw new NdefEncoderException("Expected at least one alternative carrier", handoverRequestRecord);
 		}
-		List<Record> records = new ArrayList<Record>();
-
-		// a collision resolution record
-		records.add(handoverRequestRecord.getCollisionResolution());
-
-		// n alternative carrier records
-		records.addAll(handoverRequestRecord.getAlternativeCarriers());
-
-		messageEncoder.encode(records, payload);
-
-		return payload.toByteArray();
+		return handoverRequestRecord;
 	}
 
 }
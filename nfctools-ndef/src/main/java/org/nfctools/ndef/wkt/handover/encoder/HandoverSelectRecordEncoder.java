@@ -16,13 +16,12 @@
 
 package org.nfctools.ndef.wkt.handover.encoder;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.nfctools.ndef.NdefMessageEncoder;
-import org.nfctools.ndef.Record;
-import org.nfctools.ndef.wkt.WellKnownRecordPayloadEncoder;
+import org.nfctools.ndef.wkt.WellKnownRecordPayloadBufferEncoder;
+import org.nfctools.ndef.wkt.handover.records.AlternativeCarrierRecord;
 import org.nfctools.ndef.wkt.handover.records.HandoverSelectRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
@@ -32,46 +31,43 @@ import org.nfctools.ndef.wkt.records.WellKnownRecord;
  * 
  */
 
-public class HandoverSelectRecordEncoder implements WellKnownRecordPayloadEncoder {
+public class HandoverSelectRecordEncoder implements WellKnownRecordPayloadBufferEncoder {
 
 	@Override
 	public byte[] encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
+		byte[] payload = new byte[getPayloadLength(wellKnownRecord, messageEncoder)];
+		encodePayload(wellKnownRecord, messageEncoder, ByteBuffer.wrap(payload));
+		return payload;
+	}
 
+	@Override
+	public int getPayloadLength(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder) {
 		HandoverSelectRecord handoverSelectRecord = (HandoverSelectRecord)wellKnownRecord;
 
-		ByteArrayOutputStream payload = new ByteArrayOutputStream();
-
-		// major version, minor version
-		payload.write((handoverSelectRecord.getMajorVersion() << 4) | handoverSelectRecord.getMinorVersion());
-
-		// implementation note: write alternative carriers and error record together
-		if (handoverSelectRecord.hasError() && handoverSelectRecord.hasAlternativeCarriers()) {
-
-			List<Record> records = new ArrayList<Record>();
-
-			// n alternative carrier records
-			records.addAll(handoverSelectRecord.getAlternativeCarriers());
-
-			// an error message
-			records.add(handoverSelectRecord.getError());
-
-			messageEncoder.encode(records, payload);
-		}
-		else if (handoverSelectRecord.hasAlternativeCarriers()) {
-
-			// n alternative carrier records
-			messageEncoder.encode(handoverSelectRecord.getAlternativeCarriers(), payload);
-		}
-		else if (handoverSelectRecord.hasError()) {
+		int length = 1;
+		List<AlternativeCarrierRecord> alternativeCarriers = handoverSelectRecord.getAlternativeCarriers();
+		for (int i = 0; i < alternativeCarriers.size(); i++)
+			length += messageEncoder.getEncodedRecordLength(alternativeCarriers.get(i));
+		if (handoverSelectRecord.hasError())
+			length += messageEncoder.getEncodedRecordLength(handoverSelectRecord.getError());
+		return length;
+	}
 
-			// an error message
-			messageEncoder.encodeSingle(handoverSelectRecord.getError(), payload);
-		}
-		else {
-			// do nothing
-		}
+	@Override
+	public void encodePayload(WellKnownRecord wellKnownRecord, NdefMessageEncoder messageEncoder, ByteBuffer out) {
+		HandoverSelectRecord handoverSelectRecord = (HandoverSelectRecord)wellKnownRecord;
 
-		return payload.toByteArray();
+		// major version, minor version
+		out.put((byte)((handoverSelectRecord.getMajorVersion() << 4) | handoverSelectRecord.getMinorVersion()));
+
+		// n alternative carrier records followed by an optional error message
+		List<AlternativeCarrierRecord> alternativeCarriers = handoverSelectRecord.getAlternativeCarriers();
+		boolean hasError = handoverSelectRecord.hasError();
+		for (int i = 0; i < alternativeCarriers.size(); i++)
+			messageEncoder.encodeRecord(alternativeCarriers.get(i), i == 0, !hasError
+					&& i == alternativeCarriers.size() - 1, out);
+		if (hasError)
+			messageEncoder.encodeRecord(handoverSelectRecord.getError(), alternativeCarriers.isEmpty(), true, out);
 	}
 
 }
@@ -17,6 +17,7 @@
 package org.nfctools.ndef.wkt.handover.records;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
@@ -95,6 +96,7 @@ public class AlternativeCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setCarrierPowerState(CarrierPowerState carrierPowerState) {
+		checkNotFrozen();
 		this.carrierPowerState = carrierPowerState;
 	}
 
@@ -103,6 +105,7 @@ public class AlternativeCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setCarrierDataReference(String carrierDataReference) {
+		checkNotFrozen();
 		this.carrierDataReference = carrierDataReference;
 	}
 
@@ -111,13 +114,21 @@ public class AlternativeCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setAuxiliaryDataReferences(List<String> auxiliaryDataReference) {
+		checkNotFrozen();
 		this.auxiliaryDataReferences = auxiliaryDataReference;
 	}
 
 	public void addAuxiliaryDataReference(String string) {
+		checkNotFrozen();
 		this.auxiliaryDataReferences.add(string);
 	}
 
+	@Override
+	protected void freezeContent() {
+		if (auxiliaryDataReferences != null)
+			auxiliaryDataReferences = Collections.unmodifiableList(auxiliaryDataReferences);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -163,6 +174,7 @@ public class AlternativeCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setAuxiliaryDataReference(int index, String reference) {
+		checkNotFrozen();
 		auxiliaryDataReferences.set(index, reference);
 	}
 
@@ -171,10 +183,12 @@ public class AlternativeCarrierRecord extends WellKnownRecord {
 	}
 
 	public void insertAuxiliaryDataReference(String reference, int index) {
+		checkNotFrozen();
 		auxiliaryDataReferences.add(index, reference);
 	}
 
 	public void removeAuxiliaryDataReference(int index) {
+		checkNotFrozen();
 		auxiliaryDataReferences.remove(index);
 	}
 
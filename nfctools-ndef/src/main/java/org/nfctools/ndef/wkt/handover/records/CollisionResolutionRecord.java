@@ -47,6 +47,7 @@ public class CollisionResolutionRecord extends WellKnownRecord {
 	}
 
 	public void setRandomNumber(int randomNumber) {
+		checkNotFrozen();
 		this.randomNumber = randomNumber;
 	}
 
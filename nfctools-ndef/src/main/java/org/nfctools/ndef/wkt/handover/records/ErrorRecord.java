@@ -102,6 +102,7 @@ public class ErrorRecord extends WellKnownRecord {
 	}
 
 	public void setErrorReason(ErrorReason errorReason) {
+		checkNotFrozen();
 		this.errorReason = errorReason;
 	}
 
@@ -110,6 +111,7 @@ public class ErrorRecord extends WellKnownRecord {
 	}
 
 	public void setErrorData(Number errorData) {
+		checkNotFrozen();
 		this.errorData = errorData;
 	}
 
@@ -19,6 +19,7 @@ package org.nfctools.ndef.wkt.handover.records;
 import java.util.Arrays;
 
 import org.nfctools.ndef.NdefConstants;
+import org.nfctools.ndef.Record;
 import org.nfctools.ndef.ext.UnsupportedExternalTypeRecord;
 import org.nfctools.ndef.wkt.records.WellKnownRecord;
 
@@ -102,6 +103,7 @@ public class HandoverCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setCarrierTypeFormat(CarrierTypeFormat carrierTypeFormat) {
+		checkNotFrozen();
 		this.carrierTypeFormat = carrierTypeFormat;
 	}
 
@@ -110,6 +112,7 @@ public class HandoverCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setCarrierType(Object carrierType) {
+		checkNotFrozen();
 		this.carrierType = carrierType;
 	}
 
@@ -118,6 +121,7 @@ public class HandoverCarrierRecord extends WellKnownRecord {
 	}
 
 	public void setCarrierData(byte[] carrierData) {
+		checkNotFrozen();
 		this.carrierData = carrierData;
 	}
 
@@ -129,6 +133,12 @@ public class HandoverCarrierRecord extends WellKnownRecord {
 		return carrierData.length;
 	}
 
+	@Override
+	protected void freezeContent() {
+		if (carrierType instanceof Record)
+			freeze((Record)carrierType);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
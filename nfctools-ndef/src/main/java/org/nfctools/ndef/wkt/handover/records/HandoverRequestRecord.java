@@ -91,6 +91,7 @@ public class HandoverRequestRecord extends WellKnownRecord {
 	}
 
 	public void setMajorVersion(byte majorVersion) {
+		checkNotFrozen();
 		this.majorVersion = majorVersion;
 	}
 
@@ -99,6 +100,7 @@ public class HandoverRequestRecord extends WellKnownRecord {
 	}
 
 	public void setMinorVersion(byte minorVersion) {
+		checkNotFrozen();
 		this.minorVersion = minorVersion;
 	}
 
@@ -107,6 +109,7 @@ public class HandoverRequestRecord extends WellKnownRecord {
 	}
 
 	public void setAlternativeCarriers(List<AlternativeCarrierRecord> alternativeCarriers) {
+		checkNotFrozen();
 		this.alternativeCarriers = alternativeCarriers;
 	}
 
@@ -115,6 +118,7 @@ public class HandoverRequestRecord extends WellKnownRecord {
 	}
 
 	public void setCollisionResolution(CollisionResolutionRecord collisionResolution) {
+		checkNotFrozen();
 		this.collisionResolution = collisionResolution;
 	}
 
@@ -123,6 +127,7 @@ public class HandoverRequestRecord extends WellKnownRecord {
 	}
 
 	public void add(AlternativeCarrierRecord alternativeCarrierRecord) {
+		checkNotFrozen();
 		this.alternativeCarriers.add(alternativeCarrierRecord);
 	}
 
@@ -130,6 +135,12 @@ public class HandoverRequestRecord extends WellKnownRecord {
 		return this.collisionResolution != null;
 	}
 
+	@Override
+	protected void freezeContent() {
+		freeze(collisionResolution);
+		alternativeCarriers = freeze(alternativeCarriers);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -87,6 +87,7 @@ public class HandoverSelectRecord extends WellKnownRecord {
 	}
 
 	public void setMajorVersion(byte majorVersion) {
+		checkNotFrozen();
 		this.majorVersion = majorVersion;
 	}
 
@@ -95,6 +96,7 @@ public class HandoverSelectRecord extends WellKnownRecord {
 	}
 
 	public void setMinorVersion(byte minorVersion) {
+		checkNotFrozen();
 		this.minorVersion = minorVersion;
 	}
 
@@ -103,6 +105,7 @@ public class HandoverSelectRecord extends WellKnownRecord {
 	}
 
 	public void setAlternativeCarriers(List<AlternativeCarrierRecord> alternativeCarriers) {
+		checkNotFrozen();
 		this.alternativeCarriers = alternativeCarriers;
 	}
 
@@ -111,6 +114,7 @@ public class HandoverSelectRecord extends WellKnownRecord {
 	}
 
 	public void setError(ErrorRecord error) {
+		checkNotFrozen();
 		this.error = error;
 	}
 
@@ -123,9 +127,16 @@ public class HandoverSelectRecord extends WellKnownRecord {
 	}
 
 	public void add(AlternativeCarrierRecord record) {
+		checkNotFrozen();
 		this.alternativeCarriers.add(record);
 	}
 
+	@Override
+	protected void freezeContent() {
+		alternativeCarriers = freeze(alternativeCarriers);
+		freeze(error);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
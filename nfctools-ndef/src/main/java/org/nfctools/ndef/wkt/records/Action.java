@@ -34,6 +34,6 @@ public enum Action {
 				return possibleAction;
 			}
 		}
-		throw new RuntimeException("unkown action value (" + value + ")");
+		throw new IllegalArgumentException("unkown action value (" + value + ")");
 	}
 }
\ No newline at end of file
@@ -73,6 +73,7 @@ public class ActionRecord extends WellKnownRecord {
 	 *            The recommended action.
 	 */
 	public void setAction(Action action) {
+		checkNotFrozen();
 		this.action = action;
 	}
 
@@ -48,6 +48,7 @@ public class GcActionRecord extends WellKnownRecord {
 	}
 
 	public void setActionRecord(Record actionRecord) {
+		checkNotFrozen();
 		this.actionRecord = actionRecord;
 	}
 
@@ -61,9 +62,15 @@ public class GcActionRecord extends WellKnownRecord {
 	}
 
 	public void setAction(Action action) {
+		checkNotFrozen();
 		this.action = action;
 	}
 
+	@Override
+	protected void freezeContent() {
+		freeze(actionRecord);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
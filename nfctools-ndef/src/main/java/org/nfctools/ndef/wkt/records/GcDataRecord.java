@@ -38,6 +38,7 @@ public class GcDataRecord extends WellKnownRecord {
 	}
 
 	public void add(Record record) {
+		checkNotFrozen();
 		records.add(record);
 	}
 
@@ -57,9 +58,15 @@ public class GcDataRecord extends WellKnownRecord {
 	}
 
 	public void remove(Record record) {
+		checkNotFrozen();
 		records.remove(record);
 	}
 
+	@Override
+	protected void freezeContent() {
+		records = freeze(records);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -29,6 +29,7 @@ public class GcTargetRecord extends WellKnownRecord {
 	}
 
 	public void setTargetIdentifier(Record targetIdentifier) {
+		checkNotFrozen();
 		if (targetIdentifier != null) {
 			if ((targetIdentifier instanceof UriRecord) || (targetIdentifier instanceof TextRecord))
 				this.targetIdentifier = targetIdentifier;
@@ -54,6 +55,11 @@ public class GcTargetRecord extends WellKnownRecord {
 		return targetIdentifier != null;
 	}
 
+	@Override
+	protected void freezeContent() {
+		freeze(targetIdentifier);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -38,6 +38,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setConfigurationByte(byte configurationByte) {
+		checkNotFrozen();
 		this.configurationByte = configurationByte;
 	}
 
@@ -50,6 +51,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setIgnoreFollowingIfFailed() {
+		checkNotFrozen();
 		configurationByte |= CB_IGNORE_FOLLOWING_IF_FAILED;
 	}
 
@@ -58,6 +60,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setCheckExitCondition() {
+		checkNotFrozen();
 		configurationByte |= CB_CHECK_EXIT_CONDITION;
 	}
 
@@ -66,6 +69,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setTarget(GcTargetRecord target) {
+		checkNotFrozen();
 		this.target = target;
 	}
 
@@ -74,6 +78,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setAction(GcActionRecord action) {
+		checkNotFrozen();
 		this.action = action;
 	}
 
@@ -82,6 +87,7 @@ public class GenericControlRecord extends WellKnownRecord {
 	}
 
 	public void setData(GcDataRecord data) {
+		checkNotFrozen();
 		this.data = data;
 	}
 
@@ -102,6 +108,13 @@ public class GenericControlRecord extends WellKnownRecord {
 		return data != null;
 	}
 
+	@Override
+	protected void freezeContent() {
+		freeze(target);
+		freeze(action);
+		freeze(data);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -2,6 +2,7 @@ package org.nfctools.ndef.wkt.records;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -137,6 +138,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setSignatureType(SignatureType signatureType) {
+		checkNotFrozen();
 		this.signatureType = signatureType;
 	}
 
@@ -145,6 +147,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setCertificateFormat(CertificateFormat certificateFormat) {
+		checkNotFrozen();
 		this.certificateFormat = certificateFormat;
 	}
 
@@ -153,6 +156,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setCertificates(List<byte[]> certificates) {
+		checkNotFrozen();
 		this.certificates = certificates;
 	}
 
@@ -161,6 +165,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setVersion(byte version) {
+		checkNotFrozen();
 		this.version = version;
 	}
 
@@ -169,6 +174,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setSignature(byte[] signature) {
+		checkNotFrozen();
 		this.signature = signature;
 	}
 
@@ -177,6 +183,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setSignatureUri(String signatureUri) {
+		checkNotFrozen();
 		this.signatureUri = signatureUri;
 	}
 
@@ -185,6 +192,7 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void setCertificateUri(String certificateUri) {
+		checkNotFrozen();
 		this.certificateUri = certificateUri;
 	}
 
@@ -197,9 +205,16 @@ public class SignatureRecord extends WellKnownRecord {
 	}
 
 	public void add(byte[] certificate) {
+		checkNotFrozen();
 		this.certificates.add(certificate);
 	}
 
+	@Override
+	protected void freezeContent() {
+		if (certificates != null)
+			certificates = Collections.unmodifiableList(certificates);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -63,6 +63,7 @@ public class SmartPosterRecord extends WellKnownRecord {
 	 *            The title as an instance of a text record.
 	 */
 	public void setTitle(TextRecord title) {
+		checkNotFrozen();
 		this.title = title;
 	}
 
@@ -82,6 +83,7 @@ public class SmartPosterRecord extends WellKnownRecord {
 	 *            The URI record.
 	 */
 	public void setUri(UriRecord uri) {
+		checkNotFrozen();
 		this.uri = uri;
 	}
 
@@ -107,6 +109,7 @@ public class SmartPosterRecord extends WellKnownRecord {
 	 *            The action record.
 	 */
 	public void setAction(ActionRecord action) {
+		checkNotFrozen();
 		this.action = action;
 	}
 
@@ -148,6 +151,13 @@ public class SmartPosterRecord extends WellKnownRecord {
 		return action != null;
 	}
 
+	@Override
+	protected void freezeContent() {
+		freeze(title);
+		freeze(uri);
+		freeze(action);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -153,6 +153,7 @@ public class TextRecord extends WellKnownRecord {
 	 *            The text of this record.
 	 */
 	public void setText(String text) {
+		checkNotFrozen();
 		this.text = text;
 	}
 
@@ -167,6 +168,7 @@ public class TextRecord extends WellKnownRecord {
 	 *             If encoding is neither UTF8 or UTF16.
 	 */
 	public void setEncoding(Charset encoding) {
+		checkNotFrozen();
 		if (!encoding.equals(UTF8) && !encoding.equals(UTF16))
 			throw new IllegalArgumentException("unsupported encoding. only utf8 and utf16 are allowed.");
 
@@ -181,6 +183,7 @@ public class TextRecord extends WellKnownRecord {
 	 *            The language code.
 	 */
 	public void setLocale(Locale locale) {
+		checkNotFrozen();
 		this.locale = locale;
 	}
 
@@ -235,7 +235,7 @@ public class UriRecord extends WellKnownRecord {
 	 */
 	public UriRecord(String prefix, String uri) {
 		this.prefix = prefix;
-		this.uri = prefix + uri;
+		this.uri = prefix.length() == 0 && uri != null ? uri : prefix + uri;
 	}
 
 	/**
@@ -269,6 +269,7 @@ public class UriRecord extends WellKnownRecord {
 	 *            The complete URI.
 	 */
 	public void setUri(String uri) {
+		checkNotFrozen();
 		this.uri = uri;
 	}
 
@@ -279,6 +280,7 @@ public class UriRecord extends WellKnownRecord {
 	 *            The prefix. You can use the public constants of this class.
 	 */
 	public void setPrefix(String prefix) {
+		checkNotFrozen();
 		this.prefix = prefix;
 	}
 
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+/**
+ * Cache for certificate chains that were validated against the trust anchors of a {@link SignatureVerifier}. The
+ * chains are keyed by the trust anchors and their encoded certificates, so a chain is only parsed and validated the
+ * first time it is seen. A cache may be shared by verifiers with different trust anchors, a chain is only returned
+ * for the anchors it was validated against. Implementations must be thread safe.
+ */
+public interface CertificateChainCache {
+
+	/**
+	 * @return the chain for the encoded certificates validated against the trust anchors or null if the chain is not
+	 *         cached
+	 */
+	List<X509Certificate> get(TrustAnchorKey trustAnchors, List<byte[]> certificates);
+
+	void put(TrustAnchorKey trustAnchors, List<byte[]> certificates, List<X509Certificate> chain);
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded {@link CertificateChainCache} that evicts the least recently used chain.
+ */
+public class LruCertificateChainCache implements CertificateChainCache {
+
+	private final Map<ChainKey, List<X509Certificate>> chains;
+
+	public LruCertificateChainCache(final int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Expected cache size > 0");
+		chains = new LinkedHashMap<ChainKey, List<X509Certificate>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ChainKey, List<X509Certificate>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	@Override
+	public synchronized List<X509Certificate> get(TrustAnchorKey trustAnchors, List<byte[]> certificates) {
+		return chains.get(new ChainKey(trustAnchors, certificates));
+	}
+
+	@Override
+	public synchronized void put(TrustAnchorKey trustAnchors, List<byte[]> certificates,
+			List<X509Certificate> chain) {
+		byte[][] copy = new byte[certificates.size()][];
+		for (int i = 0; i < copy.length; i++)
+			copy[i] = certificates.get(i).clone();
+		chains.put(new ChainKey(trustAnchors, Arrays.asList(copy)), chain);
+	}
+
+	public synchronized int size() {
+		return chains.size();
+	}
+
+	private static final class ChainKey {
+
+		private final TrustAnchorKey trustAnchors;
+		private final List<byte[]> certificates;
+		private final int hash;
+
+		private ChainKey(TrustAnchorKey trustAnchors, List<byte[]> certificates) {
+			this.trustAnchors = trustAnchors;
+			this.certificates = certificates;
+			int hash = 31 * trustAnchors.hashCode() + certificates.size();
+			for (byte[] certificate : certificates)
+				hash = 31 * hash + Arrays.hashCode(certificate);
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ChainKey))
+				return false;
+			ChainKey other = (ChainKey)obj;
+			if (hash != other.hash || certificates.size() != other.certificates.size())
+				return false;
+			if (!trustAnchors.equals(other.trustAnchors))
+				return false;
+			for (int i = 0; i < certificates.size(); i++) {
+				if (!Arrays.equals(certificates.get(i), other.certificates.get(i)))
+					return false;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * The result of verifying one signature record of a message.
+ */
+public class SignatureVerificationResult {
+
+	public enum Status {
+		/** The signature is valid and the certificate chain leads to a trust anchor. */
+		VALID,
+		/** The signature does not match the signed records. */
+		INVALID_SIGNATURE,
+		/** The certificate chain is missing, invalid or does not lead to a trust anchor. */
+		UNTRUSTED_CERTIFICATE,
+		/** The signature or certificate cannot be verified offline or with the available algorithms. */
+		UNSUPPORTED,
+		/** The message or the signature record cannot be decoded. */
+		MALFORMED
+	}
+
+	private final Status status;
+	private final int firstRecord;
+	private final int signatureRecord;
+	private final X509Certificate signer;
+	private final String reason;
+
+	public SignatureVerificationResult(Status status, int firstRecord, int signatureRecord, X509Certificate signer,
+			String reason) {
+		this.status = status;
+		this.firstRecord = firstRecord;
+		this.signatureRecord = signatureRecord;
+		this.signer = signer;
+		this.reason = reason;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isValid() {
+		return status == Status.VALID;
+	}
+
+	/**
+	 * @return the index of the first signed record or -1 if the message could not be decoded
+	 */
+	public int getFirstRecord() {
+		return firstRecord;
+	}
+
+	/**
+	 * @return the index of the signature record, the signed records are the ones from the first record up to this
+	 *         index. -1 if the message could not be decoded.
+	 */
+	public int getSignatureRecord() {
+		return signatureRecord;
+	}
+
+	/**
+	 * @return the certificate of the signer if the signature is valid, null otherwise
+	 */
+	public X509Certificate getSigner() {
+		return signer;
+	}
+
+	/**
+	 * @return a description of why the signature is not valid or null
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "SignatureVerificationResult [status=" + status + ", records=" + firstRecord + ".." + signatureRecord
+				+ (reason != null ? ", reason=" + reason : "") + "]";
+	}
+}
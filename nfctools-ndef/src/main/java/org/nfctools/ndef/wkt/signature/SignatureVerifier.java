@@ -0,0 +1,433 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+
+import org.nfctools.ndef.NdefConstants;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefMessageDecoder;
+import org.nfctools.ndef.NdefRecord;
+import org.nfctools.ndef.wkt.decoder.SignatureRecordDecoder;
+import org.nfctools.ndef.wkt.records.SignatureRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord.CertificateFormat;
+import org.nfctools.ndef.wkt.signature.SignatureVerificationResult.Status;
+
+/**
+ * Verifies the signature records of NDEF messages against a local set of trust anchors.
+ * 
+ * As defined in version 1.0 of the Signature RTD the signed data of a signature record are the type, id and payload of
+ * every record since the start of the message, the last start marker or the last signature record. The verifier
+ * walks the records of the message once and feeds these fields into a SHA-1 digest as they are reached, without
+ * decoding or re-encoding the signed records. When a signature record is reached the digest is checked against the
+ * signature with the public key of the first embedded certificate.
+ * 
+ * The embedded X.509 certificate chain is validated with PKIX against the trust anchors only, revocation is not
+ * checked and no certificate or signature URIs are resolved, so verification works offline. Validated chains are
+ * kept in a {@link CertificateChainCache} keyed by the encoded trust anchors, only the validity dates of a cached chain
+ * are checked again.
+ * 
+ * A verifier is thread safe. {@link #verify(List, ExecutorService)} verifies many messages concurrently.
+ */
+public class SignatureVerifier {
+
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	private static final byte[] SIGNATURE_TYPE = { 'S', 'i', 'g' };
+
+	/** DER encoded DigestInfo prefix of a SHA-1 digest, see PKCS #1. */
+	private static final byte[] SHA1_DIGEST_INFO = { 0x30, 0x21, 0x30, 0x09, 0x06, 0x05, 0x2b, 0x0e, 0x03, 0x02, 0x1a,
+			0x05, 0x00, 0x04, 0x14 };
+
+	private final Set<TrustAnchor> trustAnchors;
+	private final TrustAnchorKey trustAnchorKey;
+	private final CertificateChainCache certificateChainCache;
+	private final NdefMessageDecoder ndefMessageDecoder;
+	private final SignatureRecordDecoder signatureRecordDecoder = new SignatureRecordDecoder();
+
+	/**
+	 * Uses the trusted certificate entries of the key store as trust anchors.
+	 */
+	public SignatureVerifier(KeyStore trustStore) throws KeyStoreException {
+		this(getTrustAnchors(trustStore), new LruCertificateChainCache(DEFAULT_CACHE_SIZE), NdefContext
+				.getNdefMessageDecoder());
+	}
+
+	public SignatureVerifier(Set<TrustAnchor> trustAnchors, CertificateChainCache certificateChainCache,
+			NdefMessageDecoder ndefMessageDecoder) {
+		if (trustAnchors.isEmpty())
+			throw new IllegalArgumentException("Expected at least one trust anchor");
+		this.trustAnchors = Collections.unmodifiableSet(new HashSet<TrustAnchor>(trustAnchors));
+		this.trustAnchorKey = new TrustAnchorKey(this.trustAnchors);
+		this.certificateChainCache = certificateChainCache;
+		this.ndefMessageDecoder = ndefMessageDecoder;
+	}
+
+	private static Set<TrustAnchor> getTrustAnchors(KeyStore trustStore) throws KeyStoreException {
+		try {
+			return new PKIXParameters(trustStore).getTrustAnchors();
+		}
+		catch (InvalidAlgorithmParameterException e) {
+			throw new IllegalArgumentException("trust store contains no trusted certificates", e);
+		}
+	}
+
+	public List<SignatureVerificationResult> verify(byte[] ndefMessage) {
+		return verify(ByteBuffer.wrap(ndefMessage));
+	}
+
+	/**
+	 * Verifies every signature record in the remaining bytes of the buffer. The buffer is not modified.
+	 * 
+	 * @return one result per signature record, start markers have no result. A signature record, certificate or
+	 *         signature that cannot be parsed has a {@link Status#MALFORMED} result.
+	 * @throws IllegalArgumentException if the message framing is invalid
+	 */
+	public List<SignatureVerificationResult> verify(ByteBuffer ndefMessage) {
+		List<NdefRecord> ndefRecords = new ArrayList<NdefRecord>();
+		try {
+			ndefMessageDecoder.decode(ndefMessage, ndefRecords);
+		}
+		catch (IllegalArgumentException e) {
+			throw e;
+		}
+		catch (RuntimeException e) {
+			throw new IllegalArgumentException("malformed message", e);
+		}
+
+		List<SignatureVerificationResult> results = new ArrayList<SignatureVerificationResult>();
+		MessageDigest digest = getDigest();
+		int index = -1;
+		int firstRecord = 0;
+		for (NdefRecord ndefRecord : ndefRecords) {
+			if (ndefRecord.getTnf() != NdefConstants.TNF_UNCHANGED)
+				index++;
+			if (!isSignatureRecord(ndefRecord)) {
+				// chunks have no type and id, so their payloads simply continue the signed data
+				digest.update(ndefRecord.getTypeBuffer());
+				digest.update(ndefRecord.getIdBuffer());
+				digest.update(ndefRecord.getPayloadBuffer());
+				continue;
+			}
+
+			SignatureRecord signatureRecord = null;
+			try {
+				if (ndefRecord.isChunked())
+					throw new IllegalArgumentException("chunked signature record");
+				signatureRecord = (SignatureRecord)signatureRecordDecoder.decodePayload(ndefRecord.getPayload(),
+						ndefMessageDecoder);
+			}
+			catch (RuntimeException e) {
+				// the payload is untrusted input, any decoding failure makes the record malformed
+				results.add(new SignatureVerificationResult(Status.MALFORMED, firstRecord, index, null, e.getMessage()));
+			}
+			if (signatureRecord != null && !signatureRecord.isStartMarker())
+				results.add(verify(signatureRecord, digest.digest(), firstRecord, index));
+			digest.reset();
+			firstRecord = index + 1;
+		}
+		return results;
+	}
+
+	/**
+	 * Verifies the messages with the tasks of the executor, one task per message.
+	 * 
+	 * @return the results in the order of the messages. A message that cannot be decoded has a single
+	 *         {@link Status#MALFORMED} result.
+	 */
+	public List<List<SignatureVerificationResult>> verify(List<byte[]> ndefMessages, ExecutorService executor)
+			throws InterruptedException {
+		List<Callable<List<SignatureVerificationResult>>> tasks = new ArrayList<Callable<List<SignatureVerificationResult>>>();
+		for (byte[] ndefMessage : ndefMessages)
+			tasks.add(new VerifyTask(ndefMessage));
+
+		List<List<SignatureVerificationResult>> results = new ArrayList<List<SignatureVerificationResult>>();
+		for (Future<List<SignatureVerificationResult>> future : executor.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			}
+			catch (ExecutionException e) {
+				// errors of single messages are caught by the task, anything else is a bug
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	private SignatureVerificationResult verify(SignatureRecord signatureRecord, byte[] digest, int firstRecord,
+			int signatureRecordIndex) {
+		if (!signatureRecord.hasSignature())
+			return new SignatureVerificationResult(Status.UNSUPPORTED, firstRecord, signatureRecordIndex, null,
+					"signature URI cannot be resolved offline");
+		if (signatureRecord.getCertificateFormat() != CertificateFormat.X_509)
+			return new SignatureVerificationResult(Status.UNSUPPORTED, firstRecord, signatureRecordIndex, null,
+					"unsupported certificate format " + signatureRecord.getCertificateFormat());
+		if (signatureRecord.getCertificates().isEmpty())
+			return new SignatureVerificationResult(Status.UNTRUSTED_CERTIFICATE, firstRecord, signatureRecordIndex,
+					null, "no embedded certificates");
+
+		List<X509Certificate> chain;
+		try {
+			chain = getValidatedChain(signatureRecord.getCertificates());
+		}
+		catch (GeneralSecurityException e) {
+			return new SignatureVerificationResult(Status.UNTRUSTED_CERTIFICATE, firstRecord, signatureRecordIndex,
+					null, e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			return new SignatureVerificationResult(Status.MALFORMED, firstRecord, signatureRecordIndex, null, e
+					.getMessage());
+		}
+
+		X509Certificate signer = chain.get(0);
+		try {
+			if (verifySignature(signatureRecord, signer, digest))
+				return new SignatureVerificationResult(Status.VALID, firstRecord, signatureRecordIndex, signer, null);
+			return new SignatureVerificationResult(Status.INVALID_SIGNATURE, firstRecord, signatureRecordIndex, null,
+					"signature does not match");
+		}
+		catch (NoSuchAlgorithmException e) {
+			return new SignatureVerificationResult(Status.UNSUPPORTED, firstRecord, signatureRecordIndex, null,
+					e.getMessage());
+		}
+		catch (NoSuchPaddingException e) {
+			return new SignatureVerificationResult(Status.UNSUPPORTED, firstRecord, signatureRecordIndex, null,
+					e.getMessage());
+		}
+		catch (GeneralSecurityException e) {
+			return new SignatureVerificationResult(Status.INVALID_SIGNATURE, firstRecord, signatureRecordIndex, null,
+					e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			return new SignatureVerificationResult(Status.MALFORMED, firstRecord, signatureRecordIndex, null, e
+					.getMessage());
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the certificates cannot be parsed
+	 */
+	private List<X509Certificate> getValidatedChain(List<byte[]> certificates) throws GeneralSecurityException {
+		List<X509Certificate> chain = certificateChainCache.get(trustAnchorKey, certificates);
+		if (chain != null) {
+			for (X509Certificate certificate : chain)
+				certificate.checkValidity();
+			return chain;
+		}
+
+		CertificateFactory factory = CertificateFactory.getInstance("X.509");
+		List<X509Certificate> parsed = new ArrayList<X509Certificate>(certificates.size());
+		try {
+			for (byte[] certificate : certificates)
+				parsed.add((X509Certificate)factory.generateCertificate(new ByteArrayInputStream(certificate)));
+
+			PKIXParameters parameters = new PKIXParameters(trustAnchors);
+			parameters.setRevocationEnabled(false);
+			CertPathValidator.getInstance("PKIX").validate(factory.generateCertPath(parsed), parameters);
+		}
+		catch (RuntimeException e) {
+			// the certificates are untrusted input, parsers may fail with runtime exceptions on malformed encodings
+			throw new IllegalArgumentException("malformed certificate", e);
+		}
+
+		chain = Collections.unmodifiableList(parsed);
+		certificateChainCache.put(trustAnchorKey, certificates, chain);
+		return chain;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the signature bytes cannot be parsed
+	 */
+	private boolean verifySignature(SignatureRecord signatureRecord, X509Certificate signer, byte[] digest)
+			throws GeneralSecurityException {
+		try {
+			return verifySignature(signatureRecord, signer.getPublicKey(), digest);
+		}
+		catch (RuntimeException e) {
+			// providers may fail with runtime exceptions on malformed signature bytes
+			throw new IllegalArgumentException("malformed signature", e);
+		}
+	}
+
+	private boolean verifySignature(SignatureRecord signatureRecord, PublicKey publicKey, byte[] digest)
+			throws GeneralSecurityException {
+		byte[] signature = signatureRecord.getSignature();
+		switch (signatureRecord.getSignatureType()) {
+			case RSASSA_PKCS1_v1_5_WITH_SHA_1:
+				Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+				cipher.init(Cipher.DECRYPT_MODE, publicKey);
+				byte[] digestInfo = Arrays.copyOf(SHA1_DIGEST_INFO, SHA1_DIGEST_INFO.length + digest.length);
+				System.arraycopy(digest, 0, digestInfo, SHA1_DIGEST_INFO.length, digest.length);
+				return MessageDigest.isEqual(digestInfo, cipher.doFinal(signature));
+			case RSASSA_PSS_SHA_1:
+				return verifyPss(publicKey, digest, signature);
+			case DSA:
+				return verifyDigest("NONEwithDSA", publicKey, digest, signature);
+			case ECDSA:
+				return verifyDigest("NONEwithECDSA", publicKey, digest, signature);
+			default:
+				throw new NoSuchAlgorithmException("unsupported signature type " + signatureRecord.getSignatureType());
+		}
+	}
+
+	private boolean verifyDigest(String algorithm, PublicKey publicKey, byte[] digest, byte[] signature)
+			throws GeneralSecurityException {
+		Signature verifier = Signature.getInstance(algorithm);
+		verifier.initVerify(publicKey);
+		verifier.update(digest);
+		return verifier.verify(signature);
+	}
+
+	/**
+	 * EMSA-PSS verification of PKCS #1 v2.1 with SHA-1, MGF1 with SHA-1 and a salt of the digest length. Implemented
+	 * on the digest directly as the JCA has no PSS verification of a precomputed digest.
+	 */
+	private boolean verifyPss(PublicKey publicKey, byte[] digest, byte[] signature) throws GeneralSecurityException {
+		if (!(publicKey instanceof RSAPublicKey))
+			throw new InvalidKeyException("Expected RSA key for RSASSA-PSS");
+		RSAPublicKey rsaKey = (RSAPublicKey)publicKey;
+		BigInteger s = new BigInteger(1, signature);
+		if (s.compareTo(rsaKey.getModulus()) >= 0)
+			return false;
+		BigInteger m = s.modPow(rsaKey.getPublicExponent(), rsaKey.getModulus());
+
+		int emBits = rsaKey.getModulus().bitLength() - 1;
+		int emLength = (emBits + 7) / 8;
+		int hashLength = digest.length;
+		int saltLength = hashLength;
+		if (m.bitLength() > emBits || emLength < hashLength + saltLength + 2)
+			return false;
+		byte[] em = toByteArray(m, emLength);
+		if (em[emLength - 1] != (byte)0xbc)
+			return false;
+
+		int dbLength = emLength - hashLength - 1;
+		byte[] h = Arrays.copyOfRange(em, dbLength, dbLength + hashLength);
+		byte[] db = mgf1(h, dbLength);
+		for (int i = 0; i < dbLength; i++)
+			db[i] ^= em[i];
+		db[0] &= (byte)(0xff >>> (8 * emLength - emBits));
+		for (int i = 0; i < dbLength - saltLength - 1; i++) {
+			if (db[i] != 0)
+				return false;
+		}
+		if (db[dbLength - saltLength - 1] != 0x01)
+			return false;
+
+		MessageDigest sha1 = getDigest();
+		sha1.update(new byte[8]);
+		sha1.update(digest);
+		sha1.update(db, dbLength - saltLength, saltLength);
+		return MessageDigest.isEqual(h, sha1.digest());
+	}
+
+	private byte[] mgf1(byte[] seed, int length) {
+		MessageDigest sha1 = getDigest();
+		byte[] mask = new byte[length];
+		byte[] counter = new byte[4];
+		for (int offset = 0, i = 0; offset < length; i++) {
+			counter[0] = (byte)(i >>> 24);
+			counter[1] = (byte)(i >>> 16);
+			counter[2] = (byte)(i >>> 8);
+			counter[3] = (byte)i;
+			sha1.update(seed);
+			sha1.update(counter);
+			byte[] hash = sha1.digest();
+			int count = Math.min(hash.length, length - offset);
+			System.arraycopy(hash, 0, mask, offset, count);
+			offset += count;
+		}
+		return mask;
+	}
+
+	private byte[] toByteArray(BigInteger value, int length) {
+		byte[] bytes = value.toByteArray();
+		byte[] result = new byte[length];
+		int count = Math.min(bytes.length, length);
+		System.arraycopy(bytes, bytes.length - count, result, length - count, count);
+		return result;
+	}
+
+	private boolean isSignatureRecord(NdefRecord ndefRecord) {
+		if (ndefRecord.getTnf() != NdefConstants.TNF_WELL_KNOWN || ndefRecord.getTypeLength() != SIGNATURE_TYPE.length)
+			return false;
+		ByteBuffer type = ndefRecord.getTypeBuffer();
+		for (int i = 0; i < SIGNATURE_TYPE.length; i++) {
+			if (type.get(type.position() + i) != SIGNATURE_TYPE[i])
+				return false;
+		}
+		return true;
+	}
+
+	private MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private class VerifyTask implements Callable<List<SignatureVerificationResult>> {
+
+		private byte[] ndefMessage;
+
+		public VerifyTask(byte[] ndefMessage) {
+			this.ndefMessage = ndefMessage;
+		}
+
+		@Override
+		public List<SignatureVerificationResult> call() {
+			try {
+				return verify(ndefMessage);
+			}
+			catch (RuntimeException e) {
+				return Collections.singletonList(new SignatureVerificationResult(Status.MALFORMED, -1, -1, null, e
+						.getMessage()));
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.TrustAnchor;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * The trust anchors of a {@link SignatureVerifier} in their encoded form, the part of the {@link CertificateChainCache}
+ * key that tells verifiers apart. Two keys are equal if their anchors have the same encoded certificates or the same
+ * CA names, keys and name constraints, no matter if the {@link TrustAnchor} instances were built again.
+ */
+public final class TrustAnchorKey {
+
+	private final byte[][] anchors;
+	private final int hash;
+
+	public TrustAnchorKey(Set<TrustAnchor> trustAnchors) {
+		anchors = new byte[trustAnchors.size()][];
+		int i = 0;
+		for (TrustAnchor trustAnchor : trustAnchors)
+			anchors[i++] = encode(trustAnchor);
+		Arrays.sort(anchors, new Comparator<byte[]>() {
+
+			@Override
+			public int compare(byte[] anchor1, byte[] anchor2) {
+				for (int i = 0; i < Math.min(anchor1.length, anchor2.length); i++) {
+					if (anchor1[i] != anchor2[i])
+						return (anchor1[i] & 0xff) - (anchor2[i] & 0xff);
+				}
+				return anchor1.length - anchor2.length;
+			}
+		});
+		hash = Arrays.deepHashCode(anchors);
+	}
+
+	private static byte[] encode(TrustAnchor trustAnchor) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(baos);
+			if (trustAnchor.getTrustedCert() != null) {
+				out.write(0);
+				writeField(out, trustAnchor.getTrustedCert().getEncoded());
+			}
+			else {
+				out.write(1);
+				writeField(out, trustAnchor.getCA().getEncoded());
+				writeField(out, trustAnchor.getCAPublicKey().getEncoded());
+			}
+			byte[] nameConstraints = trustAnchor.getNameConstraints();
+			writeField(out, nameConstraints == null ? new byte[0] : nameConstraints);
+			return baos.toByteArray();
+		}
+		catch (CertificateEncodingException e) {
+			throw new IllegalArgumentException("trust anchor cannot be encoded", e);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeField(DataOutputStream out, byte[] field) throws IOException {
+		out.writeInt(field.length);
+		out.write(field);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TrustAnchorKey))
+			return false;
+		TrustAnchorKey other = (TrustAnchorKey)obj;
+		return hash == other.hash && Arrays.deepEquals(anchors, other.anchors);
+	}
+}
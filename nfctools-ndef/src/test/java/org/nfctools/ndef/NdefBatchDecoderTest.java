@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+public class NdefBatchDecoderTest {
+
+	@Test
+	public void testDecodeInOrderWithErrors() throws Exception {
+		NdefMessageEncoder encoder = NdefContext.getNdefMessageEncoder();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		for (int i = 0; i < 500; i++) {
+			if (i % 100 == 7)
+				messages.add(new byte[] { (byte)0xD1, 0x01 });
+			else
+				messages.add(encoder.encode(new UriRecord("http://nfctools.org/" + i)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			NdefBatchDecoder batchDecoder = new NdefBatchDecoder(NdefContext.getNdefMessageDecoder(), executor, 4);
+			List<NdefBatchResult> results = batchDecoder.decode(messages);
+			assertEquals(500, results.size());
+			for (int i = 0; i < 500; i++) {
+				NdefBatchResult result = results.get(i);
+				assertEquals(i, result.getIndex());
+				if (i % 100 == 7) {
+					assertFalse(result.isSuccess());
+					assertTrue(result.getError() instanceof IllegalArgumentException);
+				}
+				else {
+					assertTrue(result.isSuccess());
+					assertEquals("http://nfctools.org/" + i, ((UriRecord)result.getRecords().get(0)).getUri());
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
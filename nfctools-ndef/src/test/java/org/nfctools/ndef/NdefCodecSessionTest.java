@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+public class NdefCodecSessionTest {
+
+	private NdefCodecSession session = new NdefCodecSession();
+
+	@Test
+	public void testEncodeMatchesEncoder() throws Exception {
+		List<Record> records = new ArrayList<Record>();
+		records.add(new UriRecord("http://nfctools.org"));
+		records.add(new TextRecord("hello"));
+
+		byte[] expected = NdefContext.getNdefMessageEncoder().encode(records);
+		ByteBuffer encoded = session.encode(records);
+		byte[] actual = new byte[encoded.remaining()];
+		encoded.get(actual);
+		assertArrayEquals(expected, actual);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(expected.length, session.encode(records, out));
+		assertArrayEquals(expected, out.toByteArray());
+	}
+
+	@Test
+	public void testReuseSession() throws Exception {
+		byte[] content = new byte[1000];
+		List<Record> large = Arrays.<Record> asList(new BinaryMimeRecord("application/binary", content));
+		List<Record> small = Arrays.<Record> asList(new UriRecord("http://nfctools.org"));
+
+		ByteBuffer first = session.encode(small);
+		assertArrayEquals(NdefContext.getNdefMessageEncoder().encode(small), toArray(first));
+		assertEquals(large.get(0), session.decodeToRecords(session.encode(large)).get(0));
+		assertEquals(small.get(0), session.decodeToRecords(session.encode(small)).get(0));
+
+		List<Record> decoded = new ArrayList<Record>();
+		session.decodeToRecords(session.encode(small), decoded);
+		session.decodeToRecords(session.encode(small), decoded);
+		assertEquals(2, decoded.size());
+	}
+
+	@Test
+	public void testReuseDecodedList() throws Exception {
+		List<Record> small = Arrays.<Record> asList(new UriRecord("http://nfctools.org"));
+		byte[] message = NdefContext.getNdefMessageEncoder().encode(small);
+
+		List<Record> decoded = session.decodeToRecords(message);
+		assertEquals(small, decoded);
+		assertSame(decoded, session.decodeToRecords(message));
+		assertEquals(small, decoded);
+	}
+
+	@Test
+	public void testThreadSession() throws Exception {
+		assertSame(NdefContext.getCodecSession(), NdefContext.getCodecSession());
+	}
+
+	private byte[] toArray(ByteBuffer buffer) {
+		byte[] data = new byte[buffer.remaining()];
+		buffer.duplicate().get(data);
+		return data;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.records.Action;
+import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.GcDataRecord;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+import org.nfctools.utils.NfcUtils;
+
+public class NdefDecodeCacheTest {
+
+	private NdefMessageEncoder encoder = NdefContext.getNdefMessageEncoder();
+
+	private long now = 0;
+
+	private NdefDecodeCache cache = new NdefDecodeCache(NdefContext.getNdefMessageDecoder(), 2, 10, TimeUnit.SECONDS) {
+
+		@Override
+		protected long nanoTime() {
+			return now;
+		}
+	};
+
+	@Test
+	public void testHitReturnsSharedFrozenRecords() throws Exception {
+		SmartPosterRecord smartPoster = new SmartPosterRecord(new TextRecord("Poster", Locale.ENGLISH), new UriRecord(
+				"http://nfctools.org"), new ActionRecord(Action.DEFAULT_ACTION));
+		byte[] message = encoder.encode(smartPoster);
+
+		List<Record> first = cache.decodeToRecords(message);
+		List<Record> second = cache.decodeToRecords(message.clone());
+		assertSame(first, second);
+		assertEquals(smartPoster, first.get(0));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.5, cache.getHitRate(), 0.0001);
+
+		SmartPosterRecord cached = (SmartPosterRecord)first.get(0);
+		assertTrue(cached.isFrozen());
+		assertTrue(cached.getTitle().isFrozen());
+		try {
+			cached.getUri().setUri("http://evil.example");
+			fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			first.add(new TextRecord("x"));
+			fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCachedRecordsDoNotShareInput() throws Exception {
+		// a/b mime record with payload abcde in three chunks, kept as views of the decoded message
+		byte[] message = NfcUtils.convertASCIIToBin("B20302612F626162" + "3600026364" + "56000165");
+		byte[] again = message.clone();
+
+		List<Record> first = cache.decodeToRecords(message);
+		assertSame(first, cache.decodeToRecords(again));
+		Arrays.fill(message, (byte)'Z');
+		Arrays.fill(again, (byte)'Z');
+
+		assertArrayEquals("abcde".getBytes("US-ASCII"), ((BinaryMimeRecord)first.get(0)).getContent());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		byte[] a = encoder.encode(new UriRecord("http://a.nfctools.org"));
+		byte[] b = encoder.encode(new UriRecord("http://b.nfctools.org"));
+		byte[] c = encoder.encode(new UriRecord("http://c.nfctools.org"));
+
+		List<Record> recordsA = cache.decodeToRecords(a);
+		cache.decodeToRecords(b);
+		cache.decodeToRecords(a);
+		cache.decodeToRecords(c);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertSame(recordsA, cache.decodeToRecords(a));
+		assertEquals(3, cache.getMissCount());
+		cache.decodeToRecords(b);
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		byte[] message = encoder.encode(new TextRecord("ttl", Locale.ENGLISH));
+		List<Record> first = cache.decodeToRecords(message);
+		now += TimeUnit.SECONDS.toNanos(9);
+		assertSame(first, cache.decodeToRecords(message));
+		now += TimeUnit.SECONDS.toNanos(1);
+		List<Record> expired = cache.decodeToRecords(message);
+		assertNotSame(first, expired);
+		assertEquals(first, expired);
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testSameLengthDifferentContent() throws Exception {
+		byte[] a = encoder.encode(new TextRecord("aaaa", Locale.ENGLISH));
+		byte[] b = encoder.encode(new TextRecord("bbbb", Locale.ENGLISH));
+		assertEquals("aaaa", ((TextRecord)cache.decodeToRecords(a).get(0)).getText());
+		assertEquals("bbbb", ((TextRecord)cache.decodeToRecords(b).get(0)).getText());
+		assertFalse(NdefDecodeCache.hash(ByteBuffer.wrap(a)) == NdefDecodeCache.hash(ByteBuffer.wrap(b)));
+	}
+
+	@Test
+	public void testFreezeNestedList() throws Exception {
+		GcDataRecord data = new GcDataRecord(new TextRecord("data", Locale.ENGLISH));
+		data.freeze();
+		assertTrue(data.getRecords().get(0).isFrozen());
+		try {
+			data.add(new TextRecord("more"));
+			fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
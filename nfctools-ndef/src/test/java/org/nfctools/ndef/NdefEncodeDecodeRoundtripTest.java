@@ -16,10 +16,15 @@
 
 package org.nfctools.ndef;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -43,6 +48,10 @@ import org.nfctools.ndef.wkt.handover.records.ErrorRecord.ErrorReason;
 import org.nfctools.ndef.wkt.handover.records.HandoverCarrierRecord.CarrierTypeFormat;
 import org.nfctools.ndef.wkt.records.Action;
 import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.GcActionRecord;
+import org.nfctools.ndef.wkt.records.GcDataRecord;
+import org.nfctools.ndef.wkt.records.GcTargetRecord;
+import org.nfctools.ndef.wkt.records.GenericControlRecord;
 import org.nfctools.ndef.wkt.records.SignatureRecord;
 import org.nfctools.ndef.wkt.records.SmartPosterRecord;
 import org.nfctools.ndef.wkt.records.TextRecord;
@@ -160,4 +169,75 @@ public class NdefEncodeDecodeRoundtripTest {
 		}
 		
 	}
+
+	@Test
+	public void testEncodeIntoBuffer() {
+		NdefMessageEncoder ndefMessageEncoder = NdefContext.getNdefMessageEncoder();
+
+		GenericControlRecord genericControlRecord = new GenericControlRecord(new GcTargetRecord(new UriRecord(
+				"http://target")), (byte)1);
+		genericControlRecord.setAction(new GcActionRecord(Action.DEFAULT_ACTION));
+		genericControlRecord.setData(new GcDataRecord(textRecord, uriRecord));
+
+		List<Record> extraRecords = Arrays.<Record> asList(
+				new TextRecord("\u00e6\u00f8\u00e5 \u20ac \ud83d\ude00 \ud800", Charset.forName("UTF-8"), new Locale("no", "NO")),
+				new TextRecord("\u00e6\u00f8\u00e5 \ud83d\ude00 \udc00", TextRecord.UTF16, Locale.GERMANY),
+				new UriRecord("HTTPS://www.example.com/\u00fcber"),
+				genericControlRecord,
+				new GcActionRecord(textRecord));
+
+		List<Record> all = new ArrayList<Record>(Arrays.asList(records));
+		all.addAll(extraRecords);
+
+		for (Record record : all) {
+			byte[] expected = ndefMessageEncoder.encodeSingle(record);
+			List<Record> single = Collections.singletonList(record);
+			assertEquals(record.getClass().getName(), expected.length, ndefMessageEncoder.getEncodedLength(single));
+
+			byte[] buffer = new byte[expected.length + 3];
+			assertEquals(expected.length, ndefMessageEncoder.encode(single, buffer, 3));
+			assertArrayEquals(expected, Arrays.copyOfRange(buffer, 3, buffer.length));
+		}
+
+		byte[] expected = ndefMessageEncoder.encode(all);
+		ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+		ndefMessageEncoder.encode(all, out);
+		assertEquals(expected.length, out.position());
+		out.flip();
+		byte[] encoded = new byte[out.remaining()];
+		out.get(encoded);
+		assertArrayEquals(expected, encoded);
+	}
+
+	@Test
+	public void testEncodeNestedRecordsSizedOnce() {
+		final int[] sized = new int[1];
+		NdefMessageEncoder ndefMessageEncoder = new NdefMessageEncoder(NdefContext.getNdefRecordEncoder()) {
+
+			@Override
+			public int getEncodedRecordLength(Record record) {
+				sized[0]++;
+				return super.getEncodedRecordLength(record);
+			}
+		};
+
+		Record record = textRecord;
+		int depth = 20;
+		for (int i = 0; i < depth; i++)
+			record = new GcDataRecord(record);
+		List<Record> message = Collections.singletonList(record);
+
+		byte[] expected = ndefMessageEncoder.encode(message);
+		sized[0] = 0;
+		byte[] buffer = new byte[expected.length];
+		ndefMessageEncoder.encode(message, buffer, 0);
+		assertArrayEquals(expected, buffer);
+		// once for the message length, the lengths are kept for writing
+		assertEquals(depth + 1, sized[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodeIntoBufferTooSmall() {
+		NdefContext.getNdefMessageEncoder().encode(Arrays.<Record> asList(uriRecord), new byte[4], 0);
+	}
 }
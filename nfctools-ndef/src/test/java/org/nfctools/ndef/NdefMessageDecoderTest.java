@@ -17,9 +17,19 @@ package org.nfctools.ndef;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import org.junit.Test;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.mime.TextMimeRecord;
+import org.nfctools.ndef.unknown.UnknownRecord;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
 import org.nfctools.utils.NfcUtils;
 
 public class NdefMessageDecoderTest {
@@ -34,6 +44,13 @@ public class NdefMessageDecoderTest {
 	// my_id IN HEX => 6D795F6964
 	private String mimeMediaRecordWithLongPayloadAndId = "CB090000010005696D6167652F706E676D795F6964000000000000000000";
 
+	// a/b mime record with payload abcde in three chunks
+	private String chunkedMimeRecord = "B20302612F626162" + "3600026364" + "56000165";
+	// text/a mime record with payload abcde in three chunks
+	private String chunkedTextMimeRecord = "B20602746578742F616162" + "3600026364" + "56000165";
+	// unknown record with payload abcde in three chunks
+	private String chunkedUnknownRecord = "B500026162" + "3600026364" + "56000165";
+
 	private NdefMessageDecoder decoder = NdefContext.getNdefMessageDecoder();
 
 	@Test
@@ -87,4 +104,122 @@ public class NdefMessageDecoderTest {
 		assertEquals("de.grundid.test1234", new String(ndefRecord.getPayload()));
 
 	}
+
+	@Test
+	public void testDecodeDirectByteBuffer() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin("D40F13616E64726F69642E636F6D3A706B67"
+				+ "64652E6772756E6469642E7465737431323334");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 2);
+		buffer.put((byte)0xFF).put(data).put((byte)0xFF);
+		buffer.position(1);
+		buffer.limit(1 + data.length);
+
+		NdefMessage ndefMessage = decoder.decode(buffer);
+		assertEquals(1, buffer.position());
+		assertTrue(ndefMessage.getNdefRecords().length == 1);
+
+		NdefRecord ndefRecord = ndefMessage.getNdefRecords()[0];
+		assertEquals(15, ndefRecord.getTypeLength());
+		assertEquals(19, ndefRecord.getPayloadSize());
+
+		ByteBuffer payload = ndefRecord.getPayloadBuffer();
+		assertTrue(payload.isDirect());
+		assertEquals('d', payload.get(payload.position()));
+		assertEquals("android.com:pkg", new String(ndefRecord.getType()));
+		assertEquals("de.grundid.test1234", new String(ndefRecord.getPayload()));
+	}
+
+	@Test
+	public void testDecodeByteBufferToRecords() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin("D40F13616E64726F69642E636F6D3A706B67"
+				+ "64652E6772756E6469642E7465737431323334");
+		assertEquals(decoder.decodeToRecords(data), decoder.decodeToRecords(ByteBuffer.wrap(data)));
+	}
+
+	@Test
+	public void testDecodeChunkedRecord() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin(chunkedMimeRecord);
+		List<Record> records = decoder.decodeToRecords(data);
+		assertEquals(1, records.size());
+
+		BinaryMimeRecord mimeRecord = (BinaryMimeRecord)records.get(0);
+		assertEquals("a/b", mimeRecord.getContentType());
+		assertArrayEquals("abcde".getBytes(), mimeRecord.getContent());
+	}
+
+	@Test
+	public void testDecodeChunkedRecordWithoutConcatenating() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin(chunkedMimeRecord);
+		BinaryMimeRecord mimeRecord = (BinaryMimeRecord)decoder.decodeToRecords(ByteBuffer.wrap(data)).get(0);
+		// the content still shares the chunks of the message
+		data[11] = 'x';
+		assertArrayEquals("abxde".getBytes(), RecordUtils.readFully(mimeRecord.getContentStream()));
+		assertArrayEquals("abxde".getBytes(), mimeRecord.getContent());
+		data[11] = 'c';
+		assertArrayEquals("abxde".getBytes(), mimeRecord.getContent());
+	}
+
+	@Test
+	public void testDecodeChunkedTextMimeRecord() throws Exception {
+		List<Record> records = decoder.decodeToRecords(NfcUtils.convertASCIIToBin(chunkedTextMimeRecord));
+		assertEquals("abcde", ((TextMimeRecord)records.get(0)).getContent());
+	}
+
+	@Test
+	public void testDecodeChunkedUnknownRecord() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin(chunkedUnknownRecord);
+		UnknownRecord unknownRecord = (UnknownRecord)decoder.decodeToRecords(ByteBuffer.wrap(data)).get(0);
+		assertTrue(unknownRecord.hasPayload());
+		assertArrayEquals("abcde".getBytes(), RecordUtils.readFully(unknownRecord.getPayloadStream()));
+		assertArrayEquals("abcde".getBytes(), unknownRecord.getPayload());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChunkedPayloadSizeOverflow() throws Exception {
+		// 2049 chunks of 1 MB sharing the same memory add up to more than 2 GB
+		ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+		ByteBuffer[] chunks = new ByteBuffer[2049];
+		for (int i = 0; i < chunks.length; i++)
+			chunks[i] = chunk;
+		new NdefRecord(NdefConstants.TNF_UNKNOWN, null, null, chunks).getPayloadSize();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeChunkedRecordWithoutTerminatingChunk() throws Exception {
+		decoder.decodeToRecords(NfcUtils.convertASCIIToBin("B20302612F626162" + "7600026364"));
+	}
+
+	@Test
+	public void testDecodeLazy() throws Exception {
+		SmartPosterRecord smartPoster = new SmartPosterRecord(new TextRecord("title"), new UriRecord(
+				"http://nfctools.org"), null);
+		byte[] data = NdefContext.getNdefMessageEncoder().encode(smartPoster, new TextRecord("text"));
+
+		List<Record> records = decoder.decodeToRecords(data);
+		LazyNdefMessage message = decoder.decodeLazy(data);
+		assertEquals(2, message.size());
+		assertTrue(message.hasType(0, NdefConstants.TNF_WELL_KNOWN, "Sp".getBytes()));
+		assertFalse(message.hasType(1, NdefConstants.TNF_WELL_KNOWN, "Sp".getBytes()));
+		assertFalse(message.isDecoded(0));
+
+		assertEquals(records.get(1), message.get(1));
+		assertFalse(message.isDecoded(0));
+		assertTrue(message.get(1) == message.get(1));
+		assertEquals(records.get(0), message.get(0));
+		assertEquals(records, message);
+	}
+
+	@Test
+	public void testDecodeLazyChunkedRecord() throws Exception {
+		LazyNdefMessage message = decoder.decodeLazy(NfcUtils.convertASCIIToBin(chunkedMimeRecord));
+		assertEquals(1, message.size());
+		assertTrue(message.hasType(0, NdefConstants.TNF_MIME_MEDIA, "a/b".getBytes()));
+		assertArrayEquals("abcde".getBytes(), ((BinaryMimeRecord)message.get(0)).getContent());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPayloadLengthBeyondPadding() throws Exception {
+		// a long record announcing a payload of 2 GB
+		decoder.decode(NfcUtils.convertASCIIToBin("C1017FFFFFFF5400"));
+	}
 }
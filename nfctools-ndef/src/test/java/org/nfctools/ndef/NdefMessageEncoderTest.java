@@ -15,15 +15,26 @@
  */
 package org.nfctools.ndef;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
 import org.junit.Test;
 import org.nfctools.ndef.ext.UnsupportedExternalTypeRecord;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
 import org.nfctools.ndef.records.UnknownRecord;
+import org.nfctools.ndef.wkt.records.Action;
+import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
 import org.nfctools.ndef.wkt.records.TextRecord;
 import org.nfctools.ndef.wkt.records.UriRecord;
 import org.nfctools.utils.NfcUtils;
@@ -72,4 +83,110 @@ public class NdefMessageEncoderTest {
 		assertEquals("D40F13616E64726F69642E636F6D3A706B6764652E6772756E6469642E7465737431323334",
 				NfcUtils.convertBinToASCII(single));
 	}
+
+	@Test
+	public void testEncodeChunked() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		List<Record> records = new ArrayList<Record>();
+		records.add(new BinaryMimeRecord("a/b", "abcde".getBytes()));
+		encoder.encode(records, 2, out);
+		assertEquals("B20302612F626162" + "3600026364" + "56000165", NfcUtils.convertBinToASCII(out.toByteArray()));
+	}
+
+	@Test
+	public void testEncodeChunkedRoundtrip() throws Exception {
+		byte[] content = new byte[1000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte)i;
+		List<Record> records = new ArrayList<Record>();
+		records.add(new UriRecord("http://nfctools.org"));
+		records.add(new BinaryMimeRecord("application/binary", content));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.encode(records, 300, out);
+
+		NdefMessage ndefMessage = NdefContext.getNdefMessageDecoder().decode(out.toByteArray());
+		assertEquals(5, ndefMessage.getNdefRecords().length);
+
+		List<Record> decoded = NdefContext.getNdefMessageDecoder().decodeToRecords(ndefMessage);
+		assertEquals(records, decoded);
+		assertArrayEquals(content, ((BinaryMimeRecord)decoded.get(1)).getContent());
+	}
+
+	@Test
+	public void testEncodeUnchunked() throws Exception {
+		List<Record> records = Arrays.<Record> asList(new TextRecord("R1", Locale.GERMANY), new TextRecord("R2",
+				Locale.GERMANY));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.encode(records, 0, out);
+		assertArrayEquals(encoder.encode(records), out.toByteArray());
+	}
+
+	@Test
+	public void testEncodeFrozenRecordOnce() throws Exception {
+		SmartPosterRecord smartPoster = new SmartPosterRecord(new TextRecord("Poster", Locale.ENGLISH), new UriRecord(
+				"http://nfctools.org"), new ActionRecord(Action.DEFAULT_ACTION));
+		byte[] expected = encoder.encode(smartPoster);
+
+		smartPoster.freeze();
+		assertArrayEquals(expected, encoder.encode(smartPoster));
+		RecordEncoding encoding = ((Record)smartPoster).getFrozenEncoding();
+		assertNotNull(encoding);
+
+		ByteBuffer out = ByteBuffer.allocate(expected.length);
+		encoder.encode(Arrays.asList(smartPoster), out);
+		assertArrayEquals(expected, out.array());
+		assertSame(encoding, ((Record)smartPoster).getFrozenEncoding());
+	}
+
+	@Test
+	public void testNoSubclassCallbacksForFrozenRecord() throws Exception {
+		SmartPosterRecord smartPoster = new SmartPosterRecord(new TextRecord("Poster", Locale.ENGLISH), new UriRecord(
+				"http://nfctools.org"), new ActionRecord(Action.DEFAULT_ACTION));
+		byte[] expected = encoder.encode(smartPoster);
+		smartPoster.freeze();
+
+		final ByteBuffer out = ByteBuffer.allocate(expected.length);
+		final List<Record> written = new ArrayList<Record>();
+		NdefMessageEncoder subclass = new NdefMessageEncoder(NdefContext.getNdefRecordEncoder()) {
+
+			@Override
+			public void encodeRecord(Record record, boolean messageBegin, boolean messageEnd, ByteBuffer buffer) {
+				assertSame(out, buffer);
+				written.add(record);
+				super.encodeRecord(record, messageBegin, messageEnd, buffer);
+			}
+		};
+		subclass.encode(Arrays.asList(smartPoster), out);
+		assertArrayEquals(expected, out.array());
+		assertEquals(Arrays.asList(smartPoster), written);
+
+		// the kept encoding is not bound to the subclass
+		RecordEncoding encoding = ((Record)smartPoster).getFrozenEncoding();
+		assertArrayEquals(expected, encoder.encode(smartPoster));
+		assertSame(encoding, ((Record)smartPoster).getFrozenEncoding());
+	}
+
+	@Test
+	public void testShareFrozenRecordInMutableParent() throws Exception {
+		List<Record> decoded = NdefContext.getNdefMessageDecoder().decodeToFrozenRecords(
+				encoder.encode(new TextRecord("shared title", Locale.ENGLISH)));
+		TextRecord title = (TextRecord)decoded.get(0);
+		assertTrue(title.isFrozen());
+
+		SmartPosterRecord first = new SmartPosterRecord(title, new UriRecord("http://nfctools.org/1"), null);
+		SmartPosterRecord second = new SmartPosterRecord(title, new UriRecord("http://nfctools.org/2"), null);
+		second.setUri(new UriRecord("http://nfctools.org/3"));
+
+		assertArrayEquals(encoder.encode(new SmartPosterRecord(new TextRecord("shared title", Locale.ENGLISH),
+				new UriRecord("http://nfctools.org/1"), null)), encoder.encode(first));
+		assertEquals(second, NdefContext.getNdefMessageDecoder().decodeToRecords(encoder.encode(second)).get(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEncodedOnlyForFrozenRecords() throws Exception {
+		Record record = new TextRecord("mutable");
+		record.setFrozenEncoding(new RecordEncoding() {
+		});
+	}
 }
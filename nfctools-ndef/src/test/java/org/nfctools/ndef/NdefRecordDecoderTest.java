@@ -18,11 +18,14 @@ package org.nfctools.ndef;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
 import java.util.Locale;
 
 import org.junit.Test;
+import org.nfctools.ndef.unknown.unsupported.UnsupportedRecord;
 import org.nfctools.ndef.wkt.decoder.SmartPosterRecordDecoder;
 import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
 import org.nfctools.utils.NfcUtils;
 
 public class NdefRecordDecoderTest {
@@ -46,4 +49,24 @@ public class NdefRecordDecoderTest {
 		assertEquals(Locale.GERMAN.getLanguage(), smartPosterRecord.getTitle().getLocale().getLanguage());
 		assertEquals("sms:+491234567890?body=Hi!%20Wie%20geht%20es%20dir%3F", smartPosterRecord.getUri().getUri());
 	}
+
+	@Test
+	public void testDecodeTypeInPlace() throws Exception {
+		NdefRecordDecoder decoder = NdefContext.getNdefRecordDecoder();
+
+		// type "XUX" framed down to "U" within a larger buffer
+		ByteBuffer type = ByteBuffer.wrap("XUX".getBytes());
+		type.position(1).limit(2);
+		NdefRecord ndefRecord = new NdefRecord(NdefConstants.TNF_WELL_KNOWN, false, type, null,
+				ByteBuffer.wrap(new byte[] { 0x01, 'a' }));
+		UriRecord uriRecord = (UriRecord)decoder.decode(ndefRecord, NdefContext.getNdefMessageDecoder());
+		assertEquals("http://www.a", uriRecord.getUri());
+
+		NdefRecord unregistered = new NdefRecord(NdefConstants.TNF_WELL_KNOWN, "XU".getBytes(), new byte[0],
+				new byte[0]);
+		assertTrue(decoder.decode(unregistered, NdefContext.getNdefMessageDecoder()) instanceof UnsupportedRecord);
+
+		NdefRecord reserved = new NdefRecord(NdefConstants.TNF_RESERVED, new byte[0], new byte[0], new byte[0]);
+		assertTrue(decoder.decode(reserved, NdefContext.getNdefMessageDecoder()) instanceof UnsupportedRecord);
+	}
 }
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+import org.nfctools.utils.NfcUtils;
+
+public class NdefRecordIteratorTest {
+
+	@Test
+	public void testIterateRecords() throws Exception {
+		byte[] content = new byte[1000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte)i;
+
+		byte[] data = NdefContext.getNdefMessageEncoder().encode(new UriRecord("http://nfctools.org"),
+				new BinaryMimeRecord("application/binary", content), new UriRecord("http://grundid.de"));
+
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(data));
+
+		assertTrue(it.hasNextRecord());
+		it.nextRecord();
+		assertTrue(it.isMessageBegin());
+		assertEquals(NdefConstants.TNF_WELL_KNOWN, it.getTnf());
+		assertArrayEquals("U".getBytes(), it.getType());
+		// payload not read, skipped by nextRecord()
+
+		it.nextRecord();
+		assertEquals(NdefConstants.TNF_MIME_MEDIA, it.getTnf());
+		assertEquals(1000, it.getPayloadLength());
+		InputStream payload = it.getPayloadStream();
+		assertEquals(0, payload.read());
+		assertEquals(1, payload.read());
+		byte[] rest = new byte[2000];
+		int count = 0;
+		int read;
+		while ((read = payload.read(rest, count, rest.length - count)) != -1)
+			count += read;
+		assertEquals(998, count);
+		assertEquals((byte)999, rest[997]);
+
+		it.nextRecord();
+		assertTrue(it.isMessageEnd());
+		NdefRecord ndefRecord = it.readNdefRecord();
+		UriRecord uriRecord = (UriRecord)NdefContext.getNdefRecordDecoder().decode(ndefRecord,
+				NdefContext.getNdefMessageDecoder());
+		assertEquals("http://grundid.de", uriRecord.getUri());
+
+		assertFalse(it.hasNextRecord());
+		assertEquals(3, it.getRecordCount());
+	}
+
+	@Test
+	public void testEmptyStream() throws Exception {
+		assertFalse(new NdefRecordIterator(new ByteArrayInputStream(new byte[0])).hasNextRecord());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingMessageBegin() throws Exception {
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(NfcUtils.convertASCIIToBin("500000")));
+		it.nextRecord();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingMessageEnd() throws Exception {
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(NfcUtils.convertASCIIToBin("900000")));
+		it.nextRecord();
+		it.hasNextRecord();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMessageEndInChunk() throws Exception {
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(NfcUtils.convertASCIIToBin("F20302612F626162")));
+		it.nextRecord();
+	}
+
+	@Test
+	public void testIterator() throws Exception {
+		byte[] data = NdefContext.getNdefMessageEncoder().encode(new UriRecord("http://nfctools.org"),
+				new UriRecord("http://grundid.de"));
+
+		Iterator<NdefRecord> it = new NdefRecordIterator(new ByteArrayInputStream(data));
+		assertTrue(it.hasNext());
+		UriRecord uriRecord = (UriRecord)NdefContext.getNdefRecordDecoder().decode(it.next(),
+				NdefContext.getNdefMessageDecoder());
+		assertEquals("http://nfctools.org", uriRecord.getUri());
+		try {
+			it.remove();
+			fail();
+		}
+		catch (UnsupportedOperationException e) {
+		}
+		assertTrue(it.hasNext());
+		uriRecord = (UriRecord)NdefContext.getNdefRecordDecoder().decode(it.next(),
+				NdefContext.getNdefMessageDecoder());
+		assertEquals("http://grundid.de", uriRecord.getUri());
+		assertFalse(it.hasNext());
+		try {
+			it.next();
+			fail();
+		}
+		catch (NoSuchElementException e) {
+		}
+	}
+
+	@Test
+	public void testReassembleChunks() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin("B20302612F626162" + "3600026364" + "56000165");
+
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(data));
+		it.setReassembleChunks(true);
+		it.nextRecord();
+		assertEquals(NdefConstants.TNF_MIME_MEDIA, it.getTnf());
+		assertArrayEquals("a/b".getBytes(), it.getType());
+		assertArrayEquals("abcde".getBytes(), RecordUtils.readFully(it.getPayloadStream()));
+		assertFalse(it.hasNextRecord());
+		assertEquals(1, it.getRecordCount());
+	}
+
+	@Test
+	public void testSkipChunks() throws Exception {
+		byte[] data = NfcUtils.convertASCIIToBin("B20302612F626162" + "3600026364" + "56000165");
+
+		NdefRecordIterator it = new NdefRecordIterator(new ByteArrayInputStream(data));
+		it.setReassembleChunks(true);
+		it.nextRecord();
+		assertFalse(it.hasNextRecord());
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.records.Action;
+import org.nfctools.ndef.wkt.records.ActionRecord;
+import org.nfctools.ndef.wkt.records.SmartPosterRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+public class NdefTemplateTest {
+
+	private NdefRecordEncoder recordEncoder = NdefContext.getNdefRecordEncoder();
+	private NdefMessageEncoder messageEncoder = NdefContext.getNdefMessageEncoder();
+
+	@Test
+	public void testUriSlot() throws Exception {
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(new UriRecord(
+				"http://nfctools.org/tag/{serial}"), new TextRecord("tag {serial}", Locale.ENGLISH)), "{serial}");
+
+		for (String serial : new String[] { "1", "000042", "a-much-longer-serial-number" }) {
+			List<Record> expected = Arrays.<Record> asList(new UriRecord("http://nfctools.org/tag/" + serial),
+					new TextRecord("tag " + serial, Locale.ENGLISH));
+			byte[] message = template.instantiate(serial);
+			assertArrayEquals(messageEncoder.encode(expected), message);
+			assertEquals(message.length, template.getEncodedLength(serial));
+		}
+	}
+
+	@Test
+	public void testNestedSlotCrossingShortRecord() throws Exception {
+		SmartPosterRecord smartPoster = new SmartPosterRecord(new TextRecord("Title {name}", Locale.ENGLISH),
+				new UriRecord("http://nfctools.org/{id}"), new ActionRecord(Action.DEFAULT_ACTION));
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(smartPoster), "{name}", "{id}");
+
+		char[] longName = new char[300];
+		Arrays.fill(longName, 'x');
+		for (String name : new String[] { "", "short", new String(longName) }) {
+			SmartPosterRecord expected = new SmartPosterRecord(new TextRecord("Title " + name, Locale.ENGLISH),
+					new UriRecord("http://nfctools.org/7"), new ActionRecord(Action.DEFAULT_ACTION));
+			byte[] message = template.instantiate(name, "7");
+			assertArrayEquals(messageEncoder.encode(expected), message);
+			assertEquals(expected, NdefContext.getNdefMessageDecoder().decodeToRecords(message).get(0));
+		}
+	}
+
+	@Test
+	public void testShrinkBackToShortRecord() throws Exception {
+		char[] longText = new char[300];
+		Arrays.fill(longText, 'x');
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(new TextRecord(new String(longText)
+				+ "{text}", Locale.ENGLISH)), new String(longText) + "{text}");
+
+		assertArrayEquals(messageEncoder.encode(new TextRecord("abc", Locale.ENGLISH)), template.instantiate("abc"));
+	}
+
+	@Test
+	public void testUtf16Slot() throws Exception {
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(new TextRecord("Nr. {n}",
+				TextRecord.UTF16, Locale.GERMAN)), "{n}");
+
+		assertArrayEquals(messageEncoder.encode(new TextRecord("Nr. \u00fc12", TextRecord.UTF16, Locale.GERMAN)),
+				template.instantiate("\u00fc12"));
+	}
+
+	@Test
+	public void testFixedLengthSlot() throws Exception {
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(new BinaryMimeRecord(
+				"application/octet-stream", "id=XXXX;".getBytes("US-ASCII"))), "XXXX");
+
+		ByteBuffer out = ByteBuffer.allocate(64);
+		int length = template.instantiate(out, "1234");
+		assertEquals(messageEncoder.encode(new BinaryMimeRecord("application/octet-stream", "id=1234;"
+				.getBytes("US-ASCII"))).length, length);
+		assertArrayEquals(messageEncoder.encode(new BinaryMimeRecord("application/octet-stream", "id=1234;"
+				.getBytes("US-ASCII"))), Arrays.copyOf(out.array(), length));
+
+		try {
+			template.instantiate("12345");
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFrozenAndNestedRecords() throws Exception {
+		TextRecord title = new TextRecord("title {t}", Locale.ENGLISH);
+		title.freeze();
+		SmartPosterRecord smartPoster = new SmartPosterRecord(title, new UriRecord("http://nfctools.org/{u}"), null);
+		SmartPosterRecord frozenPoster = new SmartPosterRecord(new TextRecord("frozen {n}", Locale.ENGLISH),
+				new UriRecord("http://nfctools.org/x"), null);
+		frozenPoster.freeze();
+		byte[] frozenEncoding = messageEncoder.encode(frozenPoster);
+		NdefTemplate template = new NdefTemplate(recordEncoder, Arrays.asList(smartPoster, frozenPoster), "{t}",
+				"{u}", "{n}");
+
+		// the frozen title is written into the template buffer, so its text may change in length
+		List<Record> expected = Arrays.<Record> asList(new SmartPosterRecord(new TextRecord("title a longer title",
+				Locale.ENGLISH), new UriRecord("http://nfctools.org/42"), null), new SmartPosterRecord(new TextRecord(
+				"frozen abc", Locale.ENGLISH), new UriRecord("http://nfctools.org/x"), null));
+		byte[] message = template.instantiate("a longer title", "42", "abc");
+		assertArrayEquals(messageEncoder.encode(expected), message);
+		assertEquals(expected, NdefContext.getNdefMessageDecoder().decodeToRecords(message));
+		assertArrayEquals(frozenEncoding, messageEncoder.encode(frozenPoster));
+
+		try {
+			template.instantiate("t", "42", "abcd");
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			// the frozen smart poster is written as a whole, its slots have a fixed length
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingPlaceholder() throws Exception {
+		new NdefTemplate(recordEncoder, Arrays.asList(new UriRecord("http://nfctools.org")), "{serial}");
+	}
+}
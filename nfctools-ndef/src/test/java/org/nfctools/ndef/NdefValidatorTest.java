@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.nfctools.ndef.NdefValidationResult.ErrorType;
+import org.nfctools.ndef.mime.BinaryMimeRecord;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+public class NdefValidatorTest {
+
+	private NdefValidator validator = new NdefValidator();
+	private NdefMessageEncoder encoder = NdefContext.getNdefMessageEncoder();
+
+	@Test
+	public void testValidMessage() throws Exception {
+		byte[] message = encoder.encode(new UriRecord("http://nfctools.org"), new TextRecord("hello", Locale.ENGLISH),
+				new BinaryMimeRecord("application/octet-stream", new byte[300]));
+
+		NdefValidationResult result = validator.validate(message);
+		assertTrue(result.toString(), result.isValid());
+		assertEquals(3, result.getRecordCount());
+		assertEquals(0, result.getRecordOffset(0));
+		assertEquals(message.length, result.getLength());
+		assertEquals(-1, result.getErrorOffset());
+	}
+
+	@Test
+	public void testValidChunkedMessage() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.encode(Arrays.asList(new BinaryMimeRecord("application/octet-stream", new byte[100]), new UriRecord(
+				"http://nfctools.org")), 30, out);
+
+		NdefValidationResult result = validator.validate(out.toByteArray());
+		assertTrue(result.toString(), result.isValid());
+		assertEquals(5, result.getRecordCount());
+	}
+
+	@Test
+	public void testReuseResult() throws Exception {
+		NdefValidationResult result = new NdefValidationResult();
+		assertFalse(validator.validate(ByteBuffer.wrap(new byte[] { (byte)0xD1, 0x01 }), result));
+		assertEquals(ErrorType.TRUNCATED, result.getError());
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+		buffer.put(new byte[] { 0x55, 0x66 });
+		buffer.put(encoder.encode(new TextRecord("direct", Locale.ENGLISH)));
+		buffer.flip();
+		buffer.position(2);
+		assertTrue(validator.validate(buffer, result));
+		assertEquals(1, result.getRecordCount());
+		assertEquals(2, buffer.position());
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		assertError(ErrorType.NO_RECORDS, 0, new byte[0]);
+		// short record with payload length beyond the buffer
+		assertError(ErrorType.TRUNCATED, 0, bytes(0xD1, 0x01, 0x05, 'T', 0x00));
+		assertError(ErrorType.LENGTH_OUT_OF_BOUNDS, 0, bytes(0xC1, 0x01, 0x80, 0x00, 0x00, 0x00, 'T'));
+		assertError(ErrorType.MISSING_MESSAGE_BEGIN, 0, bytes(0x51, 0x01, 0x00, 'T'));
+		assertError(ErrorType.UNEXPECTED_MESSAGE_BEGIN, 4, bytes(0x91, 0x01, 0x00, 'T', 0xD1, 0x01, 0x00, 'T'));
+		assertError(ErrorType.MISSING_MESSAGE_END, 0, bytes(0x91, 0x01, 0x00, 'T'));
+		assertError(ErrorType.DATA_AFTER_MESSAGE_END, 4, bytes(0xD1, 0x01, 0x00, 'T', 0x51, 0x01, 0x00, 'T'));
+		assertError(ErrorType.RESERVED_TNF, 0, bytes(0xD7, 0x00, 0x00));
+		assertError(ErrorType.INVALID_EMPTY_RECORD, 0, bytes(0xD0, 0x00, 0x01, 0x00));
+		assertError(ErrorType.UNEXPECTED_UNCHANGED, 0, bytes(0xD6, 0x00, 0x00));
+		assertError(ErrorType.INVALID_CHUNK, 4, bytes(0xB1, 0x01, 0x00, 'T', 0x51, 0x01, 0x00, 'T'));
+		assertError(ErrorType.MESSAGE_END_IN_CHUNK, 0, bytes(0xF1, 0x01, 0x00, 'T'));
+		assertError(ErrorType.UNTERMINATED_CHUNK, 7, bytes(0xB1, 0x01, 0x00, 'T', 0x36, 0x00, 0x00));
+	}
+
+	private void assertError(ErrorType error, int offset, byte[] message) {
+		NdefValidationResult result = validator.validate(message);
+		assertEquals(error, result.getError());
+		assertEquals(offset, result.getErrorOffset());
+		assertFalse(validator.isValid(ByteBuffer.wrap(message)));
+	}
+
+	private byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++)
+			bytes[i] = (byte)values[i];
+		return bytes;
+	}
+}
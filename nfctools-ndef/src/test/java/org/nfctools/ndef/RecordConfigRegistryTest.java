@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nfctools.ndef.ext.AndroidApplicationRecord;
+import org.nfctools.ndef.ext.AndroidApplicationRecordDecoder;
+import org.nfctools.ndef.ext.AndroidApplicationRecordEncoder;
+import org.nfctools.ndef.ext.ExternalTypeRecordConfig;
+import org.nfctools.ndef.ext.UnsupportedExternalTypeRecord;
+
+public class RecordConfigRegistryTest {
+
+	private RecordConfigRegistry registry = new RecordConfigRegistry();
+	private NdefMessageEncoder encoder = new NdefMessageEncoder(new NdefRecordEncoder(registry));
+	private NdefMessageDecoder decoder = new NdefMessageDecoder(new NdefRecordDecoder(registry));
+
+	@Test
+	public void testRegisterAtRuntime() throws Exception {
+		byte[] data = encoder.encode(new UnsupportedExternalTypeRecord("android.com:pkg", "org.nfctools"));
+		assertTrue(decoder.decodeToRecord(data) instanceof UnsupportedExternalTypeRecord);
+
+		registry.registerExternalTypeRecordConfig(new ExternalTypeRecordConfig("android.com:pkg",
+				AndroidApplicationRecord.class, new AndroidApplicationRecordEncoder(),
+				new AndroidApplicationRecordDecoder()));
+
+		AndroidApplicationRecord record = decoder.decodeToRecord(data);
+		assertEquals("org.nfctools", record.getPackageName());
+		assertArrayEquals(data, encoder.encode(record));
+	}
+
+	@Test
+	public void testContextRegistry() throws Exception {
+		assertNotNull(NdefContext.getRecordConfigRegistry().getWellKnownRecordConfig(new RecordType("U")));
+		assertNotNull(NdefContext.getRecordConfigRegistry().getExternalTypeRecordConfig("android.com:pkg"));
+		assertNull(registry.getWellKnownRecordConfig(new RecordType("U")));
+	}
+}
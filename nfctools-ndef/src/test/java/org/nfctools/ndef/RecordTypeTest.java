@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class RecordTypeTest {
+
+	@Test
+	public void testInterned() throws Exception {
+		RecordType recordType = RecordType.valueOf("U");
+		assertSame(recordType, RecordType.valueOf(new byte[] { 'x', 'U', 'x' }, 1, 1));
+		assertSame(recordType, RecordType.lookup(new byte[] { 'U' }, 0, 1));
+		assertEquals(new RecordType("U"), recordType);
+		assertEquals(new RecordType("U").hashCode(), recordType.hashCode());
+	}
+
+	@Test
+	public void testLookupUnknown() throws Exception {
+		assertNull(RecordType.lookup("never interned".getBytes("US-ASCII"), 0, 14));
+	}
+
+	@Test
+	public void testInternMany() throws Exception {
+		RecordType[] recordTypes = new RecordType[200];
+		for (int i = 0; i < recordTypes.length; i++)
+			recordTypes[i] = RecordType.valueOf("many" + i);
+		for (int i = 0; i < recordTypes.length; i++) {
+			byte[] bytes = ("many" + i).getBytes("US-ASCII");
+			assertSame(recordTypes[i], RecordType.lookup(bytes, 0, bytes.length));
+		}
+	}
+
+	@Test
+	public void testTypeIsCopied() throws Exception {
+		RecordType recordType = RecordType.valueOf("copied");
+		recordType.getType()[0] = 'x';
+		assertArrayEquals("copied".getBytes("US-ASCII"), recordType.getType());
+		assertSame(recordType, RecordType.lookup("copied".getBytes("US-ASCII"), 0, 6));
+	}
+
+	@Test
+	public void testBufferHash() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 'S', 'p', 0 }, 1, 2);
+		RecordType recordType = new RecordType("Sp");
+		assertEquals(recordType.hashCode(), RecordType.hashCode(buffer.slice()));
+		assertTrue(recordType.matches(buffer));
+		assertEquals(1, buffer.position());
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.decoder;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefMessageDecoder;
+import org.nfctools.ndef.NdefMessageEncoder;
+import org.nfctools.ndef.NdefRecordDecoder;
+import org.nfctools.ndef.RecordConfigRegistry;
+import org.nfctools.ndef.RecordType;
+import org.nfctools.ndef.wkt.WellKnownRecordConfig;
+import org.nfctools.ndef.wkt.decoder.TextRecordDecoder;
+import org.nfctools.ndef.wkt.encoder.TextRecordEncoder;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.WellKnownRecord;
+
+public class TextRecordDecoderTest {
+
+	private TextRecordDecoder decoder = new TextRecordDecoder();
+	private NdefMessageDecoder messageDecoder = NdefContext.getNdefMessageDecoder();
+
+	@Test
+	public void testDecode() throws Exception {
+		byte[] payload = { 0x02, 'd', 'e', 'T', 'e', 's', 't' };
+		TextRecord textRecord = (TextRecord)decoder.decodePayload(payload, messageDecoder);
+		assertEquals("Test", textRecord.getText());
+		assertEquals(TextRecord.UTF8, textRecord.getEncoding());
+		assertEquals(Locale.GERMAN, textRecord.getLocale());
+
+		TextRecord other = (TextRecord)decoder.decodePayload(payload.clone(), messageDecoder);
+		assertSame(textRecord.getLocale(), other.getLocale());
+	}
+
+	@Test
+	public void testDecodeBuffers() throws Exception {
+		NdefMessageEncoder encoder = NdefContext.getNdefMessageEncoder();
+		String text = "\u00e6\u00f8\u00e5 \u20ac \ud83d\ude00";
+		for (TextRecord record : new TextRecord[] { new TextRecord(text, TextRecord.UTF8, Locale.ENGLISH),
+				new TextRecord(text, TextRecord.UTF16, Locale.ENGLISH) }) {
+			byte[] message = encoder.encode(record);
+			ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+			direct.put(message).flip();
+
+			TextRecord decoded = (TextRecord)messageDecoder.decodeToRecords(direct).get(0);
+			assertEquals(text, decoded.getText());
+			assertEquals(record.getEncoding(), decoded.getEncoding());
+			assertEquals(Locale.ENGLISH, decoded.getLocale());
+		}
+	}
+
+	@Test
+	public void testDecodeHeapPayloadInPlace() throws Exception {
+		final boolean[] heapPayload = new boolean[1];
+		RecordConfigRegistry registry = new RecordConfigRegistry();
+		registry.registerWellKnownRecordConfig(new WellKnownRecordConfig(RecordType.valueOf("T"), TextRecord.class,
+				new TextRecordEncoder(), new TextRecordDecoder() {
+
+					@Override
+					public WellKnownRecord decodePayload(ByteBuffer payload, NdefMessageDecoder messageDecoder) {
+						heapPayload[0] = payload.hasArray();
+						return super.decodePayload(payload, messageDecoder);
+					}
+				}));
+		NdefMessageDecoder heapDecoder = new NdefMessageDecoder(new NdefRecordDecoder(registry));
+
+		byte[] message = NdefContext.getNdefMessageEncoder().encode(new TextRecord("in place", Locale.ENGLISH));
+		TextRecord decoded = (TextRecord)heapDecoder.decodeToRecord(message);
+		assertTrue(heapPayload[0]);
+		assertEquals("in place", decoded.getText());
+		// the record does not hand out write access to the message
+		assertTrue(NdefContext.getNdefMessageDecoder().decode(message).getNdefRecords()[0].getPayloadBuffer()
+				.isReadOnly());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeTruncatedLanguageCode() throws Exception {
+		decoder.decodePayload(new byte[] { 0x05, 'd', 'e' }, messageDecoder);
+	}
+}
@@ -61,4 +61,10 @@ public class UriRecordDecoderTest {
 		assertEquals("urn:nfc:example.com", uriRecord.getUri());
 	}
 
+	@Test
+	public void testDecodeNonAscii() throws Exception {
+		byte[] payload = { 3, 'a', (byte)0xc3, (byte)0xa4 };
+		UriRecord uriRecord = (UriRecord)decoder.decodePayload(payload, messageDecoder);
+		assertEquals("http://a\u00e4", uriRecord.getUri());
+	}
 }
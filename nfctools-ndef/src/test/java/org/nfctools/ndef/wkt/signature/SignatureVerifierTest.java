@@ -0,0 +1,281 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndef.wkt.signature;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefRecord;
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.wkt.records.SignatureRecord;
+import org.nfctools.ndef.wkt.records.SignatureRecord.CertificateFormat;
+import org.nfctools.ndef.wkt.records.SignatureRecord.SignatureType;
+import org.nfctools.ndef.wkt.records.TextRecord;
+import org.nfctools.ndef.wkt.records.UriRecord;
+import org.nfctools.ndef.wkt.signature.SignatureVerificationResult.Status;
+
+public class SignatureVerifierTest {
+
+	private static final char[] PASSWORD = "nfctools".toCharArray();
+
+	private KeyStore signerStore;
+	private SignatureVerifier verifier;
+	private List<Record> records = Arrays.<Record> asList(new UriRecord("http://nfctools.org"), new TextRecord(
+			"genuine", Locale.ENGLISH));
+
+	@Before
+	public void setUp() throws Exception {
+		signerStore = loadKeyStore("/signature/signer.jks");
+		verifier = new SignatureVerifier(loadKeyStore("/signature/truststore.jks"));
+	}
+
+	@Test
+	public void testVerifyPkcs1() throws Exception {
+		byte[] message = sign(records, "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+
+		List<SignatureVerificationResult> results = verifier.verify(message);
+		assertEquals(1, results.size());
+		assertEquals(Status.VALID, results.get(0).getStatus());
+		assertEquals(0, results.get(0).getFirstRecord());
+		assertEquals(2, results.get(0).getSignatureRecord());
+		assertEquals("CN=nfctools Test Signer", results.get(0).getSigner().getSubjectX500Principal().getName());
+	}
+
+	@Test
+	public void testVerifyPss() throws Exception {
+		Signature pss;
+		try {
+			pss = Signature.getInstance("RSASSA-PSS");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// no PSS signing in this runtime
+			return;
+		}
+		pss.setParameter(new PSSParameterSpec("SHA-1", "MGF1", MGF1ParameterSpec.SHA1, 20, 1));
+		byte[] message = sign(records, "signer", SignatureType.RSASSA_PSS_SHA_1, pss);
+
+		assertEquals(Status.VALID, verifier.verify(message).get(0).getStatus());
+		message[10] ^= 1;
+		assertEquals(Status.INVALID_SIGNATURE, verifier.verify(message).get(0).getStatus());
+	}
+
+	@Test
+	public void testTamperedRecord() throws Exception {
+		byte[] message = sign(records, "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+		int index = indexOf(message, "genuine".getBytes("US-ASCII"));
+		message[index] = 'G';
+
+		assertEquals(Status.INVALID_SIGNATURE, verifier.verify(message).get(0).getStatus());
+	}
+
+	@Test
+	public void testUntrustedChain() throws Exception {
+		byte[] message = sign(records, "other", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+
+		assertEquals(Status.UNTRUSTED_CERTIFICATE, verifier.verify(message).get(0).getStatus());
+	}
+
+	@Test
+	public void testStartMarkerAndCachedChain() throws Exception {
+		X509Certificate ca = (X509Certificate)signerStore.getCertificate("ca");
+		LruCertificateChainCache cache = new LruCertificateChainCache(1);
+		SignatureVerifier cachingVerifier = new SignatureVerifier(Collections.singleton(new TrustAnchor(ca, null)),
+				cache, NdefContext.getNdefMessageDecoder());
+
+		List<Record> marked = new ArrayList<Record>();
+		marked.add(new TextRecord("unsigned", Locale.ENGLISH));
+		marked.add(new SignatureRecord(SignatureType.NOT_PRESENT));
+		marked.addAll(records);
+		byte[] message = sign(marked.subList(2, 4), "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1,
+				"SHA1withRSA");
+		List<Record> all = new ArrayList<Record>(marked.subList(0, 2));
+		all.addAll(NdefContext.getNdefMessageDecoder().decodeToRecords(message));
+		byte[] markedMessage = NdefContext.getNdefMessageEncoder().encode(all);
+
+		for (int i = 0; i < 2; i++) {
+			List<SignatureVerificationResult> results = cachingVerifier.verify(markedMessage);
+			assertEquals(1, results.size());
+			assertEquals(Status.VALID, results.get(0).getStatus());
+			assertEquals(2, results.get(0).getFirstRecord());
+			assertEquals(4, results.get(0).getSignatureRecord());
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	public void testVerifyConcurrently() throws Exception {
+		byte[] valid = sign(records, "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+		byte[] untrusted = sign(records, "other", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+
+		List<byte[]> messages = new ArrayList<byte[]>();
+		for (int i = 0; i < 20; i++)
+			messages.add(i % 2 == 0 ? valid : untrusted);
+		messages.add(new byte[] { 1, 2, 3 });
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<List<SignatureVerificationResult>> results = verifier.verify(messages, executor);
+			assertEquals(messages.size(), results.size());
+			for (int i = 0; i < 20; i++)
+				assertEquals(i % 2 == 0 ? Status.VALID : Status.UNTRUSTED_CERTIFICATE, results.get(i).get(0)
+						.getStatus());
+			assertEquals(Status.MALFORMED, results.get(20).get(0).getStatus());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSharedCacheKeepsTrustAnchorsApart() throws Exception {
+		LruCertificateChainCache cache = new LruCertificateChainCache(4);
+		Certificate[] otherChain = signerStore.getCertificateChain("other");
+		X509Certificate otherRoot = (X509Certificate)otherChain[otherChain.length - 1];
+		SignatureVerifier trusting = new SignatureVerifier(Collections.singleton(new TrustAnchor(
+				(X509Certificate)signerStore.getCertificate("ca"), null)), cache, NdefContext.getNdefMessageDecoder());
+		SignatureVerifier other = new SignatureVerifier(Collections.singleton(new TrustAnchor(otherRoot, null)), cache,
+				NdefContext.getNdefMessageDecoder());
+		byte[] message = sign(records, "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+
+		assertEquals(Status.VALID, trusting.verify(message).get(0).getStatus());
+		assertEquals(1, cache.size());
+		assertEquals(Status.UNTRUSTED_CERTIFICATE, other.verify(message).get(0).getStatus());
+	}
+
+	@Test
+	public void testSharedCacheHitForRebuiltTrustAnchors() throws Exception {
+		final int[] hits = new int[1];
+		LruCertificateChainCache cache = new LruCertificateChainCache(4) {
+
+			@Override
+			public synchronized List<X509Certificate> get(TrustAnchorKey trustAnchors, List<byte[]> certificates) {
+				List<X509Certificate> chain = super.get(trustAnchors, certificates);
+				if (chain != null)
+					hits[0]++;
+				return chain;
+			}
+		};
+		byte[] message = sign(records, "signer", SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1, "SHA1withRSA");
+		for (int i = 0; i < 2; i++) {
+			SignatureVerifier rebuilt = new SignatureVerifier(Collections.singleton(new TrustAnchor(
+					(X509Certificate)signerStore.getCertificate("ca"), null)), cache, NdefContext
+					.getNdefMessageDecoder());
+			assertEquals(Status.VALID, rebuilt.verify(message).get(0).getStatus());
+		}
+		assertEquals(1, hits[0]);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testMalformedCertificate() throws Exception {
+		SignatureRecord signatureRecord = new SignatureRecord(SignatureType.RSASSA_PKCS1_v1_5_WITH_SHA_1,
+				new byte[128], CertificateFormat.X_509);
+		signatureRecord.add(new byte[] { 0x30, (byte)0x82, 0x7f, (byte)0xff, 0x02 });
+		byte[] message = NdefContext.getNdefMessageEncoder().encode(new TextRecord("text", Locale.ENGLISH),
+				signatureRecord);
+
+		// a truncated DER sequence, depending on the provider a parse error or a rejected certificate but never an
+		// exception escaping verify
+		Status status = verifier.verify(message).get(0).getStatus();
+		assertTrue(status == Status.MALFORMED || status == Status.UNTRUSTED_CERTIFICATE);
+	}
+
+	@Test
+	public void testLruEviction() throws Exception {
+		LruCertificateChainCache cache = new LruCertificateChainCache(2);
+		TrustAnchorKey trustAnchors = new TrustAnchorKey(Collections.singleton(new TrustAnchor(
+				(X509Certificate)signerStore.getCertificate("ca"), null)));
+		List<byte[]> first = Collections.singletonList(new byte[] { 1 });
+		List<byte[]> second = Collections.singletonList(new byte[] { 2 });
+		List<X509Certificate> chain = Collections.emptyList();
+		cache.put(trustAnchors, first, chain);
+		cache.put(trustAnchors, second, chain);
+		assertNotNull(cache.get(trustAnchors, Collections.singletonList(new byte[] { 1 })));
+		cache.put(trustAnchors, Collections.singletonList(new byte[] { 3 }), chain);
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(trustAnchors, first));
+		assertNull(cache.get(trustAnchors, second));
+	}
+
+	private byte[] sign(List<Record> signed, String alias, SignatureType type, String algorithm) throws Exception {
+		return sign(signed, alias, type, Signature.getInstance(algorithm));
+	}
+
+	private byte[] sign(List<Record> signed, String alias, SignatureType type, Signature signer) throws Exception {
+		ByteArrayOutputStream signedData = new ByteArrayOutputStream();
+		List<NdefRecord> ndefRecords = new ArrayList<NdefRecord>();
+		NdefContext.getNdefMessageDecoder().decode(
+				ByteBuffer.wrap(NdefContext.getNdefMessageEncoder().encode(signed)), ndefRecords);
+		for (NdefRecord ndefRecord : ndefRecords) {
+			signedData.write(ndefRecord.getType());
+			signedData.write(ndefRecord.getId());
+			signedData.write(ndefRecord.getPayload());
+		}
+
+		signer.initSign((PrivateKey)signerStore.getKey(alias, PASSWORD));
+		signer.update(signedData.toByteArray());
+		SignatureRecord signatureRecord = new SignatureRecord(type, signer.sign(), CertificateFormat.X_509);
+		for (Certificate certificate : signerStore.getCertificateChain(alias))
+			signatureRecord.add(certificate.getEncoded());
+
+		List<Record> message = new ArrayList<Record>(signed);
+		message.add(signatureRecord);
+		return NdefContext.getNdefMessageEncoder().encode(message);
+	}
+
+	private KeyStore loadKeyStore(String resource) throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		InputStream in = getClass().getResourceAsStream(resource);
+		try {
+			keyStore.load(in, PASSWORD);
+		}
+		finally {
+			in.close();
+		}
+		return keyStore;
+	}
+
+	private int indexOf(byte[] data, byte[] pattern) {
+		for (int i = 0; i <= data.length - pattern.length; i++) {
+			if (Arrays.equals(pattern, Arrays.copyOfRange(data, i, i + pattern.length)))
+				return i;
+		}
+		return -1;
+	}
+}
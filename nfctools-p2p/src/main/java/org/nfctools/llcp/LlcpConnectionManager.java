@@ -16,25 +16,31 @@
 package org.nfctools.llcp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import org.nfctools.llcp.parameter.LinkTimeOut;
 import org.nfctools.llcp.parameter.Miux;
+import org.nfctools.llcp.parameter.ReceiveWindow;
 import org.nfctools.llcp.parameter.ServiceName;
 import org.nfctools.llcp.parameter.Version;
 import org.nfctools.llcp.pdu.AbstractProtocolDataUnit;
+import org.nfctools.llcp.pdu.AggregatedFrame;
 import org.nfctools.llcp.pdu.Connect;
 import org.nfctools.llcp.pdu.ConnectComplete;
 import org.nfctools.llcp.pdu.Disconnect;
 import org.nfctools.llcp.pdu.DisconnectedMode;
+import org.nfctools.llcp.pdu.Information;
+import org.nfctools.llcp.pdu.PduDecoder;
+import org.nfctools.llcp.pdu.ReceiveReady;
 import org.nfctools.llcp.pdu.Symmetry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,20 +52,31 @@ public class LlcpConnectionManager implements Llcp {
 	private final int SERVICE_DISCOVERY_ADDRESS = 1;
 	private final int PREFERRED_MIUX = 120;
 	private final int MAX_CONNECT_WAIT = 100;
+	// received I PDUs are handed to the service right away, so a large window costs no buffer
+	private final int PREFERRED_RW = 15;
 	private static final int MAX_RETRIES = 4;
 
 	private static final byte VERSION_MAJOR = 1;
 	private int miuExtension = PREFERRED_MIUX;
 	private int linkTimeOut = MAX_CONNECT_WAIT;
+	private int linkMiu = LlcpConstants.DEFAULT_MIU;
 
 	private ServiceDiscovery serviceDiscovery = new ServiceDiscovery();
 
-	private Map<Integer, PendingConnection> pendingConnections = new HashMap<Integer, PendingConnection>();
-	private Map<Integer, LlcpSocket> openConnections = new HashMap<Integer, LlcpSocket>();
+	// SAPs are 6 bit values, connections are kept in tables indexed by the local SAP with a bitmap of the used entries
+	private static final int ADDRESS_MASK = 0x3f;
+	private static final long OUTGOING_ADDRESSES = 0xffffffff00000000L;
+
+	private PendingConnection[] pendingConnections = new PendingConnection[64];
+	private long pendingAddresses;
+	private LlcpSocket[] openConnections = new LlcpSocket[64];
+	private long openAddresses;
+	private int lastScheduledAddress = ADDRESS_MASK;
 
 	private Map<Integer, ServiceAccessPoint> services = new HashMap<Integer, ServiceAccessPoint>();
 
-	private AbstractProtocolDataUnit messageToSend = null;
+	private PduDecoder pduDecoder = new PduDecoder();
+	private LinkedList<AbstractProtocolDataUnit> outgoingPdus = new LinkedList<AbstractProtocolDataUnit>();
 
 	public void registerWellKnownServiceAccessPoint(String serviceName, ServiceAccessPoint serviceAccessPoint) {
 		serviceDiscovery.registerSerivce(serviceName, serviceAccessPoint);
@@ -78,39 +95,61 @@ public class LlcpConnectionManager implements Llcp {
 		throw new LlcpException("No more free ports");
 	}
 
-	private Integer getFreeOutgoingAddress() {
-		Set<Integer> usedAddresses = new HashSet<Integer>();
-		usedAddresses.addAll(openConnections.keySet());
-		usedAddresses.addAll(pendingConnections.keySet());
+	private int getFreeOutgoingAddress() {
+		long freeAddresses = ~(openAddresses | pendingAddresses) & OUTGOING_ADDRESSES;
+		if (freeAddresses == 0)
+			throw new LlcpException("No more free ports");
+		return Long.numberOfTrailingZeros(freeAddresses);
+	}
 
-		for (int x = 32; x < 64; x++) {
-			Integer address = Integer.valueOf(x);
-			if (!usedAddresses.contains(address))
-				return address;
+	private void addPendingConnection(int localAddress, PendingConnection pendingConnection) {
+		pendingConnections[localAddress] = pendingConnection;
+		pendingAddresses |= 1L << localAddress;
+	}
+
+	private PendingConnection removePendingConnection(int localAddress) {
+		int index = localAddress & ADDRESS_MASK;
+		PendingConnection pendingConnection = pendingConnections[index];
+		pendingConnections[index] = null;
+		pendingAddresses &= ~(1L << index);
+		return pendingConnection;
+	}
+
+	private void openSocket(int localAddress, LlcpSocket llcpSocket) {
+		openConnections[localAddress] = llcpSocket;
+		openAddresses |= 1L << localAddress;
+	}
+
+	private void closeSocket(LlcpSocket llcpSocket) {
+		int localAddress = llcpSocket.getAddressPair().getLocal() & ADDRESS_MASK;
+		if (openConnections[localAddress] == llcpSocket) {
+			openConnections[localAddress] = null;
+			openAddresses &= ~(1L << localAddress);
 		}
-		throw new LlcpException("No more free ports");
 	}
 
 	public void clearConnections() {
-		for (PendingConnection pendingConnection : pendingConnections.values()) {
+		for (long addresses = pendingAddresses; addresses != 0; addresses &= addresses - 1) {
 			try {
-				pendingConnection.getServiceAccessPoint().onDisconnect();
+				pendingConnections[Long.numberOfTrailingZeros(addresses)].getServiceAccessPoint().onDisconnect();
 			}
 			catch (Exception e) {
 				log.warn("Error closing pending connection", e);
 			}
 		}
-		for (LlcpSocket llcpSocket : openConnections.values()) {
+		for (long addresses = openAddresses; addresses != 0; addresses &= addresses - 1) {
 			try {
-				llcpSocket.disconnect();
+				openConnections[Long.numberOfTrailingZeros(addresses)].disconnect();
 			}
 			catch (Exception e) {
 				log.warn("Error closing open connection", e);
 			}
 		}
-		pendingConnections.clear();
-		openConnections.clear();
-		messageToSend = null;
+		Arrays.fill(pendingConnections, null);
+		pendingAddresses = 0;
+		Arrays.fill(openConnections, null);
+		openAddresses = 0;
+		outgoingPdus.clear();
 	}
 
 	public ServiceAccessPoint getServiceAccessPoint(int address, String serviceName) {
@@ -125,12 +164,126 @@ public class LlcpConnectionManager implements Llcp {
 		return Collections.emptyList();
 	}
 
-	public AbstractProtocolDataUnit onLlcpActive() {
-		messageToSend = new Symmetry();
+	/**
+	 * Processes the PDU received in this turn and returns the answer. The answer and the PDUs waiting for a turn are
+	 * packed into an aggregated frame, as many as fit into the link MIU of the remote side.
+	 */
+	public AbstractProtocolDataUnit process(AbstractProtocolDataUnit requestPdu) {
+		AbstractProtocolDataUnit responsePdu = requestPdu.processPdu(this);
+		if (!(responsePdu instanceof Symmetry))
+			outgoingPdus.addFirst(responsePdu);
+
+		AbstractProtocolDataUnit firstPdu = nextPdu();
+		if (firstPdu instanceof Symmetry)
+			return firstPdu;
+
+		// the list is only needed once a second PDU fits, an idle link or a single answer allocates nothing
+		List<AbstractProtocolDataUnit> pdus = null;
+		int length = 2 + pduDecoder.getEncodedLength(firstPdu);
+		for (AbstractProtocolDataUnit pdu = nextPdu(); !(pdu instanceof Symmetry); pdu = nextPdu()) {
+			int aggregatedLength = 2 + pduDecoder.getEncodedLength(pdu);
+			if (length + aggregatedLength > linkMiu) {
+				outgoingPdus.addFirst(pdu);
+				break;
+			}
+			if (pdus == null) {
+				pdus = new ArrayList<AbstractProtocolDataUnit>();
+				pdus.add(firstPdu);
+			}
+			pdus.add(pdu);
+			length += aggregatedLength;
+		}
+		return pdus == null ? firstPdu : new AggregatedFrame(pdus);
+	}
+
+	/**
+	 * @return the next PDU waiting for a turn, a queued I PDU or pending acknowledgement of an open connection or
+	 *         {@link Symmetry} if there is nothing to send. The open connections take turns round-robin, one PDU
+	 *         each, so a connection with a long queue does not hold back the others.
+	 */
+	private AbstractProtocolDataUnit nextPdu() {
+		if (!outgoingPdus.isEmpty())
+			return outgoingPdus.removeFirst();
+		// the connections after the one served last first, then from the start of the table
+		long nextAddresses = lastScheduledAddress == ADDRESS_MASK ? 0 : openAddresses
+				& (-1L << (lastScheduledAddress + 1));
+		AbstractProtocolDataUnit pdu = nextSocketPdu(nextAddresses);
+		if (pdu == null)
+			pdu = nextSocketPdu(openAddresses & ~nextAddresses);
+		return pdu != null ? pdu : Symmetry.INSTANCE;
+	}
+
+	private AbstractProtocolDataUnit nextSocketPdu(long addresses) {
+		for (; addresses != 0; addresses &= addresses - 1) {
+			int localAddress = Long.numberOfTrailingZeros(addresses);
+			LlcpSocket llcpSocket = openConnections[localAddress];
+			if (llcpSocket.hasMessageToSend()) {
+				lastScheduledAddress = localAddress;
+				return llcpSocket.getMessageToSend();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of messages each service access point has queued on its open connections that wait for the
+	 *         send window
+	 */
+	public Map<ServiceAccessPoint, Integer> getQueueDepths() {
+		Map<ServiceAccessPoint, Integer> queueDepths = new LinkedHashMap<ServiceAccessPoint, Integer>();
+		for (long addresses = openAddresses; addresses != 0; addresses &= addresses - 1) {
+			LlcpSocket llcpSocket = openConnections[Long.numberOfTrailingZeros(addresses)];
+			Integer queueDepth = queueDepths.get(llcpSocket.getServiceAccessPoint());
+			queueDepths.put(llcpSocket.getServiceAccessPoint(), (queueDepth == null ? 0 : queueDepth.intValue())
+					+ llcpSocket.getQueuedMessageCount());
+		}
+		return queueDepths;
+	}
+
+	/**
+	 * @return the number of connect, answer and retry PDUs waiting for a turn
+	 */
+	public int getOutgoingPduCount() {
+		return outgoingPdus.size();
+	}
 
+	public AbstractProtocolDataUnit onAggregatedFrame(List<AbstractProtocolDataUnit> protocolDataUnits) {
+		List<AbstractProtocolDataUnit> responses = new ArrayList<AbstractProtocolDataUnit>();
+		for (AbstractProtocolDataUnit protocolDataUnit : protocolDataUnits) {
+			// a symmetry PDU is not allowed within an aggregated frame and would hand over the turn
+			if (protocolDataUnit instanceof Symmetry)
+				continue;
+			AbstractProtocolDataUnit response = protocolDataUnit.processPdu(this);
+			if (!(response instanceof Symmetry)) {
+				removeSupersededReceiveReady(responses, response);
+				responses.add(response);
+			}
+		}
+		outgoingPdus.addAll(0, responses);
+		return nextPdu();
+	}
+
+	/**
+	 * Several I PDUs of one connection within a frame each produce a RR PDU. Only the last one is sent, its N(R)
+	 * acknowledges the others as well, and so does the N(R) of an I PDU.
+	 */
+	private void removeSupersededReceiveReady(List<AbstractProtocolDataUnit> responses,
+			AbstractProtocolDataUnit response) {
+		if (!(response instanceof ReceiveReady || response instanceof Information))
+			return;
+		for (Iterator<AbstractProtocolDataUnit> it = responses.iterator(); it.hasNext();) {
+			AbstractProtocolDataUnit previous = it.next();
+			if (previous instanceof ReceiveReady
+					&& previous.getDestinationServiceAccessPoint() == response.getDestinationServiceAccessPoint()
+					&& previous.getSourceServiceAccessPoint() == response.getSourceServiceAccessPoint())
+				it.remove();
+		}
+	}
+
+	public AbstractProtocolDataUnit onLlcpActive() {
 		handlePendingConnectionTimeout();
 
-		if (pendingConnections.isEmpty()) {
+		if (pendingAddresses == 0) {
 			serviceDiscovery.onLlcpActive(this);
 			for (Entry<Integer, ServiceAccessPoint> entry : services.entrySet()) {
 				ServiceAccessPoint serviceAccessPoint = entry.getValue();
@@ -138,25 +291,24 @@ public class LlcpConnectionManager implements Llcp {
 			}
 
 		}
-		// TODO check whether there is something to send and stop the iteration
-		return messageToSend;
+		return nextPdu();
 	}
 
 	private void handlePendingConnectionTimeout() {
-		for (Iterator<PendingConnection> it = pendingConnections.values().iterator(); it.hasNext();) {
-			PendingConnection pc = it.next();
+		for (long addresses = pendingAddresses; addresses != 0; addresses &= addresses - 1) {
+			int localAddress = Long.numberOfTrailingZeros(addresses);
+			PendingConnection pc = pendingConnections[localAddress];
 			long waitingTime = System.currentTimeMillis() - pc.getConnectionStart();
 			if (waitingTime > linkTimeOut) {
 				if (pc.getRetries() > MAX_RETRIES) {
 					pc.getServiceAccessPoint().onConnectFailed();
-					it.remove();
+					removePendingConnection(localAddress);
 				}
 				else {
 					pc.incRetries();
 					if (log.isDebugEnabled())
 						log.debug("Retrying connect " + pc.getRetries() + " - Waiting time: " + waitingTime);
-					messageToSend = pc.getConnectPdu();
-					return;
+					outgoingPdus.add(pc.getConnectPdu());
 				}
 			}
 		}
@@ -165,13 +317,13 @@ public class LlcpConnectionManager implements Llcp {
 	public AbstractProtocolDataUnit onConnectComplete(int remoteAddress, int localAddress, Object[] parameters) {
 		log.info("Remote: " + remoteAddress + " lA: " + localAddress);
 
-		Integer pendingLocalAddress = Integer.valueOf(localAddress);
-		if (pendingConnections.containsKey(pendingLocalAddress)) {
-			PendingConnection pendingConnection = pendingConnections.remove(pendingLocalAddress);
+		PendingConnection pendingConnection = removePendingConnection(localAddress);
+		if (pendingConnection != null) {
 			LlcpSocket llcpSocket = new LlcpSocket(new AddressPair(remoteAddress, localAddress),
 					pendingConnection.getServiceAccessPoint());
-			openConnections.put(pendingLocalAddress, llcpSocket);
+			openSocket(localAddress, llcpSocket);
 			aggreeOnMiux(parameters, llcpSocket);
+			setReceiveWindows(parameters, llcpSocket);
 			llcpSocket.onConnectSucceeded();
 			return handleMessageToSend(llcpSocket);
 		}
@@ -187,34 +339,27 @@ public class LlcpConnectionManager implements Llcp {
 	@Override
 	public void connectToService(String serviceName, ServiceAccessPoint serviceAccessPoint) {
 		// TODO move this to llcpsocket
-		Object[] parameter = { new ServiceName(serviceName) };
+		Object[] parameter = { new ServiceName(serviceName), new ReceiveWindow(PREFERRED_RW) };
 		// TODO MIUX
 
 		int outgoingAddress = getFreeOutgoingAddress();
 		Connect connectPdu = new Connect(SERVICE_DISCOVERY_ADDRESS, outgoingAddress, parameter);
-		pendingConnections.put(outgoingAddress, new PendingConnection(serviceAccessPoint, System.currentTimeMillis(),
+		addPendingConnection(outgoingAddress, new PendingConnection(serviceAccessPoint, System.currentTimeMillis(),
 				connectPdu));
-		messageToSend = connectPdu;
-
-	}
+		outgoingPdus.add(connectPdu);
 
-	private LlcpSocket getOpenLlcpSocket(AddressPair addressPair) {
-		return getLlcpSocketFromCollection(addressPair, openConnections.values());
 	}
 
-	private LlcpSocket getLlcpSocketFromCollection(AddressPair addressPair, Collection<LlcpSocket> sockets) {
-		for (Iterator<LlcpSocket> iterator = sockets.iterator(); iterator.hasNext();) {
-			LlcpSocket llcpSocket = iterator.next();
-			if (llcpSocket.equalsAddress(addressPair)) {
-				return llcpSocket;
-			}
-		}
-		log.info("Socket not found for rA: " + addressPair.getRemote() + " lA: " + addressPair.getRemote());
+	private LlcpSocket getOpenLlcpSocket(int remoteAddress, int localAddress) {
+		LlcpSocket llcpSocket = openConnections[localAddress & ADDRESS_MASK];
+		if (llcpSocket != null && llcpSocket.equalsAddress(remoteAddress, localAddress))
+			return llcpSocket;
+		log.info("Socket not found for rA: " + remoteAddress + " lA: " + localAddress);
 		return null;
 	}
 
 	public AbstractProtocolDataUnit onSendConfirmed(int remoteAddress, int localAddress, int receivedSequence) {
-		LlcpSocket llcpSocket = getOpenLlcpSocket(new AddressPair(remoteAddress, localAddress));
+		LlcpSocket llcpSocket = getOpenLlcpSocket(remoteAddress, localAddress);
 		llcpSocket.onSendConfirmed(receivedSequence);
 		return handleMessageToSend(llcpSocket);
 	}
@@ -227,16 +372,18 @@ public class LlcpConnectionManager implements Llcp {
 		}
 		else {
 			if (serviceAccessPoint.canAcceptConnection(parameters)) {
-				Integer outgoingAddress = getFreeOutgoingAddress();
+				int outgoingAddress = getFreeOutgoingAddress();
 
 				LlcpSocket llcpSocket = new LlcpSocket(new AddressPair(remoteAddress, outgoingAddress),
 						serviceAccessPoint);
-				openConnections.put(outgoingAddress, llcpSocket);
+				openSocket(outgoingAddress, llcpSocket);
 				int aggreeOnMiux = aggreeOnMiux(parameters, llcpSocket);
+				setReceiveWindows(parameters, llcpSocket);
 
 				List<Object> parameter = new ArrayList<Object>(getParameter());
 				if (aggreeOnMiux != 0)
 					parameter.add(new Miux(aggreeOnMiux));
+				parameter.add(new ReceiveWindow(PREFERRED_RW));
 
 				return new ConnectComplete(remoteAddress, outgoingAddress, parameter.toArray());
 			}
@@ -254,6 +401,11 @@ public class LlcpConnectionManager implements Llcp {
 		return aggreeOnMiux;
 	}
 
+	private void setReceiveWindows(Object[] parameters, LlcpSocket llcpSocket) {
+		llcpSocket.setLocalReceiveWindow(PREFERRED_RW);
+		llcpSocket.setRemoteReceiveWindow(LlcpUtils.getReceiveWindow(parameters));
+	}
+
 	public void init(Object[] parameters) {
 		for (Object param : parameters) {
 			if (param instanceof Version) {
@@ -269,6 +421,7 @@ public class LlcpConnectionManager implements Llcp {
 			else if (param instanceof Miux) {
 				Miux miux = (Miux)param;
 				miuExtension = Math.min(PREFERRED_MIUX, miux.getValue());
+				linkMiu = LlcpConstants.DEFAULT_MIU + miux.getValue();
 				log.info("LLCP Miux: " + miux.getValue() + ", agreed on " + miuExtension);
 			}
 			else if (param instanceof LinkTimeOut) {
@@ -291,22 +444,18 @@ public class LlcpConnectionManager implements Llcp {
 	}
 
 	public int getOpenConnectionsSize() {
-		return openConnections.size();
+		return Long.bitCount(openAddresses);
 	}
 
 	public AbstractProtocolDataUnit onReceiveInformation(int remoteAddress, int localAddress, int received, int send,
 			byte[] serviceDataUnit) {
-		LlcpSocket llcpSocket = getOpenLlcpSocket(new AddressPair(remoteAddress, localAddress));
+		LlcpSocket llcpSocket = getOpenLlcpSocket(remoteAddress, localAddress);
 		llcpSocket.onInformation(received, send, serviceDataUnit);
 		return handleMessageToSend(llcpSocket);
 	}
 
-	private void closeSocket(LlcpSocket llcpSocket) {
-		openConnections.values().remove(llcpSocket);
-	}
-
 	public AbstractProtocolDataUnit onDisconnect(int remoteAddress, int localAddress) {
-		LlcpSocket llcpSocket = getOpenLlcpSocket(new AddressPair(remoteAddress, localAddress));
+		LlcpSocket llcpSocket = getOpenLlcpSocket(remoteAddress, localAddress);
 		closeSocket(llcpSocket);
 		llcpSocket.onDisconnect();
 		return handleMessageToSend(llcpSocket);
@@ -316,7 +465,7 @@ public class LlcpConnectionManager implements Llcp {
 		LlcpSocket llcpSocket = null;
 		switch (reason) {
 			case 0x00: // disc OK
-				llcpSocket = getOpenLlcpSocket(new AddressPair(remoteAddress, localAddress));
+				llcpSocket = getOpenLlcpSocket(remoteAddress, localAddress);
 				if (llcpSocket != null) {
 					log.info("Closing open connection");
 					closeSocket(llcpSocket);
@@ -324,31 +473,30 @@ public class LlcpConnectionManager implements Llcp {
 					return handleMessageToSend(llcpSocket);
 				}
 			case 0x01:
-				llcpSocket = getOpenLlcpSocket(new AddressPair(remoteAddress, localAddress));
+				llcpSocket = getOpenLlcpSocket(remoteAddress, localAddress);
 				if (llcpSocket != null) {
 					log.info("Closing open connection");
 					closeSocket(llcpSocket);
 					llcpSocket.onDisconnect();
-					return new Symmetry();
+					return Symmetry.INSTANCE;
 				}
 
 			case 0x02: // no service bound
 			case 0x03: // rejected by service layer
 			case 0x10: // perm not accept connection at same target point
 			case 0x11: // perm not accept connection at any target point
-				if (pendingConnections.containsKey(localAddress)) {
-					Integer pendingLocalAddress = Integer.valueOf(localAddress);
+				PendingConnection pendingConnection = removePendingConnection(localAddress);
+				if (pendingConnection != null) {
 					log.info("Closing pending connection");
-					PendingConnection pendingConnection = pendingConnections.remove(pendingLocalAddress);
 					pendingConnection.getServiceAccessPoint().onConnectFailed();
 				}
-				return new Symmetry();
+				return Symmetry.INSTANCE;
 			case 0x21: // temp not accept connection at same target point
 			case 0x20: // temp not accept connection at any target point
 				// TODO add additional timeout for this messages
-				return new Symmetry();
+				return Symmetry.INSTANCE;
 			default:
-				return new Symmetry();
+				return Symmetry.INSTANCE;
 		}
 
 	}
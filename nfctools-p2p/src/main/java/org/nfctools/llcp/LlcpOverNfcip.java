@@ -27,22 +27,22 @@ public class LlcpOverNfcip implements NFCIPConnectionListener {
 
 	private PduDecoder pduDecoder = new PduDecoder();
 	private LlcpConnectionManager connectionManager = new LlcpConnectionManager();
+	private byte[] symmetryPdu = pduDecoder.encode(Symmetry.INSTANCE);
 
 	@Override
 	public void onConnection(NFCIPConnection connection) throws IOException {
 		initFromGeneralBytes(connection.getTarget().getGeneralBytes());
 		try {
 			if (connection.isInitiator()) {
-				connection.send(pduDecoder.encode(new Symmetry().processPdu(connectionManager)));
+				send(connection, connectionManager.process(Symmetry.INSTANCE));
 			}
 
 			while (!Thread.interrupted()) {
 				byte[] data = connection.receive();
 				AbstractProtocolDataUnit requestPdu = pduDecoder.decode(data);
 
-				AbstractProtocolDataUnit responsePdu = requestPdu.processPdu(connectionManager);
-				byte[] pdu = pduDecoder.encode(responsePdu);
-				connection.send(pdu);
+				AbstractProtocolDataUnit responsePdu = connectionManager.process(requestPdu);
+				send(connection, responsePdu);
 			}
 		}
 		finally {
@@ -50,6 +50,13 @@ public class LlcpOverNfcip implements NFCIPConnectionListener {
 		}
 	}
 
+	/**
+	 * An idle link exchanges SYMM PDUs on every turn, these are sent from one array encoded up front.
+	 */
+	private void send(NFCIPConnection connection, AbstractProtocolDataUnit pdu) throws IOException {
+		connection.send(pdu instanceof Symmetry ? symmetryPdu : pduDecoder.encode(pdu));
+	}
+
 	private void initFromGeneralBytes(byte[] generalBytes) {
 		if (generalBytes.length >= 3) {
 			if (generalBytes[0] == 0x46 && generalBytes[1] == 0x66 && generalBytes[2] == 0x6D) {
@@ -15,6 +15,8 @@
  */
 package org.nfctools.llcp;
 
+import java.util.LinkedList;
+
 import org.nfctools.llcp.pdu.AbstractProtocolDataUnit;
 import org.nfctools.llcp.pdu.Disconnect;
 import org.nfctools.llcp.pdu.DisconnectedMode;
@@ -24,6 +26,12 @@ import org.nfctools.llcp.pdu.Symmetry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A data link connection with sliding window flow control. Messages passed to {@link #sendMessage(byte[])} are queued
+ * and sent as I PDUs as long as fewer than the receive window of the remote side are unacknowledged. Sent I PDUs are
+ * kept until an N(R) in a RR or I PDU acknowledges them, cumulatively. Received I PDUs are acknowledged by the N(R)
+ * of the next I PDU sent or by a RR PDU.
+ */
 public class LlcpSocket {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
@@ -31,10 +39,16 @@ public class LlcpSocket {
 	private AddressPair addressPair;
 
 	private int receivedSequence;
+	private int receivedAcknowledged;
 	private int sendSequence;
+	private int sendAcknowledged;
 
 	private int maximumInformationUnitExtension = 0;
+	private int localReceiveWindow = LlcpConstants.DEFAULT_RW;
+	private int remoteReceiveWindow = LlcpConstants.DEFAULT_RW;
 
+	private LinkedList<byte[]> messagesToSend = new LinkedList<byte[]>();
+	private LinkedList<Information> unacknowledged = new LinkedList<Information>();
 	private AbstractProtocolDataUnit messageToSend;
 	private ServiceAccessPoint serviceAccessPoint;
 
@@ -47,6 +61,22 @@ public class LlcpSocket {
 		this.maximumInformationUnitExtension = maximumInformationUnitExtension;
 	}
 
+	public int getLocalReceiveWindow() {
+		return localReceiveWindow;
+	}
+
+	public void setLocalReceiveWindow(int localReceiveWindow) {
+		this.localReceiveWindow = localReceiveWindow;
+	}
+
+	public int getRemoteReceiveWindow() {
+		return remoteReceiveWindow;
+	}
+
+	public void setRemoteReceiveWindow(int remoteReceiveWindow) {
+		this.remoteReceiveWindow = remoteReceiveWindow;
+	}
+
 	public void incReceivedSequence() {
 		receivedSequence = ++receivedSequence % 16;
 	}
@@ -63,29 +93,96 @@ public class LlcpSocket {
 		return sendSequence;
 	}
 
+	/**
+	 * Queues the message. It is sent as soon as the send window allows it.
+	 */
 	public void sendMessage(byte[] message) {
 		if (message.length > getMaximumInformationUnit())
 			throw new IllegalArgumentException("Message too long. Maximum Information Unit is "
 					+ getMaximumInformationUnit());
+		messagesToSend.add(message);
+	}
 
-		messageToSend = new Information(addressPair.getRemote(), addressPair.getLocal(), getReceivedSequence(),
-				getSendSequence(), message);
-		incSendSequence();
+	/**
+	 * @return true if a message passed to {@link #sendMessage(byte[])} now would still fit into the send window
+	 */
+	public boolean canSendMessage() {
+		return messagesToSend.size() + unacknowledged.size() < remoteReceiveWindow;
 	}
 
+	/**
+	 * @return true if every queued message has been sent and acknowledged
+	 */
+	public boolean isSendCompleted() {
+		return messagesToSend.isEmpty() && unacknowledged.isEmpty();
+	}
+
+	public int getUnacknowledgedCount() {
+		return unacknowledged.size();
+	}
+
+	/**
+	 * @return the number of messages waiting for the send window
+	 */
+	public int getQueuedMessageCount() {
+		return messagesToSend.size();
+	}
+
+	public ServiceAccessPoint getServiceAccessPoint() {
+		return serviceAccessPoint;
+	}
+
+	/**
+	 * Acknowledges the sent I PDUs up to, but not including, N(R) received. Notifies the service access point once if
+	 * at least one I PDU was acknowledged.
+	 */
 	public void onSendConfirmed(int received) {
-		if (sendSequence != received)
-			log.warn("sequences do not match myS: " + sendSequence + " myR: " + receivedSequence + " hisR: " + received);
+		if (acknowledge(received) > 0)
+			serviceAccessPoint.onSendSucceeded(this);
+	}
+
+	private int acknowledge(int received) {
+		int acknowledged = (received - sendAcknowledged + 16) % 16;
+		if (acknowledged > unacknowledged.size()) {
+			log.warn("sequences do not match myS: " + sendSequence + " myR: " + receivedSequence + " hisR: "
+					+ received);
+			acknowledged = unacknowledged.size();
+		}
+		for (int i = 0; i < acknowledged; i++) {
+			unacknowledged.removeFirst();
+			sendAcknowledged = (sendAcknowledged + 1) % 16;
+		}
+		return acknowledged;
+	}
 
-		serviceAccessPoint.onSendSucceeded(this);
+	/**
+	 * @return true if there is a PDU to send, which may be a queued message within the send window or a pending
+	 *         acknowledgement
+	 */
+	public boolean hasMessageToSend() {
+		return messageToSend != null || (!messagesToSend.isEmpty() && unacknowledged.size() < remoteReceiveWindow)
+				|| receivedAcknowledged != receivedSequence;
 	}
 
 	public AbstractProtocolDataUnit getMessageToSend() {
-		if (messageToSend == null)
-			return new Symmetry();
-		AbstractProtocolDataUnit pdu = messageToSend;
-		messageToSend = null;
-		return pdu;
+		if (messageToSend != null) {
+			AbstractProtocolDataUnit pdu = messageToSend;
+			messageToSend = null;
+			return pdu;
+		}
+		if (!messagesToSend.isEmpty() && unacknowledged.size() < remoteReceiveWindow) {
+			Information information = new Information(addressPair.getRemote(), addressPair.getLocal(),
+					getReceivedSequence(), getSendSequence(), messagesToSend.removeFirst());
+			unacknowledged.add(information);
+			incSendSequence();
+			receivedAcknowledged = receivedSequence;
+			return information;
+		}
+		if (receivedAcknowledged != receivedSequence) {
+			receivedAcknowledged = receivedSequence;
+			return new ReceiveReady(addressPair.getRemote(), addressPair.getLocal(), getReceivedSequence());
+		}
+		return Symmetry.INSTANCE;
 	}
 
 	public int getMaximumInformationUnit() {
@@ -93,7 +190,7 @@ public class LlcpSocket {
 	}
 
 	public void disconnect() {
-
+		messagesToSend.clear();
 		messageToSend = new Disconnect(addressPair.getRemote(), addressPair.getLocal());
 	}
 
@@ -102,12 +199,13 @@ public class LlcpSocket {
 			log.warn("sequences do not match myS: " + sendSequence + " myR: " + receivedSequence + " hisS: " + send
 					+ " Msg-Length: " + serviceDataUnit.length);
 
-		// TODO can you send and receive messages at the same time? can an I PDU be used as a confirm frame?
-
 		serviceAccessPoint.onInformation(serviceDataUnit);
 
 		incReceivedSequence();
-		messageToSend = new ReceiveReady(addressPair.getRemote(), addressPair.getLocal(), getReceivedSequence());
+		if ((receivedSequence - receivedAcknowledged + 16) % 16 > localReceiveWindow)
+			log.warn("receive window of " + localReceiveWindow + " exceeded myR: " + receivedSequence);
+		// the N(R) of an I PDU acknowledges what we sent as well
+		onSendConfirmed(received);
 	}
 
 	public void onConnectSucceeded() {
@@ -115,7 +213,10 @@ public class LlcpSocket {
 	}
 
 	public void onDisconnect() {
+		if (!isSendCompleted())
+			serviceAccessPoint.onSendFailed();
 		serviceAccessPoint.onDisconnect();
+		messagesToSend.clear();
 		messageToSend = new DisconnectedMode(addressPair.getRemote(), addressPair.getLocal(), 0);
 	}
 
@@ -131,4 +232,12 @@ public class LlcpSocket {
 	public boolean equalsAddress(AddressPair addressPair) {
 		return this.addressPair.equals(addressPair);
 	}
+
+	public boolean equalsAddress(int remoteAddress, int localAddress) {
+		return addressPair.getRemote() == remoteAddress && addressPair.getLocal() == localAddress;
+	}
+
+	public AddressPair getAddressPair() {
+		return addressPair;
+	}
 }
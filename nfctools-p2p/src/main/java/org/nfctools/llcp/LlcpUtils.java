@@ -16,6 +16,7 @@
 package org.nfctools.llcp;
 
 import org.nfctools.llcp.parameter.Miux;
+import org.nfctools.llcp.parameter.ReceiveWindow;
 import org.nfctools.llcp.parameter.ServiceName;
 
 public class LlcpUtils {
@@ -41,4 +42,15 @@ public class LlcpUtils {
 		}
 		return 0;
 	}
+
+	public static int getReceiveWindow(Object[] parameters) {
+		if (parameters != null) {
+			for (Object parameter : parameters) {
+				if (parameter instanceof ReceiveWindow) {
+					return ((ReceiveWindow)parameter).getValue();
+				}
+			}
+		}
+		return LlcpConstants.DEFAULT_RW;
+	}
 }
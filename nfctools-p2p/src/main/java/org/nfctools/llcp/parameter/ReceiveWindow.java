@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.llcp.parameter;
+
+/**
+ * The receive window size RW, the number of I PDUs a data link connection endpoint accepts without acknowledging
+ * them. A connection without the parameter has a receive window of 1.
+ */
+public class ReceiveWindow {
+
+	private int value;
+
+	public ReceiveWindow(int value) {
+		this.value = value;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "ReceiveWindow: " + value;
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.llcp.pdu;
+
+import java.util.List;
+
+import org.nfctools.llcp.LlcpConnectionManager;
+
+/**
+ * Carries several PDUs in one information field, each prefixed with its two byte length. Lets both sides exchange
+ * the PDUs of several connections within a single symmetry turn.
+ */
+public class AggregatedFrame extends AbstractProtocolDataUnit {
+
+	private List<AbstractProtocolDataUnit> protocolDataUnits;
+
+	public AggregatedFrame(List<AbstractProtocolDataUnit> protocolDataUnits) {
+		super(0, 0);
+		this.protocolDataUnits = protocolDataUnits;
+	}
+
+	public List<AbstractProtocolDataUnit> getProtocolDataUnits() {
+		return protocolDataUnits;
+	}
+
+	@Override
+	public AbstractProtocolDataUnit processPdu(LlcpConnectionManager connectionManager) {
+		return connectionManager.onAggregatedFrame(protocolDataUnits);
+	}
+}
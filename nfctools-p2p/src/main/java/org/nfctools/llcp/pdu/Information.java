@@ -15,25 +15,57 @@
  */
 package org.nfctools.llcp.pdu;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.llcp.LlcpConnectionManager;
 
 public class Information extends AbstractSequenceProtocolDataUnit {
 
-	private byte[] serviceDataUnit;
+	private ByteBuffer serviceDataUnit;
+	private byte[] serviceDataUnitArray;
 
 	public Information(int destinationServiceAccessPoint, int sourceServiceAccessPoint, int received, int send,
 			byte[] serviceDataUnit) {
 		super(destinationServiceAccessPoint, sourceServiceAccessPoint, received, send);
-		this.serviceDataUnit = serviceDataUnit;
+		this.serviceDataUnit = ByteBuffer.wrap(serviceDataUnit);
+		this.serviceDataUnitArray = serviceDataUnit;
+	}
+
+	/**
+	 * Creates an I PDU over the remaining bytes of the buffer without copying them. The buffer must not be reused
+	 * or modified while the PDU is in use, see {@link PduDecoder#decode(ByteBuffer)}.
+	 */
+	public Information(int destinationServiceAccessPoint, int sourceServiceAccessPoint, int received, int send,
+			ByteBuffer serviceDataUnit) {
+		super(destinationServiceAccessPoint, sourceServiceAccessPoint, received, send);
+		this.serviceDataUnit = serviceDataUnit.slice();
 	}
 
+	/**
+	 * @return the service data unit, copied out of the buffer on the first call if the PDU was decoded
+	 */
 	public byte[] getServiceDataUnit() {
-		return serviceDataUnit;
+		if (serviceDataUnitArray == null) {
+			serviceDataUnitArray = new byte[serviceDataUnit.remaining()];
+			serviceDataUnit.duplicate().get(serviceDataUnitArray);
+		}
+		return serviceDataUnitArray;
+	}
+
+	/**
+	 * @return a read-only view of the service data unit, no bytes are copied
+	 */
+	public ByteBuffer getServiceDataUnitBuffer() {
+		return serviceDataUnit.asReadOnlyBuffer();
+	}
+
+	public int getServiceDataUnitLength() {
+		return serviceDataUnit.remaining();
 	}
 
 	@Override
 	public AbstractProtocolDataUnit processPdu(LlcpConnectionManager connectionManager) {
 		return connectionManager.onReceiveInformation(getSourceServiceAccessPoint(),
-				getDestinationServiceAccessPoint(), getReceived(), getSend(), serviceDataUnit);
+				getDestinationServiceAccessPoint(), getReceived(), getSend(), getServiceDataUnit());
 	}
 }
@@ -15,196 +15,352 @@
  */
 package org.nfctools.llcp.pdu;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.nfctools.llcp.parameter.LinkTimeOut;
 import org.nfctools.llcp.parameter.Miux;
+import org.nfctools.llcp.parameter.ReceiveWindow;
 import org.nfctools.llcp.parameter.ServiceName;
 import org.nfctools.llcp.parameter.Version;
 import org.nfctools.llcp.parameter.WellKnownServiceList;
+import org.nfctools.ndef.RecordUtils;
 import org.nfctools.utils.NfcUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class PduDecoder {
 
+	/** Service names are URIs encoded as UTF-8. */
+	private static final Charset SERVICE_NAME_CHARSET = Charset.forName("UTF-8");
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 
+	/**
+	 * Decodes the PDU in the array. The service data unit of an I or UI PDU shares the array, see
+	 * {@link #decode(ByteBuffer)}.
+	 */
 	public AbstractProtocolDataUnit decode(byte[] pduData) {
+		return decode(pduData, 0, pduData.length);
+	}
+
+	/**
+	 * Decodes the PDU in the remaining bytes of the buffer and moves its position to the limit. The service data unit
+	 * of an I or UI PDU stays a slice of the buffer, no bytes are copied. The buffer must therefore not be reused or
+	 * modified while a decoded PDU is still referenced, for example while an I PDU is queued or not yet acknowledged. A
+	 * receive loop that reads every PDU into the same buffer has to use a fresh buffer per PDU or copy the service data
+	 * unit with {@link Information#getServiceDataUnit()}. A buffer without an accessible array is copied.
+	 */
+	public AbstractProtocolDataUnit decode(ByteBuffer buffer) {
+		AbstractProtocolDataUnit protocolDataUnit;
+		if (buffer.hasArray()) {
+			protocolDataUnit = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		else {
+			byte[] pduData = new byte[buffer.remaining()];
+			buffer.duplicate().get(pduData);
+			protocolDataUnit = decode(pduData);
+		}
+		buffer.position(buffer.limit());
+		return protocolDataUnit;
+	}
 
-		int destination = (pduData[0] >> 2) & 0x3f;
-		int source = pduData[1] & 0x3f;
-		int pduType = ((pduData[0] & 0x03) << 2) | ((pduData[1] & 0xc0) >> 6);
+	private AbstractProtocolDataUnit decode(byte[] pduData, int offset, int length) {
+		checkLength(pduData, length, 2);
+
+		int destination = (pduData[offset] >> 2) & 0x3f;
+		int source = pduData[offset + 1] & 0x3f;
+		int pduType = ((pduData[offset] & 0x03) << 2) | ((pduData[offset + 1] & 0xc0) >> 6);
+		int end = offset + length;
 
 		switch (pduType) {
 			case PduConstants.PDU_CONNECT:
-				return new Connect(destination, source, decodeParameter(pduData, 2));
+				return new Connect(destination, source, decodeParameter(pduData, offset + 2, end));
 			case PduConstants.PDU_CONNECT_COMPLETE:
-				return new ConnectComplete(destination, source, decodeParameter(pduData, 2));
+				return new ConnectComplete(destination, source, decodeParameter(pduData, offset + 2, end));
 			case PduConstants.PDU_DISCONNECT:
 				return new Disconnect(destination, source);
 			case PduConstants.PDU_DISCONNECTED_MODE:
-				int reason = pduData[2];
+				checkLength(pduData, length, 3);
+				int reason = pduData[offset + 2];
 				return new DisconnectedMode(destination, source, reason);
 			case PduConstants.PDU_INFORMATION:
-				int received = pduData[2] & 0x0f;
-				int send = pduData[2] >>> 4;
-				byte[] informationData = new byte[pduData.length - 3];
-				System.arraycopy(pduData, 3, informationData, 0, informationData.length);
-				return new Information(destination, source, received, send, informationData);
+				checkLength(pduData, length, 3);
+				int received = pduData[offset + 2] & 0x0f;
+				int send = (pduData[offset + 2] >>> 4) & 0x0f;
+				return new Information(destination, source, received, send, ByteBuffer.wrap(pduData, offset + 3,
+						length - 3));
 			case PduConstants.PDU_PARAMETER_EXCHANGE:
-				return new ParameterExchange(destination, source, decodeParameter(pduData, 2));
+				return new ParameterExchange(destination, source, decodeParameter(pduData, offset + 2, end));
 			case PduConstants.PDU_RECEIVE_READY:
-				int receivedReady = pduData[2] & 0x0f;
+				checkLength(pduData, length, 3);
+				int receivedReady = pduData[offset + 2] & 0x0f;
 				return new ReceiveReady(destination, source, receivedReady);
 			case PduConstants.PDU_SYMMETRY:
-				return new Symmetry();
+				return Symmetry.INSTANCE;
 			case PduConstants.PDU_UNNUMBERED_INFORMATION:
-				byte[] unnumberedData = new byte[pduData.length - 2];
-				System.arraycopy(pduData, 2, unnumberedData, 0, unnumberedData.length);
-				return new UnnumberedInformation(destination, source, unnumberedData);
+				return new UnnumberedInformation(destination, source, ByteBuffer.wrap(pduData, offset + 2,
+						length - 2));
 
-			case PduConstants.PDU_RECEIVE_NOT_READY:
 			case PduConstants.PDU_AGGREGATED_FRAME:
+				return new AggregatedFrame(decodeAggregatedFrame(pduData, offset + 2, end));
+
+			case PduConstants.PDU_RECEIVE_NOT_READY:
 			case PduConstants.PDU_FRAME_REJECT:
 				throw new UnsupportedOperationException("PDU TYPE: " + pduType);
 			default:
-				throw new RuntimeException("unknown pdu type: " + pduType);
+				throw new IllegalArgumentException("unknown pdu type: " + pduType);
+		}
+	}
+
+	private List<AbstractProtocolDataUnit> decodeAggregatedFrame(byte[] pduData, int offset, int end) {
+		List<AbstractProtocolDataUnit> protocolDataUnits = new ArrayList<AbstractProtocolDataUnit>();
+		while (offset < end) {
+			if (offset + 2 > end)
+				throw new IllegalArgumentException("truncated aggregated frame at position " + offset + ". ["
+						+ NfcUtils.convertBinToASCII(pduData) + "]");
+			int length = (pduData[offset] & 0xFF) << 8 | (pduData[offset + 1] & 0xFF);
+			offset += 2;
+			if (offset + length > end)
+				throw new IllegalArgumentException("aggregated PDU length " + length + " at position " + offset
+						+ " exceeds the data. [" + NfcUtils.convertBinToASCII(pduData) + "]");
+			AbstractProtocolDataUnit protocolDataUnit = decode(pduData, offset, length);
+			if (protocolDataUnit instanceof AggregatedFrame)
+				throw new IllegalArgumentException("nested aggregated frame at position " + offset);
+			protocolDataUnits.add(protocolDataUnit);
+			offset += length;
 		}
+		return protocolDataUnits;
+	}
+
+	private void checkLength(byte[] pduData, int length, int expected) {
+		if (length < expected)
+			throw new IllegalArgumentException("PDU too short, expected at least " + expected + " bytes ["
+					+ NfcUtils.convertBinToASCII(pduData) + "]");
 	}
 
 	public byte[] encode(AbstractProtocolDataUnit protocolDataUnit) {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		if (protocolDataUnit instanceof ConnectComplete) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_CONNECT_COMPLETE);
-			appendParameter(baos, (AbstractParameterProtocolDataUnit)protocolDataUnit);
+		byte[] pduData = new byte[getEncodedLength(protocolDataUnit)];
+		encode(protocolDataUnit, ByteBuffer.wrap(pduData));
+		return pduData;
+	}
+
+	/**
+	 * Encodes the PDU into the buffer starting at its position, which is moved past the PDU. Nothing is allocated, so
+	 * one buffer can be reused for every turn of the link.
+	 * 
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException if the PDU does not fit into the remaining bytes of the buffer
+	 */
+	public int encode(AbstractProtocolDataUnit protocolDataUnit, ByteBuffer buffer) {
+		int start = buffer.position();
+		if (protocolDataUnit instanceof Symmetry) {
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_SYMMETRY);
+		}
+		else if (protocolDataUnit instanceof Information) {
+			Information information = (Information)protocolDataUnit;
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_INFORMATION);
+			appendSequence(buffer, information);
+			buffer.put(information.getServiceDataUnitBuffer());
+		}
+		else if (protocolDataUnit instanceof ReceiveReady) {
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_RECEIVE_READY);
+			appendSequence(buffer, (AbstractSequenceProtocolDataUnit)protocolDataUnit);
+		}
+		else if (protocolDataUnit instanceof ConnectComplete) {
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_CONNECT_COMPLETE);
+			encodeParameter(((AbstractParameterProtocolDataUnit)protocolDataUnit).getParameter(), buffer);
 		}
 		else if (protocolDataUnit instanceof Connect) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_CONNECT);
-			appendParameter(baos, (AbstractParameterProtocolDataUnit)protocolDataUnit);
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_CONNECT);
+			encodeParameter(((AbstractParameterProtocolDataUnit)protocolDataUnit).getParameter(), buffer);
 		}
 		else if (protocolDataUnit instanceof Disconnect) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_DISCONNECT);
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_DISCONNECT);
 		}
 		else if (protocolDataUnit instanceof DisconnectedMode) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_DISCONNECTED_MODE);
-			baos.write(((DisconnectedMode)protocolDataUnit).getReason());
-		}
-		else if (protocolDataUnit instanceof Information) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_INFORMATION);
-			appendSequence(baos, (AbstractSequenceProtocolDataUnit)protocolDataUnit);
-			appendData(baos, ((Information)protocolDataUnit).getServiceDataUnit());
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_DISCONNECTED_MODE);
+			buffer.put((byte)((DisconnectedMode)protocolDataUnit).getReason());
 		}
 		else if (protocolDataUnit instanceof ParameterExchange) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_PARAMETER_EXCHANGE);
-			appendParameter(baos, (AbstractParameterProtocolDataUnit)protocolDataUnit);
-		}
-		else if (protocolDataUnit instanceof ReceiveReady) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_RECEIVE_READY);
-			appendSequence(baos, (AbstractSequenceProtocolDataUnit)protocolDataUnit);
-		}
-		else if (protocolDataUnit instanceof Symmetry) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_SYMMETRY);
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_PARAMETER_EXCHANGE);
+			encodeParameter(((AbstractParameterProtocolDataUnit)protocolDataUnit).getParameter(), buffer);
 		}
 		else if (protocolDataUnit instanceof UnnumberedInformation) {
-			appendHeader(baos, protocolDataUnit, PduConstants.PDU_UNNUMBERED_INFORMATION);
-			appendData(baos, ((UnnumberedInformation)protocolDataUnit).getServiceDataUnit());
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_UNNUMBERED_INFORMATION);
+			buffer.put(((UnnumberedInformation)protocolDataUnit).getServiceDataUnitBuffer());
 		}
-		return baos.toByteArray();
+		else if (protocolDataUnit instanceof AggregatedFrame) {
+			appendHeader(buffer, protocolDataUnit, PduConstants.PDU_AGGREGATED_FRAME);
+			for (AbstractProtocolDataUnit aggregated : ((AggregatedFrame)protocolDataUnit).getProtocolDataUnits()) {
+				// the length is written once the aggregated PDU is in place
+				int lengthPosition = buffer.position();
+				buffer.putShort((short)0);
+				int length = encode(aggregated, buffer);
+				buffer.put(lengthPosition, (byte)(length >> 8));
+				buffer.put(lengthPosition + 1, (byte)length);
+			}
+		}
+		return buffer.position() - start;
 	}
 
-	private void appendData(ByteArrayOutputStream baos, byte[] data) {
-		try {
-			baos.write(data);
-		}
-		catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * @return the number of bytes {@link #encode(AbstractProtocolDataUnit)} produces for the PDU
+	 */
+	public int getEncodedLength(AbstractProtocolDataUnit protocolDataUnit) {
+		if (protocolDataUnit instanceof AbstractParameterProtocolDataUnit)
+			return 2 + getEncodedParameterLength(((AbstractParameterProtocolDataUnit)protocolDataUnit).getParameter());
+		else if (protocolDataUnit instanceof Information)
+			return 3 + ((Information)protocolDataUnit).getServiceDataUnitLength();
+		else if (protocolDataUnit instanceof UnnumberedInformation)
+			return 2 + ((UnnumberedInformation)protocolDataUnit).getServiceDataUnitLength();
+		else if (protocolDataUnit instanceof DisconnectedMode || protocolDataUnit instanceof ReceiveReady)
+			return 3;
+		else if (protocolDataUnit instanceof AggregatedFrame) {
+			int length = 2;
+			for (AbstractProtocolDataUnit aggregated : ((AggregatedFrame)protocolDataUnit).getProtocolDataUnits())
+				length += 2 + getEncodedLength(aggregated);
+			return length;
 		}
+		return 2;
 	}
 
-	private void appendSequence(ByteArrayOutputStream baos, AbstractSequenceProtocolDataUnit protocolDataUnit) {
+	private void appendSequence(ByteBuffer buffer, AbstractSequenceProtocolDataUnit protocolDataUnit) {
 		int sequence = (protocolDataUnit.getSend() & 0x0f) << 4 | (protocolDataUnit.getReceived() & 0x0f);
-		baos.write(sequence);
+		buffer.put((byte)sequence);
 	}
 
-	private void appendParameter(ByteArrayOutputStream baos, AbstractParameterProtocolDataUnit protocolDataUnit) {
-		appendData(baos, encodeParameter(protocolDataUnit.getParameter()));
-	}
-
-	protected void appendHeader(ByteArrayOutputStream baos, AbstractProtocolDataUnit protocolDataUnit, int pduType) {
+	protected void appendHeader(ByteBuffer buffer, AbstractProtocolDataUnit protocolDataUnit, int pduType) {
 		int b1 = ((protocolDataUnit.getDestinationServiceAccessPoint() & 0x3f) << 2) | (pduType >> 2);
 		int b2 = ((pduType & 0x03) << 6) | (protocolDataUnit.getSourceServiceAccessPoint() & 0x3f);
-		baos.write(b1);
-		baos.write(b2);
+		buffer.put((byte)b1);
+		buffer.put((byte)b2);
 	}
 
 	public Object[] decodeParameter(byte[] pduData) {
 		return decodeParameter(pduData, 0);
 	}
 
+	/**
+	 * Decodes the parameter TLVs starting at offset. A TLV with a length running past the end of the data or shorter
+	 * than its parameter needs is rejected with an IllegalArgumentException.
+	 */
 	public Object[] decodeParameter(byte[] pduData, int offset) {
+		return decodeParameter(pduData, offset, pduData.length);
+	}
+
+	private Object[] decodeParameter(byte[] pduData, int offset, int end) {
 		List<Object> params = new ArrayList<Object>();
-		while (offset < pduData.length) {
-			switch (pduData[offset]) {
+		while (offset < end) {
+			if (offset + 2 > end)
+				throw new IllegalArgumentException("truncated parameter at position " + offset + ". ["
+						+ NfcUtils.convertBinToASCII(pduData) + "]");
+			int type = pduData[offset];
+			int length = pduData[offset + 1] & 0xFF;
+			int value = offset + 2;
+			if (value + length > end)
+				throw new IllegalArgumentException("parameter length " + length + " at position " + offset
+						+ " exceeds the data. [" + NfcUtils.convertBinToASCII(pduData) + "]");
+			switch (type) {
 				case PduConstants.PARAM_VERSION:
-					byte major = (byte)((pduData[offset + 2] >> 4) & 0x0F);
-					byte minor = (byte)(pduData[offset + 2] & 0x0F);
+					checkParameterLength(type, length, 1, offset);
+					byte major = (byte)((pduData[value] >> 4) & 0x0F);
+					byte minor = (byte)(pduData[value] & 0x0F);
 					params.add(new Version(major, minor));
 					break;
 				case PduConstants.PARAM_SN:
-					String serviceName = new String(pduData, offset + 2, pduData[offset + 1]);
+					String serviceName = new String(pduData, value, length, SERVICE_NAME_CHARSET);
 					params.add(new ServiceName(serviceName));
 					break;
 				case PduConstants.PARAM_MIUX:
-					int miux = (pduData[offset + 2] & 0x03) << 8 | (pduData[offset + 3] & 0xFF);
+					checkParameterLength(type, length, 2, offset);
+					int miux = (pduData[value] & 0x03) << 8 | (pduData[value + 1] & 0xFF);
 					params.add(new Miux(miux));
 					break;
 				case PduConstants.PARAM_WKS:
-					int wks = (pduData[offset + 2] & 0xFF) << 8 | (pduData[offset + 3] & 0xFF);
+					checkParameterLength(type, length, 2, offset);
+					int wks = (pduData[value] & 0xFF) << 8 | (pduData[value + 1] & 0xFF);
 					params.add(new WellKnownServiceList(wks));
 					break;
 				case PduConstants.PARAM_LTO:
-					params.add(new LinkTimeOut(pduData[offset + 2] & 0xFF));
+					checkParameterLength(type, length, 1, offset);
+					params.add(new LinkTimeOut(pduData[value] & 0xFF));
+					break;
+				case PduConstants.PARAM_RW:
+					checkParameterLength(type, length, 1, offset);
+					params.add(new ReceiveWindow(pduData[value] & 0x0F));
 					break;
 
 				default:
-					throw new IllegalArgumentException("unknown code " + pduData[offset] + " at position " + offset
-							+ ". [" + NfcUtils.convertBinToASCII(pduData) + "]");
+					throw new IllegalArgumentException("unknown code " + type + " at position " + offset + ". ["
+							+ NfcUtils.convertBinToASCII(pduData) + "]");
 			}
-			offset += 2 + pduData[offset + 1];
+			offset = value + length;
 		}
 		return params.toArray();
 	}
 
+	private void checkParameterLength(int type, int length, int expected, int offset) {
+		if (length < expected)
+			throw new IllegalArgumentException("parameter " + type + " at position " + offset + " has length "
+					+ length + ", expected " + expected);
+	}
+
 	public byte[] encodeParameter(Object[] parameter) {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] data = new byte[getEncodedParameterLength(parameter)];
+		encodeParameter(parameter, ByteBuffer.wrap(data));
+		return data;
+	}
 
+	private void encodeParameter(Object[] parameter, ByteBuffer buffer) {
 		for (Object object : parameter) {
 			if (object instanceof Version) {
-				baos.write(PduConstants.PARAM_VERSION);
-				baos.write(0x01);
-				byte versionByte = createVersionByte((Version)object);
-				baos.write(versionByte);
+				buffer.put((byte)PduConstants.PARAM_VERSION);
+				buffer.put((byte)0x01);
+				buffer.put(createVersionByte((Version)object));
 			}
 			else if (object instanceof ServiceName) {
-				byte[] serviceName = ((ServiceName)object).getName().getBytes();
-				baos.write(PduConstants.PARAM_SN);
-				baos.write(serviceName.length);
-				appendData(baos, serviceName);
+				String serviceName = ((ServiceName)object).getName();
+				buffer.put((byte)PduConstants.PARAM_SN);
+				buffer.put((byte)getServiceNameLength(serviceName));
+				RecordUtils.putUtf8(serviceName, 0, buffer);
 			}
 			else if (object instanceof Miux) {
 				Miux miux = (Miux)object;
-				baos.write(PduConstants.PARAM_MIUX);
-				baos.write(2);
-				baos.write((miux.getValue() >> 8) & 0x03);
-				baos.write(miux.getValue() & 0xff);
+				buffer.put((byte)PduConstants.PARAM_MIUX);
+				buffer.put((byte)2);
+				buffer.put((byte)((miux.getValue() >> 8) & 0x03));
+				buffer.put((byte)(miux.getValue() & 0xff));
+			}
+			else if (object instanceof ReceiveWindow) {
+				buffer.put((byte)PduConstants.PARAM_RW);
+				buffer.put((byte)1);
+				buffer.put((byte)(((ReceiveWindow)object).getValue() & 0x0f));
 			}
 		}
+	}
+
+	private int getEncodedParameterLength(Object[] parameter) {
+		int length = 0;
+		for (Object object : parameter) {
+			if (object instanceof Version || object instanceof ReceiveWindow)
+				length += 3;
+			else if (object instanceof ServiceName)
+				length += 2 + getServiceNameLength(((ServiceName)object).getName());
+			else if (object instanceof Miux)
+				length += 4;
+		}
+		return length;
+	}
 
-		return baos.toByteArray();
+	private int getServiceNameLength(String serviceName) {
+		int length = RecordUtils.getUtf8Length(serviceName, 0);
+		if (length > 0xFF)
+			throw new IllegalArgumentException("service name of " + length + " bytes exceeds 255 bytes");
+		return length;
 	}
 
 	private byte createVersionByte(Version version) {
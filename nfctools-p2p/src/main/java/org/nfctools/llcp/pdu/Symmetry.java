@@ -19,6 +19,11 @@ import org.nfctools.llcp.LlcpConnectionManager;
 
 public class Symmetry extends AbstractProtocolDataUnit {
 
+	/**
+	 * Shared instance for the SYMM PDUs exchanged on every turn of an idle link. A SYMM PDU carries no state.
+	 */
+	public static final Symmetry INSTANCE = new Symmetry();
+
 	public Symmetry() {
 		super(0, 0);
 	}
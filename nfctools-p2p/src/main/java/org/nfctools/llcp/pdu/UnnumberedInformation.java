@@ -15,19 +15,51 @@
  */
 package org.nfctools.llcp.pdu;
 
+import java.nio.ByteBuffer;
+
 import org.nfctools.llcp.LlcpConnectionManager;
 
 public class UnnumberedInformation extends AbstractProtocolDataUnit {
 
-	private byte[] serviceDataUnit;
+	private ByteBuffer serviceDataUnit;
+	private byte[] serviceDataUnitArray;
 
 	public UnnumberedInformation(int destinationServiceAccessPoint, int sourceServiceAccessPoint, byte[] serviceDataUnit) {
 		super(destinationServiceAccessPoint, sourceServiceAccessPoint);
-		this.serviceDataUnit = serviceDataUnit;
+		this.serviceDataUnit = ByteBuffer.wrap(serviceDataUnit);
+		this.serviceDataUnitArray = serviceDataUnit;
+	}
+
+	/**
+	 * Creates an UI PDU over the remaining bytes of the buffer without copying them. The buffer must not be reused
+	 * or modified while the PDU is in use, see {@link PduDecoder#decode(ByteBuffer)}.
+	 */
+	public UnnumberedInformation(int destinationServiceAccessPoint, int sourceServiceAccessPoint,
+			ByteBuffer serviceDataUnit) {
+		super(destinationServiceAccessPoint, sourceServiceAccessPoint);
+		this.serviceDataUnit = serviceDataUnit.slice();
 	}
 
+	/**
+	 * @return the service data unit, copied out of the buffer on the first call if the PDU was decoded
+	 */
 	public byte[] getServiceDataUnit() {
-		return serviceDataUnit;
+		if (serviceDataUnitArray == null) {
+			serviceDataUnitArray = new byte[serviceDataUnit.remaining()];
+			serviceDataUnit.duplicate().get(serviceDataUnitArray);
+		}
+		return serviceDataUnitArray;
+	}
+
+	/**
+	 * @return a read-only view of the service data unit, no bytes are copied
+	 */
+	public ByteBuffer getServiceDataUnitBuffer() {
+		return serviceDataUnit.asReadOnlyBuffer();
+	}
+
+	public int getServiceDataUnitLength() {
+		return serviceDataUnit.remaining();
 	}
 
 	@Override
@@ -17,6 +17,8 @@ package org.nfctools.ndefpush;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
@@ -26,7 +28,7 @@ import org.nfctools.llcp.Llcp;
 import org.nfctools.llcp.LlcpConstants;
 import org.nfctools.llcp.LlcpSocket;
 import org.nfctools.llcp.ServiceAccessPoint;
-import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.NdefCodecSession;
 import org.nfctools.ndef.NdefListener;
 import org.nfctools.ndef.Record;
 import org.slf4j.Logger;
@@ -38,6 +40,7 @@ public class NdefPushLlcpService implements ServiceAccessPoint {
 
 	private ByteArrayOutputStream incommingBuffer = new ByteArrayOutputStream();
 	private NdefListener ndefListener;
+	private NdefCodecSession codecSession = new NdefCodecSession();
 
 	private OutgoingNdefMessage outgoingMessage;
 	private BlockingQueue<WaitingNdefMessage> waitingMessages = new LinkedBlockingDeque<WaitingNdefMessage>();
@@ -56,7 +59,8 @@ public class NdefPushLlcpService implements ServiceAccessPoint {
 
 	@Override
 	public void onLlcpActive(Llcp llcp) {
-		log.debug(waitingMessages.size() + " NDEF messages to send");
+		if (log.isDebugEnabled())
+			log.debug(waitingMessages.size() + " NDEF messages to send");
 		if (hasMessagesToSend())
 			llcp.connectToService(LlcpConstants.COM_ANDROID_NPP, this);
 	}
@@ -73,7 +77,7 @@ public class NdefPushLlcpService implements ServiceAccessPoint {
 		while (waitingMessages.size() > 0) {
 			outgoingMessage.addWaitingNdefMessage(waitingMessages.poll());
 		}
-		outgoingMessage.compile();
+		outgoingMessage.compile(codecSession);
 
 		log.debug("Connection ok, sending message with " + outgoingMessage.getAvailableBytes() + " bytes");
 		sendMessage(llcpSocket);
@@ -81,19 +85,25 @@ public class NdefPushLlcpService implements ServiceAccessPoint {
 
 	@Override
 	public void onSendSucceeded(LlcpSocket llcpSocket) {
-		if (waitingMessages != null) {
+		if (outgoingMessage != null) {
 			sendMessage(llcpSocket);
 		}
 	}
 
+	/**
+	 * Fills the send window of the socket with the next fragments of the outgoing message. Finishes the message once
+	 * every fragment is acknowledged.
+	 */
 	private void sendMessage(LlcpSocket llcpSocket) {
-		int messageSize = Math.min(outgoingMessage.getAvailableBytes(), llcpSocket.getMaximumInformationUnit());
-		if (messageSize > 0) {
-			byte[] messageBuffer = new byte[messageSize];
-			outgoingMessage.readNextBuffer(messageBuffer);
-			llcpSocket.sendMessage(messageBuffer);
+		if (outgoingMessage.getAvailableBytes() > 0) {
+			while (outgoingMessage.getAvailableBytes() > 0 && llcpSocket.canSendMessage()) {
+				int messageSize = Math.min(outgoingMessage.getAvailableBytes(), llcpSocket.getMaximumInformationUnit());
+				byte[] messageBuffer = new byte[messageSize];
+				outgoingMessage.readNextBuffer(messageBuffer);
+				llcpSocket.sendMessage(messageBuffer);
+			}
 		}
-		else {
+		else if (llcpSocket.isSendCompleted()) {
 			log.debug("Message send");
 			outgoingMessage.notifyFinishListenerSuccess();
 			outgoingMessage = null;
@@ -136,7 +146,9 @@ public class NdefPushLlcpService implements ServiceAccessPoint {
 				List<byte[]> ndefMessages = NdefPushProtocol.parse(incommingBuffer.toByteArray());
 				if (ndefMessages != null) {
 					for (byte[] ndef : ndefMessages) {
-						List<Record> records = NdefContext.getNdefMessageDecoder().decodeToRecords(ndef);
+						// the listener may keep the records, so they are not decoded into the list of the session
+						List<Record> records = new ArrayList<Record>();
+						codecSession.decodeToRecords(ByteBuffer.wrap(ndef), records);
 						if (ndefListener != null) {
 							ndefListener.onNdefMessages(records);
 						}
@@ -16,13 +16,13 @@
 package org.nfctools.ndefpush;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.nfctools.ndef.NdefCodecSession;
 import org.nfctools.ndef.NdefContext;
 import org.nfctools.ndef.NdefMessageEncoder;
 import org.nfctools.ndef.Record;
@@ -78,22 +78,35 @@ public class NdefPushProtocol {
 		return messages;
 	}
 
+	/**
+	 * Frames the records as a single immediate message. The records are encoded straight into the returned array, no
+	 * codec session is used.
+	 */
 	public static byte[] toByteArray(Collection<Record> records) {
-		ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
-		DataOutputStream output = new DataOutputStream(buffer);
 		NdefMessageEncoder ndefMessageEncoder = NdefContext.getNdefMessageEncoder();
-		try {
-			byte[] bytes = ndefMessageEncoder.encode(records);
-			output.writeByte(VERSION);
-			output.writeInt(1);
-			output.writeByte(ACTION_IMMEDIATE);
-			output.writeInt(bytes.length);
-			output.write(bytes);
-		}
-		catch (java.io.IOException e) {
-			return null;
-		}
+		int length = ndefMessageEncoder.getEncodedLength(records);
+		ByteBuffer buffer = ByteBuffer.allocate(10 + length);
+		buffer.put(VERSION);
+		buffer.putInt(1);
+		buffer.put(ACTION_IMMEDIATE);
+		buffer.putInt(length);
+		ndefMessageEncoder.encode(records, buffer);
+		return buffer.array();
+	}
 
-		return buffer.toByteArray();
+	/**
+	 * Encodes the records into the reusable buffer of the session and copies them once into the returned frame of a
+	 * single immediate message. A view returned by an earlier encode call of the session is no longer valid
+	 * afterwards.
+	 */
+	public static byte[] toByteArray(Collection<Record> records, NdefCodecSession codecSession) {
+		ByteBuffer ndefMessage = codecSession.encode(records);
+		ByteBuffer buffer = ByteBuffer.allocate(10 + ndefMessage.remaining());
+		buffer.put(VERSION);
+		buffer.putInt(1);
+		buffer.put(ACTION_IMMEDIATE);
+		buffer.putInt(ndefMessage.remaining());
+		buffer.put(ndefMessage);
+		return buffer.array();
 	}
-}
\ No newline at end of file
+}
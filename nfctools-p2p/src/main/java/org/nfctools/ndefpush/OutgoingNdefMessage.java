@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import org.nfctools.ndef.NdefCodecSession;
 import org.nfctools.ndef.Record;
 
 public class OutgoingNdefMessage {
@@ -38,6 +39,10 @@ public class OutgoingNdefMessage {
 		outgoingBuffer = new ByteArrayInputStream(NdefPushProtocol.toByteArray(ndefRecords));
 	}
 
+	public void compile(NdefCodecSession codecSession) {
+		outgoingBuffer = new ByteArrayInputStream(NdefPushProtocol.toByteArray(ndefRecords, codecSession));
+	}
+
 	public int getAvailableBytes() {
 		return outgoingBuffer.available();
 	}
@@ -17,9 +17,13 @@ package org.nfctools.llcp;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Test;
+import org.nfctools.llcp.parameter.ReceiveWindow;
 import org.nfctools.llcp.parameter.ServiceName;
 import org.nfctools.llcp.pdu.AbstractProtocolDataUnit;
+import org.nfctools.llcp.pdu.AggregatedFrame;
 import org.nfctools.llcp.pdu.Connect;
 import org.nfctools.llcp.pdu.ConnectComplete;
 import org.nfctools.llcp.pdu.Disconnect;
@@ -132,6 +136,124 @@ public class LlcpConnectionManagerTest {
 		assertSymmetryState();
 	}
 
+	@Test
+	public void testConnectNegotiatesReceiveWindow() throws Exception {
+		connectionManager.registerWellKnownServiceAccessPoint(COM_ANDROID_NPP, new DummyServiceAccessPoint());
+		AbstractProtocolDataUnit processPdu = new Connect(1, 32, new ServiceName(COM_ANDROID_NPP), new ReceiveWindow(4))
+				.processPdu(connectionManager);
+		assertTrue(processPdu.toString(), processPdu instanceof ConnectComplete);
+		assertEquals(15, LlcpUtils.getReceiveWindow(((ConnectComplete)processPdu).getParameter()));
+	}
+
+	@Test
+	public void testAggregateConnects() throws Exception {
+		connectionManager.registerServiceAccessPoint(new DummyServiceAccessPoint("Hello", COM_ANDROID_NPP));
+		connectionManager.registerServiceAccessPoint(new DummyServiceAccessPoint("World", COM_ANDROID_NPP));
+		AbstractProtocolDataUnit processPdu = connectionManager.process(new Symmetry());
+		assertTrue(processPdu.toString(), processPdu instanceof AggregatedFrame);
+		AggregatedFrame aggregatedFrame = (AggregatedFrame)processPdu;
+		assertEquals(2, aggregatedFrame.getProtocolDataUnits().size());
+		assertTrue(aggregatedFrame.getProtocolDataUnits().get(0) instanceof Connect);
+		assertTrue(aggregatedFrame.getProtocolDataUnits().get(1) instanceof Connect);
+	}
+
+	@Test
+	public void testReceiveAggregatedInformation() throws Exception {
+		DummyServiceAccessPoint serviceAccessPoint = new DummyServiceAccessPoint(COM_ANDROID_NPP);
+		connectionManager.registerWellKnownServiceAccessPoint(COM_ANDROID_NPP, serviceAccessPoint);
+		new Connect(1, 32, new ServiceName(COM_ANDROID_NPP), new ReceiveWindow(4)).processPdu(connectionManager);
+
+		AggregatedFrame aggregatedFrame = new AggregatedFrame(Arrays.<AbstractProtocolDataUnit> asList(
+				new Information(32, 32, 0, 0, "Hello".getBytes()), new Information(32, 32, 0, 1, "World".getBytes())));
+		AbstractProtocolDataUnit processPdu = connectionManager.process(aggregatedFrame);
+		assertTrue(processPdu.toString(), processPdu instanceof ReceiveReady);
+		assertEquals(2, ((ReceiveReady)processPdu).getReceived());
+		assertEquals("World", serviceAccessPoint.getMessageReceived());
+		assertTrue(connectionManager.process(new Symmetry()) instanceof Symmetry);
+	}
+
+	@Test
+	public void testRoundRobinBetweenConnections() throws Exception {
+		ServiceAccessPoint first = new SendingServiceAccessPoint("a", 3);
+		ServiceAccessPoint second = new SendingServiceAccessPoint("b", 3);
+		connectionManager.registerServiceAccessPoint(first);
+		connectionManager.registerServiceAccessPoint(second);
+		AggregatedFrame connects = (AggregatedFrame)connectionManager.process(new Symmetry());
+		Connect firstConnect = (Connect)connects.getProtocolDataUnits().get(0);
+		Connect secondConnect = (Connect)connects.getProtocolDataUnits().get(1);
+
+		AggregatedFrame connectCompletes = new AggregatedFrame(Arrays.<AbstractProtocolDataUnit> asList(
+				new ConnectComplete(firstConnect.getSourceServiceAccessPoint(), 16, new ReceiveWindow(15)),
+				new ConnectComplete(secondConnect.getSourceServiceAccessPoint(), 17, new ReceiveWindow(15))));
+		AggregatedFrame information = (AggregatedFrame)connectionManager.process(connectCompletes);
+
+		StringBuilder order = new StringBuilder();
+		for (AbstractProtocolDataUnit pdu : information.getProtocolDataUnits())
+			order.append(new String(((Information)pdu).getServiceDataUnit()));
+		assertEquals("ababab", order.toString());
+	}
+
+	@Test
+	public void testQueueDepths() throws Exception {
+		ServiceAccessPoint serviceAccessPoint = new SendingServiceAccessPoint("a", 3);
+		connectionManager.registerServiceAccessPoint(serviceAccessPoint);
+		Connect connect = (Connect)connectionManager.process(new Symmetry());
+		assertEquals(0, connectionManager.getOutgoingPduCount());
+
+		// without a receive window parameter only one I PDU may be unacknowledged
+		AbstractProtocolDataUnit processPdu = connectionManager.process(new ConnectComplete(connect
+				.getSourceServiceAccessPoint(), 16));
+		assertTrue(processPdu.toString(), processPdu instanceof Information);
+		assertEquals(Integer.valueOf(2), connectionManager.getQueueDepths().get(serviceAccessPoint));
+
+		connectionManager.process(new ReceiveReady(connect.getSourceServiceAccessPoint(), 16, 1));
+		assertEquals(Integer.valueOf(1), connectionManager.getQueueDepths().get(serviceAccessPoint));
+	}
+
+	@Test
+	public void testOutgoingAddressAllocation() throws Exception {
+		ServiceAccessPoint serviceAccessPoint = new DummyServiceAccessPoint();
+		for (int x = 0; x < 32; x++)
+			connectionManager.connectToService(COM_ANDROID_NPP, serviceAccessPoint);
+		try {
+			connectionManager.connectToService(COM_ANDROID_NPP, serviceAccessPoint);
+			fail("connected with all addresses in use");
+		}
+		catch (LlcpException e) {
+		}
+
+		new DisconnectedMode(40, 1, 2).processPdu(connectionManager);
+		connectionManager.connectToService(COM_ANDROID_NPP, serviceAccessPoint);
+		assertEquals(33, connectionManager.getOutgoingPduCount());
+	}
+
+	private static class SendingServiceAccessPoint extends AbstractReceivingServiceAccessPoint {
+
+		private String message;
+		private int count;
+
+		private SendingServiceAccessPoint(String message, int count) {
+			this.message = message;
+			this.count = count;
+		}
+
+		@Override
+		public void onLlcpActive(Llcp llcp) {
+			if (count > 0)
+				llcp.connectToService(COM_ANDROID_NPP, this);
+		}
+
+		@Override
+		public void onConnectSucceeded(LlcpSocket llcpSocket) {
+			for (; count > 0; count--)
+				llcpSocket.sendMessage(message.getBytes());
+		}
+
+		@Override
+		public void onInformation(byte[] serviceDataUnit) {
+		}
+	}
+
 	private void assertSymmetryState() {
 		for (int x = 0; x < 10; x++) {
 			AbstractProtocolDataUnit processPdu = new Symmetry().processPdu(connectionManager);
@@ -18,6 +18,10 @@ package org.nfctools.llcp;
 import static org.junit.Assert.*;
 
 import org.junit.Test;
+import org.nfctools.llcp.pdu.AbstractProtocolDataUnit;
+import org.nfctools.llcp.pdu.Information;
+import org.nfctools.llcp.pdu.ReceiveReady;
+import org.nfctools.llcp.pdu.Symmetry;
 
 public class LlcpSocketTest {
 
@@ -32,4 +36,66 @@ public class LlcpSocketTest {
 		llcpSocket.incReceivedSequence();
 		assertEquals(1, llcpSocket.getReceivedSequence());
 	}
+
+	@Test
+	public void testSendWindow() throws Exception {
+		final int[] sendSucceeded = new int[1];
+		LlcpSocket llcpSocket = new LlcpSocket(new AddressPair(1, 32), new AbstractReceivingServiceAccessPoint() {
+
+			@Override
+			public void onSendSucceeded(LlcpSocket llcpSocket) {
+				sendSucceeded[0]++;
+			}
+
+			@Override
+			public void onInformation(byte[] serviceDataUnit) {
+			}
+		});
+		llcpSocket.setRemoteReceiveWindow(3);
+		for (int x = 0; x < 5; x++)
+			llcpSocket.sendMessage(new byte[] { (byte)x });
+		assertFalse(llcpSocket.canSendMessage());
+
+		for (int x = 0; x < 3; x++)
+			assertEquals(x, ((Information)llcpSocket.getMessageToSend()).getSend());
+		assertFalse(llcpSocket.hasMessageToSend());
+		assertTrue(llcpSocket.getMessageToSend() instanceof Symmetry);
+		assertEquals(3, llcpSocket.getUnacknowledgedCount());
+
+		// cumulative acknowledgement of the first two
+		llcpSocket.onSendConfirmed(2);
+		assertEquals(1, sendSucceeded[0]);
+		assertEquals(1, llcpSocket.getUnacknowledgedCount());
+		assertEquals(3, ((Information)llcpSocket.getMessageToSend()).getSend());
+		assertEquals(4, ((Information)llcpSocket.getMessageToSend()).getSend());
+		assertFalse(llcpSocket.isSendCompleted());
+
+		llcpSocket.onSendConfirmed(5);
+		assertEquals(2, sendSucceeded[0]);
+		assertTrue(llcpSocket.isSendCompleted());
+		assertTrue(llcpSocket.canSendMessage());
+	}
+
+	@Test
+	public void testReceiveAcknowledgement() throws Exception {
+		LlcpSocket llcpSocket = new LlcpSocket(new AddressPair(1, 32), new AbstractReceivingServiceAccessPoint() {
+
+			@Override
+			public void onInformation(byte[] serviceDataUnit) {
+			}
+		});
+		llcpSocket.onInformation(0, 0, new byte[1]);
+		llcpSocket.onInformation(0, 1, new byte[1]);
+		assertTrue(llcpSocket.hasMessageToSend());
+		AbstractProtocolDataUnit pdu = llcpSocket.getMessageToSend();
+		assertEquals(2, ((ReceiveReady)pdu).getReceived());
+		assertFalse(llcpSocket.hasMessageToSend());
+
+		// the acknowledgement is carried by the next I PDU
+		llcpSocket.onInformation(0, 2, new byte[1]);
+		llcpSocket.sendMessage(new byte[1]);
+		Information information = (Information)llcpSocket.getMessageToSend();
+		assertEquals(3, information.getReceived());
+		assertFalse(llcpSocket.hasMessageToSend());
+	}
 }
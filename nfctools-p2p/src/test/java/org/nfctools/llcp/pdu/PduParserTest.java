@@ -17,12 +17,15 @@ package org.nfctools.llcp.pdu;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 import org.nfctools.llcp.parameter.LinkTimeOut;
 import org.nfctools.llcp.parameter.Miux;
+import org.nfctools.llcp.parameter.ReceiveWindow;
 import org.nfctools.llcp.parameter.ServiceName;
 import org.nfctools.llcp.parameter.Version;
 import org.nfctools.llcp.parameter.WellKnownServiceList;
@@ -123,4 +126,110 @@ public class PduParserTest {
 		byte[] bs = pduDecoder.encodeParameter(new Object[] { version });
 		assertArrayEquals(new byte[] { 0x01, 0x01, 0x11 }, bs);
 	}
+
+	@Test
+	public void testEncodeDecodeReceiveWindow() throws Exception {
+		byte[] bs = pduDecoder.encodeParameter(new Object[] { new ReceiveWindow(4) });
+		assertArrayEquals(new byte[] { 0x05, 0x01, 0x04 }, bs);
+		assertEquals(4, ((ReceiveWindow)pduDecoder.decodeParameter(bs)[0]).getValue());
+	}
+
+	@Test
+	public void testEncodeServiceNameAsUtf8() throws Exception {
+		String name = "urn:nfc:sn:caf\u00e9";
+		byte[] bs = pduDecoder.encodeParameter(new Object[] { new ServiceName(name) });
+		assertEquals(2 + name.getBytes("UTF-8").length, bs.length);
+		assertEquals(name.getBytes("UTF-8").length, bs[1]);
+		assertEquals(name, ((ServiceName)pduDecoder.decodeParameter(bs)[0]).getName());
+	}
+
+	@Test
+	public void testEncodeDecodeAggregatedFrame() throws Exception {
+		List<AbstractProtocolDataUnit> pdus = Arrays.<AbstractProtocolDataUnit> asList(new ReceiveReady(32, 1, 3),
+				new Information(33, 2, 1, 4, new byte[] { 1, 2 }));
+		byte[] data = pduDecoder.encode(new AggregatedFrame(pdus));
+		assertArrayEquals(new byte[] { 0x00, (byte)0x80, 0x00, 0x03, (byte)0x83, 0x41, 0x03, 0x00, 0x05, (byte)0x87,
+				0x02, 0x41, 0x01, 0x02 }, data);
+		assertEquals(data.length, pduDecoder.getEncodedLength(new AggregatedFrame(pdus)));
+
+		AggregatedFrame aggregatedFrame = (AggregatedFrame)pduDecoder.decode(data);
+		assertEquals(2, aggregatedFrame.getProtocolDataUnits().size());
+		ReceiveReady receiveReady = (ReceiveReady)aggregatedFrame.getProtocolDataUnits().get(0);
+		assertEquals(3, receiveReady.getReceived());
+		Information information = (Information)aggregatedFrame.getProtocolDataUnits().get(1);
+		assertEquals(33, information.getDestinationServiceAccessPoint());
+		assertArrayEquals(new byte[] { 1, 2 }, information.getServiceDataUnit());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeTruncatedAggregatedFrame() throws Exception {
+		pduDecoder.decode(new byte[] { 0x00, (byte)0x80, 0x00, 0x05, (byte)0x83, 0x41, 0x03 });
+	}
+
+	@Test
+	public void testDecodeMalformedParameter() throws Exception {
+		byte[][] malformed = { { 0x01 }, { 0x02, 0x02, 0x03 }, { 0x02, 0x01, 0x03 }, { 0x06, (byte)0x80, 0x61 },
+				{ 0x04, 0x00 } };
+		for (byte[] data : malformed) {
+			try {
+				pduDecoder.decodeParameter(data);
+				fail("accepted " + Arrays.toString(data));
+			}
+			catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeTruncatedPdu() throws Exception {
+		byte[][] truncated = { {}, { 0x05 }, { 0x07, 0x21 }, { 0x01, (byte)0xC0 }, { 0x13, 0x61 } };
+		for (byte[] data : truncated) {
+			try {
+				pduDecoder.decode(data);
+				fail("accepted " + Arrays.toString(data));
+			}
+			catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testEncodeIntoBuffer() throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		List<AbstractProtocolDataUnit> pdus = Arrays.<AbstractProtocolDataUnit> asList(new ReceiveReady(32, 1, 3),
+				new Information(33, 2, 1, 4, new byte[] { 1, 2 }));
+		AggregatedFrame aggregatedFrame = new AggregatedFrame(pdus);
+		assertEquals(2, pduDecoder.encode(Symmetry.INSTANCE, buffer));
+		assertEquals(14, pduDecoder.encode(aggregatedFrame, buffer));
+		assertEquals(16, buffer.position());
+
+		byte[] expected = new byte[16];
+		System.arraycopy(pduDecoder.encode(aggregatedFrame), 0, expected, 2, 14);
+		assertArrayEquals(expected, buffer.array());
+	}
+
+	@Test
+	public void testDecodeSymmetryInstance() throws Exception {
+		assertSame(Symmetry.INSTANCE, pduDecoder.decode(new byte[] { 0x00, 0x00 }));
+		assertArrayEquals(new byte[] { 0x00, 0x00 }, pduDecoder.encode(Symmetry.INSTANCE));
+	}
+
+	@Test
+	public void testDecodeServiceDataUnitSlice() throws Exception {
+		byte[] data = { 0x00, 0x00, 0x04, (byte)0xc1, 0x01, 0x02, 0x03 };
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		buffer.position(2);
+		UnnumberedInformation unnumberedInformation = (UnnumberedInformation)pduDecoder.decode(buffer.slice());
+		ByteBuffer serviceDataUnit = unnumberedInformation.getServiceDataUnitBuffer();
+		assertTrue(serviceDataUnit.isReadOnly());
+		assertEquals(3, unnumberedInformation.getServiceDataUnitLength());
+		data[5] = 0x22;
+		assertEquals(0x22, serviceDataUnit.get(1));
+		assertArrayEquals(new byte[] { 0x01, 0x22, 0x03 }, unnumberedInformation.getServiceDataUnit());
+
+		Information information = (Information)pduDecoder.decode(new byte[] { (byte)0x83, 0x01, (byte)0x91, 0x05 });
+		assertEquals(9, information.getSend());
+		assertEquals(1, information.getReceived());
+		assertArrayEquals(new byte[] { 0x05 }, information.getServiceDataUnit());
+	}
 }
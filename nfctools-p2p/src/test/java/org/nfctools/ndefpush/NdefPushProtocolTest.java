@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011-2012 Adrian Stabiszewski, as@nfctools.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nfctools.ndefpush;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.nfctools.ndef.NdefCodecSession;
+import org.nfctools.ndef.NdefContext;
+import org.nfctools.ndef.Record;
+import org.nfctools.ndef.wkt.records.UriRecord;
+
+public class NdefPushProtocolTest {
+
+	@Test
+	public void testToByteArrayWithSession() throws Exception {
+		Collection<Record> records = Arrays.<Record> asList(new UriRecord("http://nfctools.org"));
+		NdefCodecSession codecSession = new NdefCodecSession();
+
+		byte[] data = NdefPushProtocol.toByteArray(records, codecSession);
+		assertArrayEquals(NdefPushProtocol.toByteArray(records), data);
+
+		List<byte[]> messages = NdefPushProtocol.parse(data);
+		assertEquals(1, messages.size());
+		assertArrayEquals(NdefContext.getNdefMessageEncoder().encode(records), messages.get(0));
+	}
+}